@@ -16,11 +16,16 @@
 package org.cometd.annotation;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -28,6 +33,7 @@ import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 
+import org.cometd.common.JSONContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -206,6 +212,50 @@ class AnnotationProcessor {
         }
     }
 
+    /**
+     * <p>Binds the given public method to the given target, returning a
+     * {@link MethodHandle} that takes the method arguments as an {@code Object[]}
+     * and returns an {@code Object}, to be invoked via {@link #invokePublic(MethodHandle, Object[])}.</p>
+     * <p>Binding is performed once when the service is processed, so that
+     * the invocations do not pay the cost of reflection.</p>
+     *
+     * @param target the object the method is invoked on
+     * @param method the public method to bind
+     * @return a method handle for the method bound to the target
+     */
+    protected static MethodHandle bindPublic(Object target, Method method) {
+        try {
+            return MethodHandles.lookup().unreflect(method)
+                    .asFixedArity()
+                    .bindTo(target)
+                    .asSpreader(Object[].class, method.getParameterCount())
+                    .asType(MethodType.methodType(Object.class, Object[].class));
+        } catch (IllegalAccessException x) {
+            throw new IllegalArgumentException(x);
+        }
+    }
+
+    protected static Object invokePublic(MethodHandle handle, Object[] arguments) throws Throwable {
+        return (Object)handle.invokeExact(arguments);
+    }
+
+    protected static Object callPublic(Object target, Method method, MethodHandle handle, Object[] arguments) {
+        try {
+            return invokePublic(handle, arguments);
+        } catch (Throwable x) {
+            Class<?> klass = target.getClass();
+            Logger logger = LoggerFactory.getLogger(klass);
+            logger.info("Exception while invoking " + klass + "#" + method.getName() + "()", x);
+            return null;
+        }
+    }
+
+    protected static void logConversionFailure(Object target, Method method, Throwable failure) {
+        Class<?> klass = target.getClass();
+        Logger logger = LoggerFactory.getLogger(klass);
+        logger.info("Exception while converting data for " + klass + "#" + method.getName() + "()", failure);
+    }
+
     protected Object getField(Object bean, Field field) {
         boolean accessible = field.isAccessible();
         try {
@@ -271,6 +321,50 @@ class AnnotationProcessor {
         }
     }
 
+    /**
+     * <p>Checks the signature of a callback method that may declare, after the expected
+     * parameters, an additional parameter that receives the message data converted
+     * to the parameter type.</p>
+     *
+     * @param method        the callback method
+     * @param expectedTypes the types of the expected parameters
+     * @param paramNames    the names of the template parameters
+     * @return the type of the data parameter, or null if the method does not declare it
+     */
+    protected static Class<?> checkSignaturesMatchWithPayload(Method method, Class<?>[] expectedTypes, List<String> paramNames) {
+        Class<?>[] paramTypes = method.getParameterTypes();
+        if (paramTypes.length == expectedTypes.length + 1 + paramNames.size()) {
+            // A null expected type matches any type.
+            checkSignaturesMatch(method, Arrays.copyOf(expectedTypes, expectedTypes.length + 1), paramNames);
+            return checkPayloadType(method, paramTypes[expectedTypes.length]);
+        }
+        checkSignaturesMatch(method, expectedTypes, paramNames);
+        return null;
+    }
+
+    /**
+     * <p>Checks that the type of the parameter that receives the message data
+     * is not a primitive type, since the message data may be null.</p>
+     *
+     * @param method the callback method
+     * @param type   the type of the data parameter
+     * @return the type of the data parameter
+     */
+    protected static Class<?> checkPayloadType(Method method, Class<?> type) {
+        if (type.isPrimitive()) {
+            throw new IllegalArgumentException("Data parameter type " + type.getName() + " must not be primitive in service method: " +
+                    method.getName() + "(...).");
+        }
+        return type;
+    }
+
+    protected static Object toPayload(JSONContext.Converter converter, Object data, Class<?> type) throws ParseException {
+        if (data == null || type.isInstance(data)) {
+            return data;
+        }
+        return converter.convert(data, type);
+    }
+
     protected boolean processInjectables(Object bean, List<Object> injectables) {
         boolean result = false;
         for (Object injectable : injectables) {
@@ -18,6 +18,7 @@ package org.cometd.annotation;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.text.ParseException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -33,6 +34,8 @@ import org.cometd.bayeux.ChannelId;
 import org.cometd.bayeux.Message;
 import org.cometd.bayeux.client.ClientSession;
 import org.cometd.bayeux.client.ClientSessionChannel;
+import org.cometd.common.JSONContext;
+import org.cometd.common.JettyJSONContextClient;
 
 /**
  * <p>Processes annotations in client-side service objects.</p>
@@ -65,6 +68,7 @@ public class ClientAnnotationProcessor extends AnnotationProcessor {
     private final ConcurrentMap<Object, List<SubscriptionCallback>> subscribers = new ConcurrentHashMap<>();
     private final ClientSession clientSession;
     private final Object[] injectables;
+    private JSONContext.Client jsonContext = new JettyJSONContextClient();
 
     public ClientAnnotationProcessor(ClientSession clientSession) {
         this(clientSession, new Object[0]);
@@ -75,6 +79,26 @@ public class ClientAnnotationProcessor extends AnnotationProcessor {
         this.injectables = injectables;
     }
 
+    /**
+     * @return the JSONContext used to convert the message data for callback methods
+     * that declare a data parameter
+     * @see #setJSONContext(JSONContext.Client)
+     */
+    public JSONContext.Client getJSONContext() {
+        return jsonContext;
+    }
+
+    /**
+     * <p>Sets the JSONContext used to convert the message data for callback methods
+     * that declare a data parameter, typically the same used by the client transports.</p>
+     * <p>Must be called before processing services.</p>
+     *
+     * @param jsonContext the JSONContext
+     */
+    public void setJSONContext(JSONContext.Client jsonContext) {
+        this.jsonContext = jsonContext;
+    }
+
     /**
      * Processes dependencies annotated with {@link Session}, callbacks
      * annotated with {@link Listener} and {@link Subscription} and lifecycle
@@ -241,7 +265,7 @@ public class ClientAnnotationProcessor extends AnnotationProcessor {
             Listener listener = method.getAnnotation(Listener.class);
             if (listener != null) {
                 List<String> paramNames = processParameters(method);
-                checkSignaturesMatch(method, ListenerCallback.signature, paramNames);
+                Class<?> payloadType = checkSignaturesMatchWithPayload(method, ListenerCallback.signature, paramNames);
 
                 String[] channels = listener.value();
                 for (String channel : channels) {
@@ -253,10 +277,21 @@ public class ClientAnnotationProcessor extends AnnotationProcessor {
 
                     ChannelId channelId = new ChannelId(channel);
                     if (channelId.isTemplate()) {
+                        List<String> parameters = channelId.getParameters();
+                        if (parameters.size() != paramNames.size()) {
+                            throw new IllegalArgumentException("Wrong number of template parameters in annotation @" +
+                                    Listener.class.getSimpleName() + " on method " +
+                                    method.getDeclaringClass().getName() + "." + method.getName() + "(...)");
+                        }
+                        if (!parameters.equals(paramNames)) {
+                            throw new IllegalArgumentException("Wrong parameter names in annotation @" +
+                                    Listener.class.getSimpleName() + " on method " +
+                                    method.getDeclaringClass().getName() + "." + method.getName() + "(...)");
+                        }
                         channel = channelId.getWilds().get(0);
                     }
 
-                    ListenerCallback listenerCallback = new ListenerCallback(bean, method, paramNames, channelId, channel);
+                    ListenerCallback listenerCallback = new ListenerCallback(bean, method, paramNames, channelId, channel, jsonContext.getConverter(), payloadType);
                     clientSession.getChannel(channel).addListener(listenerCallback);
 
                     List<ListenerCallback> callbacks = listeners.get(bean);
@@ -306,7 +341,7 @@ public class ClientAnnotationProcessor extends AnnotationProcessor {
             Subscription subscription = method.getAnnotation(Subscription.class);
             if (subscription != null) {
                 List<String> paramNames = processParameters(method);
-                checkSignaturesMatch(method, SubscriptionCallback.signature, paramNames);
+                Class<?> payloadType = checkSignaturesMatchWithPayload(method, SubscriptionCallback.signature, paramNames);
 
                 String[] channels = subscription.value();
                 for (String channel : channels) {
@@ -318,10 +353,21 @@ public class ClientAnnotationProcessor extends AnnotationProcessor {
 
                     ChannelId channelId = new ChannelId(channel);
                     if (channelId.isTemplate()) {
+                        List<String> parameters = channelId.getParameters();
+                        if (parameters.size() != paramNames.size()) {
+                            throw new IllegalArgumentException("Wrong number of template parameters in annotation @" +
+                                    Subscription.class.getSimpleName() + " on method " +
+                                    method.getDeclaringClass().getName() + "." + method.getName() + "(...)");
+                        }
+                        if (!parameters.equals(paramNames)) {
+                            throw new IllegalArgumentException("Wrong parameter names in annotation @" +
+                                    Subscription.class.getSimpleName() + " on method " +
+                                    method.getDeclaringClass().getName() + "." + method.getName() + "(...)");
+                        }
                         channel = channelId.getWilds().get(0);
                     }
 
-                    SubscriptionCallback subscriptionCallback = new SubscriptionCallback(clientSession, bean, method, paramNames, channelId, channel);
+                    SubscriptionCallback subscriptionCallback = new SubscriptionCallback(clientSession, bean, method, paramNames, channelId, channel, jsonContext.getConverter(), payloadType);
                     // We should delay the subscription if the client session did not complete the handshake
                     if (clientSession.isHandshook()) {
                         clientSession.getChannel(channel).subscribe(subscriptionCallback);
@@ -365,13 +411,17 @@ public class ClientAnnotationProcessor extends AnnotationProcessor {
         private final List<String> paramNames;
         private final ChannelId channelId;
         private final String subscription;
+        private final JSONContext.Converter converter;
+        private final Class<?> payloadType;
 
-        private ListenerCallback(Object target, Method method, List<String> paramNames, ChannelId channelId, String subscription) {
+        private ListenerCallback(Object target, Method method, List<String> paramNames, ChannelId channelId, String subscription, JSONContext.Converter converter, Class<?> payloadType) {
             this.target = target;
             this.method = method;
             this.paramNames = paramNames;
             this.channelId = channelId;
             this.subscription = subscription;
+            this.converter = converter;
+            this.payloadType = payloadType;
         }
 
         @Override
@@ -381,10 +431,19 @@ public class ClientAnnotationProcessor extends AnnotationProcessor {
                 return;
             }
 
-            Object[] args = new Object[1 + paramNames.size()];
-            args[0] = message;
-            for (int i = 0; i < paramNames.size(); ++i) {
-                args[1 + i] = matches.get(paramNames.get(i));
+            int index = 0;
+            Object[] args = new Object[1 + (payloadType == null ? 0 : 1) + paramNames.size()];
+            args[index++] = message;
+            if (payloadType != null) {
+                try {
+                    args[index++] = toPayload(converter, message.getData(), payloadType);
+                } catch (ParseException x) {
+                    logConversionFailure(target, method, x);
+                    return;
+                }
+            }
+            for (String paramName : paramNames) {
+                args[index++] = matches.get(paramName);
             }
             callPublic(target, method, args);
         }
@@ -398,14 +457,18 @@ public class ClientAnnotationProcessor extends AnnotationProcessor {
         private final List<String> paramNames;
         private final ChannelId channelId;
         private final String subscription;
+        private final JSONContext.Converter converter;
+        private final Class<?> payloadType;
 
-        public SubscriptionCallback(ClientSession clientSession, Object target, Method method, List<String> paramNames, ChannelId channelId, String subscription) {
+        public SubscriptionCallback(ClientSession clientSession, Object target, Method method, List<String> paramNames, ChannelId channelId, String subscription, JSONContext.Converter converter, Class<?> payloadType) {
             this.clientSession = clientSession;
             this.target = target;
             this.method = method;
             this.paramNames = paramNames;
             this.channelId = channelId;
             this.subscription = subscription;
+            this.converter = converter;
+            this.payloadType = payloadType;
         }
 
         @Override
@@ -415,10 +478,19 @@ public class ClientAnnotationProcessor extends AnnotationProcessor {
                 return;
             }
 
-            Object[] args = new Object[1 + paramNames.size()];
-            args[0] = message;
-            for (int i = 0; i < paramNames.size(); ++i) {
-                args[1 + i] = matches.get(paramNames.get(i));
+            int index = 0;
+            Object[] args = new Object[1 + (payloadType == null ? 0 : 1) + paramNames.size()];
+            args[index++] = message;
+            if (payloadType != null) {
+                try {
+                    args[index++] = toPayload(converter, message.getData(), payloadType);
+                } catch (ParseException x) {
+                    logConversionFailure(target, method, x);
+                    return;
+                }
+            }
+            for (String paramName : paramNames) {
+                args[index++] = matches.get(paramName);
             }
             callPublic(target, method, args);
         }
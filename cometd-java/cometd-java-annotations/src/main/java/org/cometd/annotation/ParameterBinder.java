@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2008-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cometd.annotation;
+
+import java.util.List;
+
+import org.cometd.bayeux.ChannelId;
+
+/**
+ * <p>Binds the segments of a channel to the {@link Param @Param} arguments
+ * of a service method annotated with a template channel.</p>
+ * <p>The literal segments of the template and the segment index of each
+ * parameter are resolved once, so that binding a channel only compares
+ * and copies segments, without the intermediate map produced by
+ * {@link ChannelId#bind(ChannelId)}.</p>
+ */
+class ParameterBinder {
+    private final String[] segments;
+    private final int[] indexes;
+
+    ParameterBinder(ChannelId template, List<String> paramNames) {
+        segments = new String[template.depth()];
+        indexes = new int[paramNames.size()];
+        for (int i = 0; i < indexes.length; ++i) {
+            indexes[i] = -1;
+        }
+        List<String> parameters = template.getParameters();
+        int parameter = 0;
+        for (int i = 0; i < segments.length; ++i) {
+            String segment = template.getSegment(i);
+            if (parameter < parameters.size() && segment.equals("{" + parameters.get(parameter) + "}")) {
+                int index = paramNames.indexOf(parameters.get(parameter++));
+                if (index >= 0) {
+                    indexes[index] = i;
+                }
+            } else {
+                segments[i] = segment;
+            }
+        }
+    }
+
+    /**
+     * @return the number of parameters bound by this binder
+     */
+    int size() {
+        return indexes.length;
+    }
+
+    /**
+     * <p>Binds the given channel to the parameters, storing their values
+     * in the given arguments array starting at the given offset.</p>
+     *
+     * @param channelId the channel to bind
+     * @param args      the arguments array to fill
+     * @param offset    the index of the first parameter in the arguments array
+     * @return whether the channel matches the template and all the parameters have been bound
+     */
+    boolean bind(ChannelId channelId, Object[] args, int offset) {
+        if (channelId.isWild() || channelId.isTemplate() || channelId.depth() != segments.length) {
+            return false;
+        }
+        for (int i = 0; i < segments.length; ++i) {
+            String segment = segments[i];
+            if (segment != null && !segment.equals(channelId.getSegment(i))) {
+                return false;
+            }
+        }
+        for (int i = 0; i < indexes.length; ++i) {
+            int index = indexes[i];
+            if (index < 0) {
+                return false;
+            }
+            args[offset + i] = channelId.getSegment(index);
+        }
+        return true;
+    }
+}
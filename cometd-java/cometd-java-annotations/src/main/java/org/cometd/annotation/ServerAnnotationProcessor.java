@@ -15,9 +15,11 @@
  */
 package org.cometd.annotation;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -44,6 +46,9 @@ import org.cometd.bayeux.server.LocalSession;
 import org.cometd.bayeux.server.ServerChannel;
 import org.cometd.bayeux.server.ServerMessage;
 import org.cometd.bayeux.server.ServerSession;
+import org.cometd.common.JSONContext;
+import org.cometd.server.AbstractServerTransport;
+import org.cometd.server.JettyJSONContextServer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -370,7 +375,7 @@ public class ServerAnnotationProcessor extends AnnotationProcessor {
             Listener listener = method.getAnnotation(Listener.class);
             if (listener != null) {
                 List<String> paramNames = processParameters(method);
-                checkSignaturesMatch(method, ListenerCallback.signature, paramNames);
+                Class<?> payloadType = checkSignaturesMatchWithPayload(method, ListenerCallback.signature, paramNames);
 
                 String[] channels = listener.value();
                 for (String channel : channels) {
@@ -391,7 +396,7 @@ public class ServerAnnotationProcessor extends AnnotationProcessor {
                     }
 
                     MarkedReference<ServerChannel> initializedChannel = bayeuxServer.createChannelIfAbsent(channel);
-                    ListenerCallback listenerCallback = new ListenerCallback(localSession, bean, method, paramNames, channelId, channel, listener.receiveOwnPublishes());
+                    ListenerCallback listenerCallback = new ListenerCallback(localSession, bean, method, paramNames, channelId, channel, listener.receiveOwnPublishes(), getConverter(), payloadType);
                     initializedChannel.getReference().addListener(listenerCallback);
 
                     List<ListenerCallback> callbacks = listeners.get(bean);
@@ -441,7 +446,7 @@ public class ServerAnnotationProcessor extends AnnotationProcessor {
             Subscription subscription = method.getAnnotation(Subscription.class);
             if (subscription != null) {
                 List<String> paramNames = processParameters(method);
-                checkSignaturesMatch(method, SubscriptionCallback.signature, paramNames);
+                Class<?> payloadType = checkSignaturesMatchWithPayload(method, SubscriptionCallback.signature, paramNames);
 
                 String[] channels = subscription.value();
                 for (String channel : channels) {
@@ -467,7 +472,7 @@ public class ServerAnnotationProcessor extends AnnotationProcessor {
                         channel = channelId.getRegularPart() + "/" + (parameters.size() < 2 ? ChannelId.WILD : ChannelId.DEEPWILD);
                     }
 
-                    SubscriptionCallback subscriptionCallback = new SubscriptionCallback(localSession, bean, method, paramNames, channelId, channel);
+                    SubscriptionCallback subscriptionCallback = new SubscriptionCallback(localSession, bean, method, paramNames, channelId, channel, getConverter(), payloadType);
                     localSession.getChannel(channel).subscribe(subscriptionCallback);
 
                     List<SubscriptionCallback> callbacks = subscribers.get(bean);
@@ -511,6 +516,7 @@ public class ServerAnnotationProcessor extends AnnotationProcessor {
             if (remoteCall != null) {
                 List<String> paramNames = processParameters(method);
                 checkSignaturesMatch(method, RemoteCallCallback.signature, paramNames);
+                checkPayloadType(method, method.getParameterTypes()[1]);
 
                 String[] targets = remoteCall.value();
                 for (String target : targets) {
@@ -542,7 +548,7 @@ public class ServerAnnotationProcessor extends AnnotationProcessor {
                     }
 
                     MarkedReference<ServerChannel> initializedChannel = bayeuxServer.createChannelIfAbsent(channel);
-                    RemoteCallCallback remoteCallCallback = new RemoteCallCallback(bayeuxServer, localSession, bean, method, paramNames, channelId, channel);
+                    RemoteCallCallback remoteCallCallback = new RemoteCallCallback(bayeuxServer, localSession, bean, method, paramNames, channelId, channel, getConverter());
                     initializedChannel.getReference().addListener(remoteCallCallback);
 
                     List<RemoteCallCallback> callbacks = remoteCalls.get(bean);
@@ -579,24 +585,36 @@ public class ServerAnnotationProcessor extends AnnotationProcessor {
         return result;
     }
 
+    private JSONContext.Converter getConverter() {
+        Object jsonContext = bayeuxServer.getOption(AbstractServerTransport.JSON_CONTEXT_OPTION);
+        if (jsonContext instanceof JSONContext.Server) {
+            return ((JSONContext.Server)jsonContext).getConverter();
+        }
+        return new JettyJSONContextServer().getConverter();
+    }
+
     private static class ListenerCallback implements ServerChannel.MessageListener {
         private static final Class<?>[] signature = new Class<?>[]{ServerSession.class, ServerMessage.Mutable.class};
         private final LocalSession localSession;
         private final Object target;
         private final Method method;
-        private final ChannelId channelId;
+        private final MethodHandle handle;
+        private final ParameterBinder binder;
         private final String subscription;
         private final boolean receiveOwnPublishes;
-        private final List<String> paramNames;
+        private final JSONContext.Converter converter;
+        private final Class<?> payloadType;
 
-        private ListenerCallback(LocalSession localSession, Object target, Method method, List<String> paramNames, ChannelId channelId, String subscription, boolean receiveOwnPublishes) {
+        private ListenerCallback(LocalSession localSession, Object target, Method method, List<String> paramNames, ChannelId channelId, String subscription, boolean receiveOwnPublishes, JSONContext.Converter converter, Class<?> payloadType) {
             this.localSession = localSession;
             this.target = target;
             this.method = method;
-            this.paramNames = paramNames;
-            this.channelId = channelId;
+            this.handle = bindPublic(target, method);
+            this.binder = paramNames.isEmpty() ? null : new ParameterBinder(channelId, paramNames);
             this.subscription = subscription;
             this.receiveOwnPublishes = receiveOwnPublishes;
+            this.converter = converter;
+            this.payloadType = payloadType;
         }
 
         @Override
@@ -605,18 +623,24 @@ public class ServerAnnotationProcessor extends AnnotationProcessor {
                 return true;
             }
 
-            Map<String, String> matches = channelId.bind(channel.getChannelId());
-            if (!paramNames.isEmpty() && !matches.keySet().containsAll(paramNames)) {
+            int params = binder == null ? 0 : binder.size();
+            Object[] args = new Object[2 + (payloadType == null ? 0 : 1) + params];
+            if (binder != null && !binder.bind(channel.getChannelId(), args, args.length - params)) {
                 return true;
             }
 
-            Object[] args = new Object[2 + paramNames.size()];
-            args[0] = from;
-            args[1] = message;
-            for (int i = 0; i < paramNames.size(); ++i) {
-                args[2 + i] = matches.get(paramNames.get(i));
+            int index = 0;
+            args[index++] = from;
+            args[index++] = message;
+            if (payloadType != null) {
+                try {
+                    args[index++] = toPayload(converter, message.getData(), payloadType);
+                } catch (ParseException x) {
+                    logConversionFailure(target, method, x);
+                    return true;
+                }
             }
-            return !Boolean.FALSE.equals(callPublic(target, method, args));
+            return !Boolean.FALSE.equals(callPublic(target, method, handle, args));
         }
     }
 
@@ -625,32 +649,42 @@ public class ServerAnnotationProcessor extends AnnotationProcessor {
         private final LocalSession localSession;
         private final Object target;
         private final Method method;
-        private final List<String> paramNames;
-        private final ChannelId channelId;
+        private final MethodHandle handle;
+        private final ParameterBinder binder;
         private final String subscription;
+        private final JSONContext.Converter converter;
+        private final Class<?> payloadType;
 
-        public SubscriptionCallback(LocalSession localSession, Object target, Method method, List<String> paramNames, ChannelId channelId, String subscription) {
+        public SubscriptionCallback(LocalSession localSession, Object target, Method method, List<String> paramNames, ChannelId channelId, String subscription, JSONContext.Converter converter, Class<?> payloadType) {
             this.localSession = localSession;
             this.target = target;
             this.method = method;
-            this.paramNames = paramNames;
-            this.channelId = channelId;
+            this.handle = bindPublic(target, method);
+            this.binder = paramNames.isEmpty() ? null : new ParameterBinder(channelId, paramNames);
             this.subscription = subscription;
+            this.converter = converter;
+            this.payloadType = payloadType;
         }
 
         @Override
         public void onMessage(ClientSessionChannel channel, Message message) {
-            Map<String, String> matches = channelId.bind(message.getChannelId());
-            if (!paramNames.isEmpty() && !matches.keySet().containsAll(paramNames)) {
+            int params = binder == null ? 0 : binder.size();
+            Object[] args = new Object[1 + (payloadType == null ? 0 : 1) + params];
+            if (binder != null && !binder.bind(message.getChannelId(), args, args.length - params)) {
                 return;
             }
 
-            Object[] args = new Object[1 + paramNames.size()];
-            args[0] = message;
-            for (int i = 0; i < paramNames.size(); ++i) {
-                args[1 + i] = matches.get(paramNames.get(i));
+            int index = 0;
+            args[index++] = message;
+            if (payloadType != null) {
+                try {
+                    args[index++] = toPayload(converter, message.getData(), payloadType);
+                } catch (ParseException x) {
+                    logConversionFailure(target, method, x);
+                    return;
+                }
             }
-            callPublic(target, method, args);
+            callPublic(target, method, handle, args);
         }
     }
 
@@ -660,18 +694,22 @@ public class ServerAnnotationProcessor extends AnnotationProcessor {
         private final LocalSession localSession;
         private final Object target;
         private final Method method;
-        private final List<String> paramNames;
-        private final ChannelId channelId;
+        private final MethodHandle handle;
+        private final ParameterBinder binder;
         private final String subscription;
+        private final JSONContext.Converter converter;
+        private final Class<?> payloadType;
 
-        private RemoteCallCallback(BayeuxServer bayeuxServer, LocalSession localSession, Object target, Method method, List<String> paramNames, ChannelId channelId, String subscription) {
+        private RemoteCallCallback(BayeuxServer bayeuxServer, LocalSession localSession, Object target, Method method, List<String> paramNames, ChannelId channelId, String subscription, JSONContext.Converter converter) {
             this.bayeuxServer = bayeuxServer;
             this.localSession = localSession;
             this.target = target;
             this.method = method;
-            this.paramNames = paramNames;
-            this.channelId = channelId;
+            this.handle = bindPublic(target, method);
+            this.binder = paramNames.isEmpty() ? null : new ParameterBinder(channelId, paramNames);
             this.subscription = subscription;
+            this.converter = converter;
+            this.payloadType = method.getParameterTypes()[1];
         }
 
         @Override
@@ -681,20 +719,16 @@ public class ServerAnnotationProcessor extends AnnotationProcessor {
                 return true;
             }
 
-            Map<String, String> matches = channelId.bind(channel.getChannelId());
-            if (!paramNames.isEmpty() && !matches.keySet().containsAll(paramNames)) {
+            Object[] args = new Object[2 + (binder == null ? 0 : binder.size())];
+            if (binder != null && !binder.bind(channel.getChannelId(), args, 2)) {
                 return true;
             }
 
-            Object[] args = new Object[2 + paramNames.size()];
             RemoteCall.Caller caller = new CallerImpl(bayeuxServer, localSession, from, message.getId(), message.getChannel());
             args[0] = caller;
-            args[1] = message.getData();
-            for (int i = 0; i < paramNames.size(); ++i) {
-                args[2 + i] = matches.get(paramNames.get(i));
-            }
             try {
-                return !Boolean.FALSE.equals(invokePublic(target, method, args));
+                args[1] = toPayload(converter, message.getData(), payloadType);
+                return !Boolean.FALSE.equals(invokePublic(handle, args));
             } catch (Throwable x) {
                 Map<String, Object> failure = new HashMap<>();
                 failure.put("class", x.getClass().getName());
@@ -30,6 +30,7 @@ import org.cometd.bayeux.Message;
 import org.cometd.bayeux.client.ClientSession;
 import org.cometd.bayeux.client.ClientSessionChannel;
 import org.cometd.client.BayeuxClient;
+import org.cometd.common.JacksonJSONContextClient;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -420,8 +421,11 @@ public class ClientAnnotationProcessorTest extends AbstractClientServerTest {
         boolean processed = processor.process(s);
         assertTrue(processed);
 
+        CountDownLatch subscribeLatch = new CountDownLatch(1);
+        bayeuxClient.getChannel(Channel.META_SUBSCRIBE).addListener((ClientSessionChannel.MessageListener)(channel, message) -> subscribeLatch.countDown());
         bayeuxClient.handshake();
         assertTrue(bayeuxClient.waitFor(1000, BayeuxClient.State.CONNECTED));
+        assertTrue(subscribeLatch.await(5, TimeUnit.SECONDS));
 
         String channel = "/a/" + value1 + "/" + value2 + "/d";
         assertFalse(new ChannelId(SubscriberWithParametersService.CHANNEL).bind(new ChannelId(channel)).isEmpty());
@@ -451,4 +455,90 @@ public class ClientAnnotationProcessorTest extends AbstractClientServerTest {
             latch.countDown();
         }
     }
+
+    @Test
+    public void testSubscriberWithTypedData() throws Exception {
+        processor.setJSONContext(new JacksonJSONContextClient());
+        CountDownLatch latch = new CountDownLatch(1);
+        String value = "v1";
+        SubscriberWithTypedDataService s = new SubscriberWithTypedDataService(latch, value);
+        boolean processed = processor.process(s);
+        assertTrue(processed);
+
+        CountDownLatch subscribeLatch = new CountDownLatch(1);
+        bayeuxClient.getChannel(Channel.META_SUBSCRIBE).addListener((ClientSessionChannel.MessageListener)(channel, message) -> subscribeLatch.countDown());
+        bayeuxClient.handshake();
+        assertTrue(bayeuxClient.waitFor(1000, BayeuxClient.State.CONNECTED));
+        assertTrue(subscribeLatch.await(5, TimeUnit.SECONDS));
+
+        HashMap<String, Object> data = new HashMap<>();
+        data.put("x", 1);
+        data.put("y", 2);
+        bayeuxClient.getChannel("/point/" + value).publish(data);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Service
+    public static class SubscriberWithTypedDataService {
+        private final CountDownLatch latch;
+        private final String value;
+
+        public SubscriberWithTypedDataService(CountDownLatch latch, String value) {
+            this.latch = latch;
+            this.value = value;
+        }
+
+        @Subscription("/point/{b}")
+        public void service(Message message, Point point, @Param("b") String b) {
+            assertEquals(value, b);
+            assertEquals(1, point.getX());
+            assertEquals(2, point.getY());
+            latch.countDown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSubscriberWithParameterWithoutAnnotation() throws Exception {
+        processor.process(new SubscriberWithParameterWithoutAnnotationService());
+    }
+
+    @Service
+    public static class SubscriberWithParameterWithoutAnnotationService {
+        @Subscription("/a/{b}")
+        public void service(Message message, String b) {
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSubscriberWithPrimitiveTypedData() throws Exception {
+        processor.process(new SubscriberWithPrimitiveTypedDataService());
+    }
+
+    @Service
+    public static class SubscriberWithPrimitiveTypedDataService {
+        @Subscription("/a")
+        public void service(Message message, int data) {
+        }
+    }
+
+    public static class Point {
+        private int x;
+        private int y;
+
+        public int getX() {
+            return x;
+        }
+
+        public void setX(int x) {
+            this.x = x;
+        }
+
+        public int getY() {
+            return y;
+        }
+
+        public void setY(int y) {
+            this.y = y;
+        }
+    }
 }
@@ -26,6 +26,8 @@ import org.cometd.bayeux.Message;
 import org.cometd.bayeux.client.ClientSessionChannel;
 import org.cometd.bayeux.server.LocalSession;
 import org.cometd.server.BayeuxServerImpl;
+import org.cometd.server.JettyJSONContextServer;
+import org.eclipse.jetty.util.ajax.JSONPojoConvertor;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -255,4 +257,65 @@ public class RemoteCallTest {
             throw new RuntimeException("explicitly thrown by test");
         }
     }
+
+    @Test
+    public void testRemoteCallWithTypedData() throws Exception {
+        // The Jetty JSON library needs a convertor for the data type.
+        JettyJSONContextServer jsonContext = (JettyJSONContextServer)bayeuxServer.getJSONContext();
+        jsonContext.getJSON().addConvertor(Point.class, new JSONPojoConvertor(Point.class));
+
+        Object service = new RemoteCallWithTypedDataService();
+        boolean processed = processor.process(service);
+        assertTrue(processed);
+
+        LocalSession remote = bayeuxServer.newLocalSession("remoteCall");
+        remote.handshake();
+        ClientSessionChannel channel = remote.getChannel(Channel.SERVICE + RemoteCallWithTypedDataService.CHANNEL);
+        final CountDownLatch latch = new CountDownLatch(1);
+        channel.addListener((ClientSessionChannel.MessageListener)(c, m) -> {
+            if (m.isPublishReply()) {
+                return;
+            }
+            assertTrue(m.isSuccessful());
+            assertEquals(3L, m.getData());
+            latch.countDown();
+        });
+        HashMap<String, Object> data = new HashMap<>();
+        data.put("x", 1L);
+        data.put("y", 2L);
+        channel.publish(data);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Service
+    public static class RemoteCallWithTypedDataService {
+        public static final String CHANNEL = "/point";
+
+        @RemoteCall(CHANNEL)
+        public void service(RemoteCall.Caller caller, Point point) {
+            caller.result(point.getX() + point.getY());
+        }
+    }
+
+    public static class Point {
+        private long x;
+        private long y;
+
+        public long getX() {
+            return x;
+        }
+
+        public void setX(long x) {
+            this.x = x;
+        }
+
+        public long getY() {
+            return y;
+        }
+
+        public void setY(long y) {
+            this.y = y;
+        }
+    }
 }
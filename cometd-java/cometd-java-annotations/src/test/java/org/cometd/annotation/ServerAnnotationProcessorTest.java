@@ -39,7 +39,10 @@ import org.cometd.bayeux.server.LocalSession;
 import org.cometd.bayeux.server.ServerChannel;
 import org.cometd.bayeux.server.ServerMessage;
 import org.cometd.bayeux.server.ServerSession;
+import org.cometd.common.JacksonJSONContext;
+import org.cometd.server.AbstractServerTransport;
 import org.cometd.server.BayeuxServerImpl;
+import org.cometd.server.JacksonJSONContextServer;
 import org.cometd.server.ServerSessionImpl;
 import org.junit.After;
 import org.junit.Before;
@@ -1552,6 +1555,18 @@ public class ServerAnnotationProcessorTest {
         }
     }
 
+    @Test(expected = IllegalArgumentException.class)
+    public void testListenerWithPrimitiveTypedData() throws Exception {
+        processor.process(new ListenerWithPrimitiveTypedDataService());
+    }
+
+    @Service
+    public static class ListenerWithPrimitiveTypedDataService {
+        @Listener("/foo")
+        public void service(ServerSession session, ServerMessage message, long data) {
+        }
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testListenerWithParameterWrongVariableName() throws Exception {
         Object service = new ListenerWithParameterWrongVariableNameService();
@@ -1639,4 +1654,72 @@ public class ServerAnnotationProcessorTest {
         bayeuxServer.handle((ServerSessionImpl)remote.getServerSession(), message, completable);
         completable.get();
     }
+
+    @Test
+    public void testListenerAndSubscriberWithTypedData() throws Exception {
+        bayeuxServer.stop();
+        bayeuxServer = new BayeuxServerImpl();
+        bayeuxServer.setOption(AbstractServerTransport.JSON_CONTEXT_OPTION, new JacksonJSONContextServer());
+        bayeuxServer.start();
+        processor = new ServerAnnotationProcessor(bayeuxServer);
+        assertTrue(bayeuxServer.getJSONContext() instanceof JacksonJSONContext);
+
+        CountDownLatch latch = new CountDownLatch(2);
+        TypedDataService s = new TypedDataService(latch);
+        boolean processed = processor.process(s);
+        assertTrue(processed);
+
+        HashMap<String, Object> data = new HashMap<>();
+        data.put("x", 1);
+        data.put("y", 2);
+        bayeuxServer.createChannelIfAbsent(TypedDataService.CHANNEL).getReference().publish(null, data, Promise.noop());
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Service
+    public static class TypedDataService {
+        public static final String CHANNEL = "/point";
+
+        private final CountDownLatch latch;
+
+        public TypedDataService(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Listener(CHANNEL)
+        public void listen(ServerSession session, ServerMessage message, Point point) {
+            if (point.getX() == 1 && point.getY() == 2) {
+                latch.countDown();
+            }
+        }
+
+        @Subscription(CHANNEL)
+        public void subscribe(Message message, Point point) {
+            if (point.getX() == 1 && point.getY() == 2) {
+                latch.countDown();
+            }
+        }
+    }
+
+    public static class Point {
+        private int x;
+        private int y;
+
+        public int getX() {
+            return x;
+        }
+
+        public void setX(int x) {
+            this.x = x;
+        }
+
+        public int getY() {
+            return y;
+        }
+
+        public void setY(int y) {
+            this.y = y;
+        }
+    }
 }
@@ -61,6 +61,7 @@ import org.cometd.client.transport.ClientTransport;
 import org.cometd.client.transport.LongPollingTransport;
 import org.cometd.common.JacksonJSONContextClient;
 import org.cometd.websocket.client.JettyWebSocketTransport;
+import org.cometd.websocket.client.MultiplexedJettyWebSocketTransport;
 import org.cometd.websocket.client.WebSocketTransport;
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.client.http.HttpClientTransportOverHTTP;
@@ -99,6 +100,7 @@ public class CometDLoadClient implements MeasureConverter {
     private final MonitoringQueuedThreadPool threadPool = new MonitoringQueuedThreadPool(0);
     private HttpClient httpClient;
     private WebSocketClient webSocketClient;
+    private MultiplexedJettyWebSocketTransport.Factory multiplexedTransportFactory;
     private WebSocketContainer webSocketContainer;
     private boolean interactive = true;
     private String host = "localhost";
@@ -325,6 +327,7 @@ public class CometDLoadClient implements MeasureConverter {
         webSocketClient.addBean(mbeanContainer);
         webSocketClient.start();
         mbeanContainer.beanAdded(null, webSocketClient);
+        multiplexedTransportFactory = new MultiplexedJettyWebSocketTransport.Factory(webSocketClient);
 
         webSocketContainer = ContainerProvider.getWebSocketContainer();
         // Make sure the container is stopped when the HttpClient is stopped
@@ -659,6 +662,14 @@ public class CometDLoadClient implements MeasureConverter {
                 options.put(JettyWebSocketTransport.IDLE_TIMEOUT_OPTION, Config.META_CONNECT_TIMEOUT + httpClient.getIdleTimeout());
                 return new JettyWebSocketTransport(options, scheduler, webSocketClient);
             }
+            case JETTY_WEBSOCKET_MULTIPLEXED: {
+                Map<String, Object> options = new HashMap<>();
+                options.put(ClientTransport.JSON_CONTEXT_OPTION, new JacksonJSONContextClient());
+                options.put(ClientTransport.MAX_NETWORK_DELAY_OPTION, Config.MAX_NETWORK_DELAY);
+                options.put(JettyWebSocketTransport.IDLE_TIMEOUT_OPTION, Config.META_CONNECT_TIMEOUT + httpClient.getIdleTimeout());
+                // All the clients share the same WebSocket connection.
+                return new MultiplexedJettyWebSocketTransport(null, options, scheduler, webSocketClient, multiplexedTransportFactory);
+            }
             default: {
                 throw new IllegalArgumentException();
             }
@@ -967,7 +978,7 @@ public class CometDLoadClient implements MeasureConverter {
     }
 
     private enum ClientTransportType {
-        LONG_POLLING("long-polling"), JSR_WEBSOCKET("jsr-websocket"), JETTY_WEBSOCKET("jetty-websocket");
+        LONG_POLLING("long-polling"), JSR_WEBSOCKET("jsr-websocket"), JETTY_WEBSOCKET("jetty-websocket"), JETTY_WEBSOCKET_MULTIPLEXED("jetty-websocket-multiplexed");
 
         private final String name;
 
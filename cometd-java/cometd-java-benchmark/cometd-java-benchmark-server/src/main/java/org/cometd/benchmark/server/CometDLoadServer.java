@@ -327,6 +327,9 @@ public class CometDLoadServer {
         // Use the faster JSON parser/generator
         bayeuxServer.setOption(AbstractServerTransport.JSON_CONTEXT_OPTION, JacksonJSONContextServer.class.getName());
         bayeuxServer.setOption("ws.cometdURLMapping", cometdURLMapping);
+        // Allow the load client to multiplex all its sessions over one connection
+        bayeuxServer.setOption("ws.multiplexed", "true");
+        bayeuxServer.setOption("ws.maxMultiplexedSessions", String.valueOf(Integer.MAX_VALUE));
         bayeuxServer.setOption(ServletContext.class.getName(), context.getServletContext());
 
         server.start();
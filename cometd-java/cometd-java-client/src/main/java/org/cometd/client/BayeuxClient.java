@@ -32,8 +32,10 @@ import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -101,12 +103,18 @@ import org.slf4j.LoggerFactory;
 public class BayeuxClient extends AbstractClientSession implements Bayeux {
     public static final String BACKOFF_INCREMENT_OPTION = "backoffIncrement";
     public static final String MAX_BACKOFF_OPTION = "maxBackoff";
+    public static final String AUTO_BATCH_MAX_DELAY_OPTION = "autoBatchMaxDelay";
+    public static final String AUTO_BATCH_MAX_SIZE_OPTION = "autoBatchMaxSize";
+    public static final String DISPATCH_EXECUTOR_OPTION = "dispatchExecutor";
+    public static final String MAX_DISPATCH_QUEUE_SIZE_OPTION = "maxDispatchQueueSize";
     public static final String BAYEUX_VERSION = "1.0";
 
     protected final Logger logger = LoggerFactory.getLogger(getClass().getName() + "." + Integer.toHexString(System.identityHashCode(this)));
     private final TransportRegistry transportRegistry = new TransportRegistry();
     private final Map<String, Object> options = new ConcurrentHashMap<>();
     private final List<Message.Mutable> messageQueue = new ArrayList<>(32);
+    private final List<Message.Mutable> autoBatch = new ArrayList<>(32);
+    private final Map<String, Dispatcher> dispatchers = new HashMap<>();
     private final CookieStore cookieStore = new CookieManager().getCookieStore();
     private final TransportListener messageListener = new MessageTransportListener();
     private final SessionState sessionState = new SessionState();
@@ -114,6 +122,14 @@ public class BayeuxClient extends AbstractClientSession implements Bayeux {
     private ScheduledExecutorService scheduler;
     private long backoffIncrement;
     private long maxBackoff;
+    private long autoBatchMaxDelay;
+    private int autoBatchMaxSize;
+    private ScheduledFuture<?> autoBatchTask;
+    private Executor dispatchExecutor;
+    private int maxDispatchQueueSize;
+    // Guarded by dispatchers.
+    private int congestedDispatchers;
+    private Runnable deferredConnect;
 
     /**
      * <p>Creates a BayeuxClient that will connect to the Bayeux server at the given URL
@@ -449,7 +465,9 @@ public class BayeuxClient extends AbstractClientSession implements Bayeux {
     @Override
     protected void sendBatch() {
         if (canSend()) {
-            List<Message.Mutable> messages = takeMessages();
+            // Messages auto-batched before the batch started are sent first.
+            List<Message.Mutable> messages = takeAutoBatch();
+            messages.addAll(takeMessages());
             if (!messages.isEmpty()) {
                 sendMessages(messages, Promise.complete((r, x) -> {
                     if (logger.isDebugEnabled()) {
@@ -521,6 +539,19 @@ public class BayeuxClient extends AbstractClientSession implements Bayeux {
         return messages;
     }
 
+    private List<Message.Mutable> takeAutoBatch() {
+        List<Message.Mutable> messages;
+        synchronized (autoBatch) {
+            messages = new ArrayList<>(autoBatch);
+            autoBatch.clear();
+            if (autoBatchTask != null) {
+                autoBatchTask.cancel(false);
+                autoBatchTask = null;
+            }
+        }
+        return messages;
+    }
+
     @Override
     public void disconnect(final ClientSession.MessageListener callback) {
         sessionState.submit(() -> sessionState.disconnecting(callback));
@@ -793,13 +824,92 @@ public class BayeuxClient extends AbstractClientSession implements Bayeux {
     }
 
     protected void processMessage(Message.Mutable message) {
+        Executor executor = dispatchExecutor;
+        if (executor == null || message.isMeta()) {
+            receiveMessage(message, Promise.noop());
+        } else {
+            dispatch(executor, message);
+        }
+    }
+
+    private void receiveMessage(Message.Mutable message, Promise<Void> promise) {
         receive(message, Promise.complete((r, x) -> {
             if (getState() == State.HANDSHAKEN) {
                 sessionState.submit(sessionState::afterHandshaken);
             }
+            promise.succeed(null);
         }));
     }
 
+    private void dispatch(Executor executor, Message.Mutable message) {
+        String channelName = message.getChannel();
+        Dispatcher dispatcher;
+        boolean execute;
+        synchronized (dispatchers) {
+            dispatcher = dispatchers.computeIfAbsent(channelName, Dispatcher::new);
+            dispatcher.messages.offer(message);
+            // Never block the thread that reads from the network, as it
+            // would stall all channels; instead, stop asking the server for
+            // more messages until the congested channels catch up.
+            if (!dispatcher.congested && maxDispatchQueueSize > 0 && dispatcher.messages.size() >= maxDispatchQueueSize) {
+                dispatcher.congested = true;
+                ++congestedDispatchers;
+            }
+            execute = !dispatcher.running;
+            dispatcher.running = true;
+        }
+
+        if (execute) {
+            try {
+                executor.execute(dispatcher);
+            } catch (RejectedExecutionException x) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Dispatch rejected, notifying listeners of " + channelName, x);
+                }
+                dispatcher.run();
+            }
+        }
+    }
+
+    private void connectWhenDispatched() {
+        Runnable deferred = null;
+        int congested;
+        synchronized (dispatchers) {
+            congested = congestedDispatchers;
+            if (congested > 0) {
+                deferred = new Runnable() {
+                    @Override
+                    public void run() {
+                        resumeConnect(this);
+                    }
+                };
+                deferredConnect = deferred;
+            }
+        }
+        if (deferred == null) {
+            sendConnect();
+        } else {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Deferring connect, {} congested channels", congested);
+            }
+            // Do not defer for so long that the server expires the session.
+            long maxInterval = sessionState.getMaxInterval();
+            if (maxInterval > 0) {
+                scheduleAction(deferred, maxInterval / 2, 0);
+            }
+        }
+    }
+
+    private void resumeConnect(Runnable deferred) {
+        synchronized (dispatchers) {
+            if (deferredConnect != deferred) {
+                return;
+            }
+            deferredConnect = null;
+        }
+        sendConnect();
+    }
+
     private void messageFailure(Message.Mutable message, Throwable failure) {
         failMessage(message);
     }
@@ -820,7 +930,7 @@ public class BayeuxClient extends AbstractClientSession implements Bayeux {
         if (logger.isDebugEnabled()) {
             logger.debug("Scheduled connect in {}+{} ms", interval, backOff);
         }
-        return scheduleAction(this::sendConnect, interval, backOff);
+        return scheduleAction(this::connectWhenDispatched, interval, backOff);
     }
 
     private boolean scheduleAction(Runnable action, long interval, long backoff) {
@@ -875,15 +985,41 @@ public class BayeuxClient extends AbstractClientSession implements Bayeux {
         }
         this.maxBackoff = maxBackoff;
 
+        value = (Number)getOption(AUTO_BATCH_MAX_DELAY_OPTION);
+        long autoBatchMaxDelay = value == null ? 0 : value.longValue();
+        this.autoBatchMaxDelay = Math.max(0, autoBatchMaxDelay);
+
+        value = (Number)getOption(AUTO_BATCH_MAX_SIZE_OPTION);
+        int autoBatchMaxSize = value == null ? 0 : value.intValue();
+        this.autoBatchMaxSize = Math.max(0, autoBatchMaxSize);
+
+        Object executor = getOption(DISPATCH_EXECUTOR_OPTION);
+        this.dispatchExecutor = executor instanceof Executor ? (Executor)executor : null;
+
+        value = (Number)getOption(MAX_DISPATCH_QUEUE_SIZE_OPTION);
+        int maxDispatchQueueSize = value == null ? 0 : value.intValue();
+        this.maxDispatchQueueSize = Math.max(0, maxDispatchQueueSize);
+
         if (scheduler == null) {
             scheduler = new BayeuxClientScheduler();
         }
     }
 
     protected void terminate() {
-        List<Message.Mutable> messages = takeMessages();
+        List<Message.Mutable> messages = takeAutoBatch();
+        messages.addAll(takeMessages());
         messagesFailure(null, messages);
 
+        // Do not notify the listeners after the disconnection.
+        synchronized (dispatchers) {
+            for (Dispatcher dispatcher : dispatchers.values()) {
+                dispatcher.messages.clear();
+                dispatcher.congested = false;
+            }
+            congestedDispatchers = 0;
+            deferredConnect = null;
+        }
+
         cookieStore.removeAll();
 
         if (scheduler instanceof BayeuxClientScheduler) {
@@ -926,6 +1062,10 @@ public class BayeuxClient extends AbstractClientSession implements Bayeux {
 
     protected void enqueueSend(Message.Mutable message) {
         if (canSend()) {
+            if (autoBatchMaxDelay > 0) {
+                autoBatch(message);
+                return;
+            }
             List<Message.Mutable> messages = new ArrayList<>(1);
             messages.add(message);
             sendMessages(messages, Promise.complete((r, x) -> {
@@ -943,6 +1083,62 @@ public class BayeuxClient extends AbstractClientSession implements Bayeux {
         }
     }
 
+    private void autoBatch(Message.Mutable message) {
+        List<Message.Mutable> messages = null;
+        synchronized (autoBatch) {
+            autoBatch.add(message);
+            if (autoBatchMaxSize > 0 && autoBatch.size() >= autoBatchMaxSize) {
+                messages = takeAutoBatch();
+            } else if (autoBatchTask == null) {
+                ScheduledExecutorService scheduler = this.scheduler;
+                try {
+                    if (scheduler != null) {
+                        autoBatchTask = scheduler.schedule(this::flushAutoBatch, autoBatchMaxDelay, TimeUnit.MILLISECONDS);
+                    }
+                } catch (RejectedExecutionException x) {
+                    // It has been shut down
+                    logger.trace("", x);
+                }
+                if (autoBatchTask == null) {
+                    messages = takeAutoBatch();
+                }
+            }
+        }
+        if (messages == null) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Auto-batched message {}", message);
+            }
+        } else {
+            sendAutoBatch(messages);
+        }
+    }
+
+    private void flushAutoBatch() {
+        List<Message.Mutable> messages = takeAutoBatch();
+        if (!messages.isEmpty()) {
+            sendAutoBatch(messages);
+        }
+    }
+
+    private void sendAutoBatch(List<Message.Mutable> messages) {
+        if (canSend()) {
+            sendMessages(messages, Promise.complete((r, x) -> {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("{} auto-batch {}", x == null ? "Sent" : "Failed", messages);
+                }
+            }));
+        } else {
+            // A batch or a handshake started in the meantime:
+            // the messages will be sent along with the queued ones.
+            synchronized (messageQueue) {
+                messageQueue.addAll(0, messages);
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("Enqueued auto-batch {}", messages);
+            }
+        }
+    }
+
     private boolean canSend() {
         State state = getState();
         boolean handshaking = state == State.HANDSHAKING || state == State.REHANDSHAKING;
@@ -1430,7 +1626,8 @@ public class BayeuxClient extends AbstractClientSession implements Bayeux {
 
                 registerCallback(messageId, callback);
 
-                List<Message.Mutable> messages = new ArrayList<>(1);
+                // Send the pending auto-batched messages before the disconnect.
+                List<Message.Mutable> messages = takeAutoBatch();
                 messages.add(message);
                 sendMessages(messages, Promise.complete((r, x) -> {
                     if (logger.isDebugEnabled()) {
@@ -1628,6 +1825,60 @@ public class BayeuxClient extends AbstractClientSession implements Bayeux {
         }
     }
 
+    /**
+     * <p>Notifies the listeners of one channel, one message at a time
+     * and in the order the messages arrived, on the dispatch executor.</p>
+     */
+    private class Dispatcher implements Runnable {
+        private final Queue<Message.Mutable> messages = new ArrayDeque<>();
+        private final String channelName;
+        private boolean running;
+        private boolean congested;
+
+        private Dispatcher(String channelName) {
+            this.channelName = channelName;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Message.Mutable message;
+                Runnable deferred = null;
+                synchronized (dispatchers) {
+                    message = messages.poll();
+                    if (congested && messages.size() < maxDispatchQueueSize) {
+                        congested = false;
+                        if (--congestedDispatchers == 0) {
+                            deferred = deferredConnect;
+                        }
+                    }
+                    if (message == null) {
+                        running = false;
+                        dispatchers.remove(channelName, this);
+                    }
+                }
+                if (deferred != null) {
+                    scheduleAction(deferred, 0, 0);
+                }
+                if (message == null) {
+                    return;
+                }
+                try {
+                    // Wait for the message to be fully processed,
+                    // possibly by asynchronous extensions, before
+                    // moving to the next one to preserve ordering.
+                    Promise.Completable<Void> completable = new Promise.Completable<>();
+                    receiveMessage(message, completable);
+                    completable.get();
+                } catch (InterruptedException x) {
+                    Thread.currentThread().interrupt();
+                } catch (Throwable x) {
+                    logger.info("Failure while dispatching " + message, x);
+                }
+            }
+        }
+    }
+
     private static class BayeuxClientScheduler extends ScheduledThreadPoolExecutor {
         public BayeuxClientScheduler() {
             super(1);
@@ -15,17 +15,22 @@
  */
 package org.cometd.client.transport;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.CookieManager;
 import java.net.CookiePolicy;
 import java.net.HttpCookie;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -37,13 +42,15 @@ import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.client.api.Request;
 import org.eclipse.jetty.client.api.Response;
 import org.eclipse.jetty.client.api.Result;
-import org.eclipse.jetty.client.util.BufferingResponseListener;
 import org.eclipse.jetty.client.util.StringContentProvider;
 import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http2.client.HTTP2Client;
+import org.eclipse.jetty.http2.client.http.HttpClientTransportOverHTTP2;
 import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
 
 public class LongPollingTransport extends HttpClientTransport {
     public static final String NAME = "long-polling";
@@ -176,83 +183,230 @@ public class LongPollingTransport extends HttpClientTransport {
         // so there are no races between the two timeouts
         request.idleTimeout(maxNetworkDelay * 2, TimeUnit.MILLISECONDS);
         request.timeout(maxNetworkDelay, TimeUnit.MILLISECONDS);
-        request.send(new BufferingResponseListener(_maxMessageSize) {
-            @Override
-            public boolean onHeader(Response response, HttpField field) {
-                HttpHeader header = field.getHeader();
-                if (header != null && (header == HttpHeader.SET_COOKIE || header == HttpHeader.SET_COOKIE2)) {
-                    // We do not allow cookies to be handled by HttpClient, since one
-                    // HttpClient instance is shared by multiple BayeuxClient instances.
-                    // Instead, we store the cookies in the BayeuxClient instance.
-                    Map<String, List<String>> cookies = new HashMap<>(1);
-                    cookies.put(field.getName(), Collections.singletonList(field.getValue()));
-                    storeCookies(uri, cookies);
-                    return false;
+        request.send(new MessageResponseListener(listener, messages, uri));
+    }
+
+    protected void customize(Request request) {
+    }
+
+    private class MessageResponseListener extends Response.Listener.Adapter {
+        private final Set<String> replied = new HashSet<>();
+        private final List<Message.Mutable> parsed = new ArrayList<>();
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final TransportListener listener;
+        private final List<Message.Mutable> messages;
+        private final URI uri;
+        private boolean array;
+        private int depth;
+        private boolean string;
+        private boolean escape;
+        private boolean content;
+        private boolean closed;
+        private boolean delivered;
+
+        private MessageResponseListener(TransportListener listener, List<Message.Mutable> messages, URI uri) {
+            this.listener = listener;
+            this.messages = messages;
+            this.uri = uri;
+        }
+
+        @Override
+        public boolean onHeader(Response response, HttpField field) {
+            HttpHeader header = field.getHeader();
+            if (header != null && (header == HttpHeader.SET_COOKIE || header == HttpHeader.SET_COOKIE2)) {
+                // We do not allow cookies to be handled by HttpClient, since one
+                // HttpClient instance is shared by multiple BayeuxClient instances.
+                // Instead, we store the cookies in the BayeuxClient instance.
+                Map<String, List<String>> cookies = new HashMap<>(1);
+                cookies.put(field.getName(), Collections.singletonList(field.getValue()));
+                storeCookies(uri, cookies);
+                return false;
+            }
+            return true;
+        }
+
+        private void storeCookies(URI uri, Map<String, List<String>> cookies) {
+            try {
+                _cookieManager.put(uri, cookies);
+            } catch (IOException x) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("", x);
                 }
-                return true;
             }
+        }
 
-            private void storeCookies(URI uri, Map<String, List<String>> cookies) {
-                try {
-                    _cookieManager.put(uri, cookies);
-                } catch (IOException x) {
-                    if (logger.isDebugEnabled()) {
-                        logger.debug("", x);
+        @Override
+        public void onContent(Response response, ByteBuffer byteBuffer) {
+            if (response.getStatus() != HttpStatus.OK_200) {
+                return;
+            }
+            try {
+                while (byteBuffer.hasRemaining()) {
+                    parse(byteBuffer.get());
+                }
+                // The messages of the last chunk are delivered when the
+                // response is complete, so that the messages sent by the
+                // listeners can reuse the connection of this response.
+                if (!closed) {
+                    deliver();
+                }
+            } catch (Throwable x) {
+                response.abort(x);
+            }
+        }
+
+        // Splits the response array into its elements, which are parsed as
+        // soon as they are complete, so that the messages are delivered while
+        // the rest of the response is still being received, and so that only
+        // one message at a time is buffered.
+        private void parse(byte b) throws ParseException {
+            if (string) {
+                buffer.write(b);
+                if (escape) {
+                    escape = false;
+                } else if (b == '\\') {
+                    escape = true;
+                } else if (b == '"') {
+                    string = false;
+                }
+                return;
+            }
+
+            switch (b) {
+                case '[':
+                case '{': {
+                    content = true;
+                    if (depth == 0 && b == '[') {
+                        array = true;
+                    } else {
+                        buffer.write(b);
+                    }
+                    ++depth;
+                    break;
+                }
+                case ']':
+                case '}': {
+                    --depth;
+                    if (depth == 0 && array) {
+                        closed = true;
+                        break;
+                    }
+                    buffer.write(b);
+                    if (depth == (array ? 1 : 0)) {
+                        element();
+                        closed = depth == 0;
                     }
+                    break;
+                }
+                case ',':
+                case ' ':
+                case '\t':
+                case '\r':
+                case '\n': {
+                    if (depth > (array ? 1 : 0)) {
+                        buffer.write(b);
+                    }
+                    break;
+                }
+                case '"': {
+                    string = true;
+                    buffer.write(b);
+                    break;
+                }
+                default: {
+                    buffer.write(b);
+                    break;
                 }
             }
 
-            @Override
-            public void onComplete(Result result) {
-                synchronized (LongPollingTransport.this) {
-                    _requests.remove(result.getRequest());
+            if (buffer.size() > _maxMessageSize) {
+                throw new IllegalArgumentException("Buffering capacity " + _maxMessageSize + " exceeded");
+            }
+        }
+
+        private void element() throws ParseException {
+            String element = new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+            buffer.reset();
+            List<Message.Mutable> messages = parseMessages("[" + element + "]");
+            for (Message.Mutable message : messages) {
+                if (message.isSuccessful() && Channel.META_CONNECT.equals(message.getChannel())) {
+                    Map<String, Object> advice = message.getAdvice();
+                    if (advice != null && advice.get("timeout") != null) {
+                        _advice = advice;
+                    }
                 }
+            }
+            parsed.addAll(messages);
+        }
 
-                if (result.isFailed()) {
-                    listener.onFailure(result.getFailure(), messages);
-                    return;
+        private void deliver() {
+            if (parsed.isEmpty()) {
+                return;
+            }
+            List<Message.Mutable> messages = new ArrayList<>(parsed);
+            parsed.clear();
+            if (logger.isDebugEnabled()) {
+                logger.debug("Received messages {}", messages);
+            }
+            for (Message.Mutable message : messages) {
+                String messageId = message.getId();
+                if (messageId != null) {
+                    replied.add(messageId);
                 }
+            }
+            delivered = true;
+            listener.onMessages(messages);
+        }
 
-                Response response = result.getResponse();
-                int status = response.getStatus();
-                if (status == HttpStatus.OK_200) {
-                    String content = getContentAsString();
-                    if (content != null && content.length() > 0) {
-                        try {
-                            List<Message.Mutable> messages = parseMessages(content);
-                            if (logger.isDebugEnabled()) {
-                                logger.debug("Received messages {}", messages);
-                            }
-                            for (Message.Mutable message : messages) {
-                                if (message.isSuccessful() && Channel.META_CONNECT.equals(message.getChannel())) {
-                                    Map<String, Object> advice = message.getAdvice();
-                                    if (advice != null && advice.get("timeout") != null) {
-                                        _advice = advice;
-                                    }
-                                }
-                            }
-                            listener.onMessages(messages);
-                        } catch (ParseException x) {
-                            listener.onFailure(x, messages);
-                        }
-                    } else {
-                        Map<String, Object> failure = new HashMap<>(2);
-                        // Convert the 200 into 204 (no content)
-                        failure.put("httpCode", 204);
-                        TransportException x = new TransportException(failure);
-                        listener.onFailure(x, messages);
+        @Override
+        public void onComplete(Result result) {
+            synchronized (LongPollingTransport.this) {
+                _requests.remove(result.getRequest());
+            }
+
+            if (result.isFailed()) {
+                listener.onFailure(result.getFailure(), unreplied());
+                return;
+            }
+
+            Response response = result.getResponse();
+            int status = response.getStatus();
+            if (status == HttpStatus.OK_200) {
+                if (depth != 0 || buffer.size() > 0) {
+                    listener.onFailure(new ParseException("Incomplete response", 0), unreplied());
+                } else if (content) {
+                    deliver();
+                    if (!delivered) {
+                        listener.onMessages(new ArrayList<>());
                     }
                 } else {
                     Map<String, Object> failure = new HashMap<>(2);
-                    failure.put("httpCode", status);
+                    // Convert the 200 into 204 (no content)
+                    failure.put("httpCode", 204);
                     TransportException x = new TransportException(failure);
                     listener.onFailure(x, messages);
                 }
+            } else {
+                Map<String, Object> failure = new HashMap<>(2);
+                failure.put("httpCode", status);
+                TransportException x = new TransportException(failure);
+                listener.onFailure(x, messages);
             }
-        });
-    }
+        }
 
-    protected void customize(Request request) {
+        private List<Message.Mutable> unreplied() {
+            if (replied.isEmpty()) {
+                return messages;
+            }
+            // Do not fail the messages whose replies have already been delivered.
+            List<Message.Mutable> result = new ArrayList<>(messages.size());
+            for (Message.Mutable message : messages) {
+                if (!replied.contains(message.getId())) {
+                    result.add(message);
+                }
+            }
+            return result;
+        }
     }
 
     public static class Factory extends ContainerLifeCycle implements ClientTransport.Factory {
@@ -268,4 +422,40 @@ public class LongPollingTransport extends HttpClientTransport {
             return new LongPollingTransport(url, options, httpClient);
         }
     }
+
+    /**
+     * <p>A factory of {@link LongPollingTransport}s that send their requests over HTTP/2,
+     * in clear-text (h2c) or, if a {@link SslContextFactory} is provided, over TLS.</p>
+     * <p>All the transports created by the same factory share the same {@link HttpClient},
+     * so that the concurrent requests of a client, such as a {@code /meta/connect} and a
+     * publish, as well as the requests of different clients, are multiplexed as streams
+     * over a single HTTP/2 connection per server.</p>
+     * <p>This factory requires the {@code org.eclipse.jetty.http2:http2-http-client-transport}
+     * artifact, which is an optional dependency of this module.</p>
+     */
+    public static class HTTP2Factory extends ContainerLifeCycle implements ClientTransport.Factory {
+        private final HttpClient httpClient;
+
+        public HTTP2Factory() {
+            this(null);
+        }
+
+        public HTTP2Factory(SslContextFactory sslContextFactory) {
+            this(new HTTP2Client(), sslContextFactory);
+        }
+
+        public HTTP2Factory(HTTP2Client http2Client, SslContextFactory sslContextFactory) {
+            this.httpClient = new HttpClient(new HttpClientTransportOverHTTP2(http2Client), sslContextFactory);
+            addBean(httpClient);
+        }
+
+        public HttpClient getHttpClient() {
+            return httpClient;
+        }
+
+        @Override
+        public ClientTransport newClientTransport(String url, Map<String, Object> options) {
+            return new LongPollingTransport(url, options, httpClient);
+        }
+    }
 }
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2008-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cometd.client;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.cometd.bayeux.Message;
+import org.cometd.client.transport.LongPollingTransport;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AutoBatchTest extends ClientServerTest {
+    @Before
+    public void init() throws Exception {
+        start(null);
+    }
+
+    @Test
+    public void testAutoBatchSentAfterMaxDelay() throws Exception {
+        List<List<String>> batches = new CopyOnWriteArrayList<>();
+        BayeuxClient client = newRecordingBayeuxClient(batches);
+        client.setOption(BayeuxClient.AUTO_BATCH_MAX_DELAY_OPTION, 500);
+        client.handshake();
+        Assert.assertTrue(client.waitFor(5000, BayeuxClient.State.CONNECTED));
+
+        int count = 3;
+        CountDownLatch latch = new CountDownLatch(count);
+        String channelName = "/auto";
+        for (int i = 0; i < count; ++i) {
+            client.getChannel(channelName).publish("data" + i, message -> {
+                if (message.isSuccessful()) {
+                    latch.countDown();
+                }
+            });
+        }
+
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(batches.toString(), batches.stream()
+                .anyMatch(batch -> batch.stream().filter(channelName::equals).count() == count));
+
+        disconnectBayeuxClient(client);
+    }
+
+    @Test
+    public void testAutoBatchSentWhenMaxSizeReached() throws Exception {
+        List<List<String>> batches = new CopyOnWriteArrayList<>();
+        BayeuxClient client = newRecordingBayeuxClient(batches);
+        // The delay is long, so the batch must be sent because of its size.
+        client.setOption(BayeuxClient.AUTO_BATCH_MAX_DELAY_OPTION, 60000);
+        client.setOption(BayeuxClient.AUTO_BATCH_MAX_SIZE_OPTION, 2);
+        client.handshake();
+        Assert.assertTrue(client.waitFor(5000, BayeuxClient.State.CONNECTED));
+
+        String channelName = "/auto";
+        CountDownLatch latch = new CountDownLatch(2);
+        client.getChannel(channelName).publish("data1", message -> latch.countDown());
+        client.getChannel(channelName).publish("data2", message -> latch.countDown());
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+        // The third message stays in the batch until disconnect.
+        CountDownLatch pendingLatch = new CountDownLatch(1);
+        client.getChannel(channelName).publish("data3", message -> pendingLatch.countDown());
+        Assert.assertFalse(pendingLatch.await(1, TimeUnit.SECONDS));
+
+        disconnectBayeuxClient(client);
+        Assert.assertTrue(pendingLatch.await(5, TimeUnit.SECONDS));
+    }
+
+    private BayeuxClient newRecordingBayeuxClient(List<List<String>> batches) {
+        return new BayeuxClient(cometdURL, new LongPollingTransport(null, httpClient)) {
+            @Override
+            public void onSending(List<? extends Message> messages) {
+                List<String> channels = new CopyOnWriteArrayList<>();
+                messages.forEach(message -> channels.add(message.getChannel()));
+                batches.add(channels);
+            }
+        };
+    }
+}
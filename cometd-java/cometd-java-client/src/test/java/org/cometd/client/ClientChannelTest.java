@@ -15,7 +15,13 @@
  */
 package org.cometd.client;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.cometd.bayeux.Promise;
 import org.cometd.bayeux.client.ClientSessionChannel;
+import org.cometd.common.HashMapMessage;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -34,4 +40,75 @@ public class ClientChannelTest extends ClientServerTest {
 
         disconnectBayeuxClient(client);
     }
+
+    @Test
+    public void testWildChannelListenersNotifiedInOrder() throws Exception {
+        start(null);
+
+        BayeuxClient client = newBayeuxClient();
+
+        List<String> notified = new CopyOnWriteArrayList<>();
+        List<String> channelNames = Arrays.asList("/**", "/a/**", "/a/*", "/a/b/**", "/a/b/*", "/a/b/c", "/a/b/c/*", "/x/**");
+        for (String channelName : channelNames) {
+            client.getChannel(channelName).addListener((ClientSessionChannel.MessageListener)(c, m) -> notified.add(c.getId()));
+        }
+
+        HashMapMessage message = new HashMapMessage();
+        message.setChannel("/a/b/c");
+        client.receive(message, Promise.noop());
+
+        Assert.assertEquals(Arrays.asList("/a/b/c", "/a/b/*", "/a/b/**", "/a/**", "/**"), notified);
+
+        // Released wild channels must not be notified anymore.
+        notified.clear();
+        ClientSessionChannel channel = client.getChannel("/a/b/**");
+        channel.getListeners().forEach(channel::removeListener);
+        Assert.assertTrue(channel.release());
+
+        message = new HashMapMessage();
+        message.setChannel("/a/b/c");
+        client.receive(message, Promise.noop());
+
+        Assert.assertEquals(Arrays.asList("/a/b/c", "/a/b/*", "/a/**", "/**"), notified);
+
+        disconnectBayeuxClient(client);
+    }
+
+    @Test
+    public void testWildChannelsReleasedAndCreatedAgain() throws Exception {
+        start(null);
+
+        BayeuxClient client = newBayeuxClient();
+
+        List<String> notified = new CopyOnWriteArrayList<>();
+        ClientSessionChannel.MessageListener listener = (c, m) -> notified.add(c.getId());
+        ClientSessionChannel channelAB = client.getChannel("/a/b/*");
+        channelAB.addListener(listener);
+        client.getChannel("/a/c/*").addListener(listener);
+
+        // Releasing a wild channel must not affect its siblings.
+        channelAB.removeListener(listener);
+        Assert.assertTrue(channelAB.release());
+
+        HashMapMessage message = new HashMapMessage();
+        message.setChannel("/a/c/d");
+        client.receive(message, Promise.noop());
+        message = new HashMapMessage();
+        message.setChannel("/a/b/d");
+        client.receive(message, Promise.noop());
+
+        Assert.assertEquals(Arrays.asList("/a/c/*"), notified);
+
+        // A wild channel created again after its branch has been pruned must be notified.
+        notified.clear();
+        client.getChannel("/a/b/*").addListener(listener);
+
+        message = new HashMapMessage();
+        message.setChannel("/a/b/d");
+        client.receive(message, Promise.noop());
+
+        Assert.assertEquals(Arrays.asList("/a/b/*"), notified);
+
+        disconnectBayeuxClient(client);
+    }
 }
@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2008-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cometd.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cometd.bayeux.Promise;
+import org.cometd.bayeux.server.ServerSession;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DispatchExecutorTest extends ClientServerTest {
+    private ExecutorService executor;
+
+    @Before
+    public void init() throws Exception {
+        start(null);
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void dispose() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testSlowListenerDoesNotDelayOtherChannels() throws Exception {
+        BayeuxClient client = newBayeuxClient();
+        client.setOption(BayeuxClient.DISPATCH_EXECUTOR_OPTION, executor);
+        client.handshake();
+        Assert.assertTrue(client.waitFor(5000, BayeuxClient.State.CONNECTED));
+
+        String slowChannel = "/slow";
+        String fastChannel = "/fast";
+        CountDownLatch slowLatch = new CountDownLatch(1);
+        CountDownLatch slowDoneLatch = new CountDownLatch(2);
+        CountDownLatch subscribeLatch = new CountDownLatch(2);
+        client.getChannel(slowChannel).subscribe((channel, message) -> {
+            try {
+                slowLatch.await();
+                slowDoneLatch.countDown();
+            } catch (InterruptedException x) {
+                throw new RuntimeException(x);
+            }
+        }, message -> subscribeLatch.countDown());
+        int count = 20;
+        List<Object> fastData = new CopyOnWriteArrayList<>();
+        CountDownLatch fastLatch = new CountDownLatch(count);
+        client.getChannel(fastChannel).subscribe((channel, message) -> {
+            fastData.add(message.getData());
+            fastLatch.countDown();
+        }, message -> subscribeLatch.countDown());
+        Assert.assertTrue(subscribeLatch.await(5, TimeUnit.SECONDS));
+
+        bayeux.createChannelIfAbsent(slowChannel).getReference().publish(null, "slow1", Promise.noop());
+        bayeux.createChannelIfAbsent(slowChannel).getReference().publish(null, "slow2", Promise.noop());
+        List<Object> expected = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            String data = "fast" + i;
+            expected.add(data);
+            bayeux.createChannelIfAbsent(fastChannel).getReference().publish(null, data, Promise.noop());
+        }
+
+        // The listener on the slow channel is still blocked.
+        Assert.assertTrue(fastLatch.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(expected, fastData);
+
+        slowLatch.countDown();
+        Assert.assertTrue(slowDoneLatch.await(5, TimeUnit.SECONDS));
+
+        disconnectBayeuxClient(client);
+    }
+
+    @Test
+    public void testBoundedDispatchQueuePreservesOrder() throws Exception {
+        BayeuxClient client = newBayeuxClient();
+        client.setOption(BayeuxClient.DISPATCH_EXECUTOR_OPTION, executor);
+        client.setOption(BayeuxClient.MAX_DISPATCH_QUEUE_SIZE_OPTION, 2);
+        client.handshake();
+        Assert.assertTrue(client.waitFor(5000, BayeuxClient.State.CONNECTED));
+
+        String channelName = "/bounded";
+        int count = 50;
+        List<Object> data = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(count);
+        CountDownLatch subscribeLatch = new CountDownLatch(1);
+        client.getChannel(channelName).subscribe((channel, message) -> {
+            sleep(10);
+            data.add(message.getData());
+            latch.countDown();
+        }, message -> subscribeLatch.countDown());
+        Assert.assertTrue(subscribeLatch.await(5, TimeUnit.SECONDS));
+
+        List<Object> expected = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            expected.add((long)i);
+            bayeux.createChannelIfAbsent(channelName).getReference().publish(null, i, Promise.noop());
+        }
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(expected, data);
+
+        disconnectBayeuxClient(client);
+    }
+
+    @Test
+    public void testCongestedChannelDoesNotBlockOtherChannels() throws Exception {
+        BayeuxClient client = newBayeuxClient();
+        client.setOption(BayeuxClient.DISPATCH_EXECUTOR_OPTION, executor);
+        client.setOption(BayeuxClient.MAX_DISPATCH_QUEUE_SIZE_OPTION, 1);
+        client.handshake();
+        Assert.assertTrue(client.waitFor(5000, BayeuxClient.State.CONNECTED));
+
+        String slowChannel = "/slow";
+        String fastChannel = "/fast";
+        CountDownLatch slowLatch = new CountDownLatch(1);
+        CountDownLatch slowDoneLatch = new CountDownLatch(3);
+        CountDownLatch subscribeLatch = new CountDownLatch(2);
+        client.getChannel(slowChannel).subscribe((channel, message) -> {
+            try {
+                slowLatch.await();
+                slowDoneLatch.countDown();
+            } catch (InterruptedException x) {
+                throw new RuntimeException(x);
+            }
+        }, message -> subscribeLatch.countDown());
+        BlockingQueue<Object> fastData = new LinkedBlockingQueue<>();
+        client.getChannel(fastChannel).subscribe((channel, message) -> fastData.offer(message.getData()), message -> subscribeLatch.countDown());
+        Assert.assertTrue(subscribeLatch.await(5, TimeUnit.SECONDS));
+
+        // Deliver all the messages in the same response.
+        ServerSession session = bayeux.getSession(client.getId());
+        session.batch(() -> {
+            session.deliver(null, slowChannel, "slow1", Promise.noop());
+            session.deliver(null, slowChannel, "slow2", Promise.noop());
+            session.deliver(null, slowChannel, "slow3", Promise.noop());
+            session.deliver(null, fastChannel, "fast1", Promise.noop());
+        });
+
+        // The slow channel is congested, but the
+        // messages of the fast channel are notified.
+        Assert.assertEquals("fast1", fastData.poll(5, TimeUnit.SECONDS));
+
+        // Once the slow channel catches up, messages flow again.
+        slowLatch.countDown();
+        Assert.assertTrue(slowDoneLatch.await(5, TimeUnit.SECONDS));
+        bayeux.createChannelIfAbsent(fastChannel).getReference().publish(null, "fast2", Promise.noop());
+        Assert.assertEquals("fast2", fastData.poll(5, TimeUnit.SECONDS));
+
+        disconnectBayeuxClient(client);
+    }
+
+    @Test
+    public void testQueuedMessagesAreDiscardedOnDisconnect() throws Exception {
+        BayeuxClient client = newBayeuxClient();
+        client.setOption(BayeuxClient.DISPATCH_EXECUTOR_OPTION, executor);
+        client.handshake();
+        Assert.assertTrue(client.waitFor(5000, BayeuxClient.State.CONNECTED));
+
+        String channelName = "/slow";
+        CountDownLatch slowLatch = new CountDownLatch(1);
+        CountDownLatch messageLatch = new CountDownLatch(1);
+        AtomicInteger notified = new AtomicInteger();
+        CountDownLatch subscribeLatch = new CountDownLatch(1);
+        client.getChannel(channelName).subscribe((channel, message) -> {
+            notified.incrementAndGet();
+            messageLatch.countDown();
+            try {
+                slowLatch.await();
+            } catch (InterruptedException x) {
+                throw new RuntimeException(x);
+            }
+        }, message -> subscribeLatch.countDown());
+        Assert.assertTrue(subscribeLatch.await(5, TimeUnit.SECONDS));
+
+        ServerSession session = bayeux.getSession(client.getId());
+        session.batch(() -> {
+            for (int i = 0; i < 3; ++i) {
+                session.deliver(null, channelName, i, Promise.noop());
+            }
+        });
+        Assert.assertTrue(messageLatch.await(5, TimeUnit.SECONDS));
+
+        Assert.assertTrue(client.disconnect(5000));
+        slowLatch.countDown();
+
+        // The queued messages are not notified after the disconnection.
+        sleep(500);
+        Assert.assertEquals(1, notified.get());
+    }
+
+    @Test
+    public void testMetaMessagesAreNotDispatched() throws Exception {
+        BayeuxClient client = newBayeuxClient();
+        client.setOption(BayeuxClient.DISPATCH_EXECUTOR_OPTION, (Executor)task -> new Thread(task, "dispatcher").start());
+        client.handshake();
+        Assert.assertTrue(client.waitFor(5000, BayeuxClient.State.CONNECTED));
+
+        String channelName = "/dispatched";
+        BlockingQueue<String> threads = new LinkedBlockingQueue<>();
+        client.getChannel(channelName).subscribe((channel, message) -> threads.offer(Thread.currentThread().getName()),
+                message -> threads.offer(Thread.currentThread().getName()));
+        Assert.assertNotEquals("dispatcher", threads.poll(5, TimeUnit.SECONDS));
+
+        bayeux.createChannelIfAbsent(channelName).getReference().publish(null, "data", Promise.noop());
+        Assert.assertEquals("dispatcher", threads.poll(5, TimeUnit.SECONDS));
+
+        disconnectBayeuxClient(client);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException x) {
+            throw new RuntimeException(x);
+        }
+    }
+}
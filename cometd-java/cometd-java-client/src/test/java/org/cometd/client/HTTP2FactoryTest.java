@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2008-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cometd.client;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.cometd.client.transport.LongPollingTransport;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HTTP2FactoryTest extends HTTP2ClientServerTest {
+    private final LongPollingTransport.HTTP2Factory factory = new LongPollingTransport.HTTP2Factory();
+
+    @Override
+    protected void startClient() throws Exception {
+        super.startClient();
+        factory.start();
+    }
+
+    @After
+    public void stopFactory() throws Exception {
+        factory.stop();
+    }
+
+    @Test
+    public void testClientsShareOneHTTP2Connection() throws Exception {
+        start(null);
+
+        int count = 5;
+        List<BayeuxClient> clients = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            BayeuxClient client = new BayeuxClient(cometdURL, factory.newClientTransport(cometdURL, new HashMap<>()));
+            clients.add(client);
+            client.handshake();
+        }
+        for (BayeuxClient client : clients) {
+            Assert.assertTrue(client.waitFor(5000, BayeuxClient.State.CONNECTED));
+        }
+
+        // While all the /meta/connects are held by the server, the
+        // publishes are sent concurrently over the same connection.
+        String channelName = "/h2";
+        CountDownLatch subscribeLatch = new CountDownLatch(count);
+        CountDownLatch messageLatch = new CountDownLatch(count * count);
+        for (BayeuxClient client : clients) {
+            client.getChannel(channelName).subscribe((channel, message) -> messageLatch.countDown(), message -> subscribeLatch.countDown());
+        }
+        Assert.assertTrue(subscribeLatch.await(5, TimeUnit.SECONDS));
+        for (BayeuxClient client : clients) {
+            client.getChannel(channelName).publish("data");
+        }
+        Assert.assertTrue(messageLatch.await(5, TimeUnit.SECONDS));
+
+        Assert.assertEquals(1, connector.getConnectedEndPoints().size());
+
+        for (BayeuxClient client : clients) {
+            disconnectBayeuxClient(client);
+        }
+    }
+}
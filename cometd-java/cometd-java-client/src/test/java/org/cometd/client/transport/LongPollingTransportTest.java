@@ -210,6 +210,71 @@ public class LongPollingTransportTest {
         }
     }
 
+    @Test
+    public void testResponseMessagesDeliveredWhileStreaming() throws Exception {
+        final ServerSocket serverSocket = new ServerSocket(0);
+        final AtomicReference<Exception> serverException = new AtomicReference<>();
+        final CountDownLatch firstLatch = new CountDownLatch(1);
+        final AtomicReference<Boolean> firstBeforeLast = new AtomicReference<>();
+        Thread serverThread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Socket socket = serverSocket.accept();
+
+                    OutputStream output = socket.getOutputStream();
+                    output.write((
+                            "HTTP/1.1 200 OK\r\n" +
+                                    "Connection: close\r\n" +
+                                    "Content-Type: application/json;charset=UTF-8\r\n" +
+                                    "\r\n" +
+                                    "[{\"id\":\"1\",\"channel\":\"/foo\",\"data\":\"]}\\\"{[\"},").getBytes("UTF-8"));
+                    output.flush();
+
+                    // The first message must be delivered before the response is complete.
+                    firstBeforeLast.set(firstLatch.await(5, TimeUnit.SECONDS));
+
+                    output.write("{\"id\":\"2\",\"channel\":\"/foo\",\"data\":{\"k\":[1,2]}}]".getBytes("UTF-8"));
+                    output.flush();
+                    socket.close();
+                } catch (Exception x) {
+                    serverException.set(x);
+                }
+            }
+        };
+        serverThread.start();
+        String serverURL = "http://localhost:" + serverSocket.getLocalPort();
+
+        try {
+            HttpClientTransport transport = new LongPollingTransport(null, httpClient);
+            transport.setURL(serverURL);
+            transport.setCookieStore(new HttpCookieStore());
+            transport.init();
+
+            final List<Message.Mutable> received = new ArrayList<>();
+            final CountDownLatch lastLatch = new CountDownLatch(1);
+            transport.send(new TransportListener.Empty() {
+                @Override
+                public void onMessages(List<Message.Mutable> messages) {
+                    received.addAll(messages);
+                    firstLatch.countDown();
+                    if (received.size() == 2) {
+                        lastLatch.countDown();
+                    }
+                }
+            }, new ArrayList<Message.Mutable>());
+
+            assertTrue(lastLatch.await(5, TimeUnit.SECONDS));
+            assertEquals("]}\"{[", received.get(0).getData());
+            assertEquals("2", received.get(1).getId());
+        } finally {
+            serverThread.join();
+            assertNull(serverException.get());
+            assertTrue(firstBeforeLast.get());
+            serverSocket.close();
+        }
+    }
+
     @Test
     public void testSendWithServerDown() throws Exception {
         ServerSocket serverSocket = new ServerSocket(0);
@@ -17,6 +17,7 @@ package org.cometd.common;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -27,6 +28,7 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.cometd.bayeux.Channel;
 import org.cometd.bayeux.ChannelId;
@@ -52,6 +54,7 @@ public abstract class AbstractClientSession implements ClientSession, Dumpable {
     private final List<Extension> _extensions = new CopyOnWriteArrayList<>();
     private final AttributesMap _attributes = new AttributesMap();
     private final ConcurrentMap<String, AbstractSessionChannel> _channels = new ConcurrentHashMap<>();
+    private final WildChannelNode _wildChannels = new WildChannelNode(null);
     private final Map<String, ClientSession.MessageListener> _callbacks = new ConcurrentHashMap<>();
     private final Map<String, ClientSessionChannel.MessageListener> _subscribers = new ConcurrentHashMap<>();
     private final Map<String, MessageListener> _remoteCalls = new ConcurrentHashMap<>();
@@ -144,6 +147,9 @@ public abstract class AbstractClientSession implements ClientSession, Dumpable {
         channel = _channels.putIfAbsent(channelId.getId(), newChannel);
         if (channel == null) {
             channel = newChannel;
+            if (channelId.isWild()) {
+                _wildChannels.add(channel);
+            }
         }
         return channel;
     }
@@ -299,22 +305,42 @@ public abstract class AbstractClientSession implements ClientSession, Dumpable {
             }
         }
 
-        MarkedReference<AbstractSessionChannel> channelRef = getReleasableChannel(message.getChannel());
-        AbstractSessionChannel channel = channelRef.getReference();
-        channel.notifyMessageListeners(message);
-        if (channelRef.isMarked()) {
-            channel.release();
+        // Only the channels that exist may have listeners, so there
+        // is no need to create (and then release) the other channels.
+        String channelName = message.getChannel();
+        AbstractSessionChannel channel = _channels.get(channelName);
+        if (channel != null && !channel.isReleased()) {
+            channel.notifyMessageListeners(message);
+        }
+
+        if (!_wildChannels.isEmpty() && !channelName.endsWith("/*") && !channelName.endsWith("/**")) {
+            notifyWildListeners(_wildChannels, channelName, 1, message);
         }
+    }
 
-        ChannelId channelId = channel.getChannelId();
-        for (String wildChannelName : channelId.getWilds()) {
-            MarkedReference<AbstractSessionChannel> wildChannelRef = getReleasableChannel(wildChannelName);
-            AbstractSessionChannel wildChannel = wildChannelRef.getReference();
-            wildChannel.notifyMessageListeners(message);
-            if (wildChannelRef.isMarked()) {
-                wildChannel.release();
+    private void notifyWildListeners(WildChannelNode node, String channelName, int start, Message.Mutable message) {
+        // Visits the wild channels in the same order of ChannelId.getWilds(),
+        // for example /a/b/*, /a/b/**, /a/**, /** for channel /a/b/c.
+        int end = channelName.indexOf('/', start);
+        if (end < 0) {
+            notifyWildListeners(node._wild, message);
+        } else {
+            // Wild channels do not match beyond a template segment.
+            if (end == start || channelName.charAt(start) != '{' || channelName.charAt(end - 1) != '}') {
+                WildChannelNode child = node.child(channelName, start, end);
+                if (child != null) {
+                    notifyWildListeners(child, channelName, end + 1, message);
+                }
             }
         }
+        notifyWildListeners(node._deepWild, message);
+    }
+
+    private void notifyWildListeners(AtomicReference<AbstractSessionChannel> reference, Message.Mutable message) {
+        AbstractSessionChannel channel = reference.get();
+        if (channel != null && !channel.isReleased()) {
+            channel.notifyMessageListeners(message);
+        }
     }
 
     protected void notifyCallback(ClientSession.MessageListener callback, Message.Mutable message) {
@@ -528,6 +554,9 @@ public abstract class AbstractClientSession implements ClientSession, Dumpable {
             if (_subscriptions.isEmpty() && _listeners.isEmpty()) {
                 boolean removed = _channels.remove(getId(), this);
                 _released = removed;
+                if (removed && isWild()) {
+                    _wildChannels.remove(this);
+                }
                 return removed;
             }
             return false;
@@ -681,4 +710,97 @@ public abstract class AbstractClientSession implements ClientSession, Dumpable {
             return String.format("%s@%x[%s]", _id, hashCode(), AbstractClientSession.this);
         }
     }
+
+    /**
+     * <p>A node of the trie of the wild channels of this session, indexed by
+     * the segments of the channel names, so that the wild channels matching
+     * a message can be found without computing the wild channel names.</p>
+     */
+    private static class WildChannelNode {
+        private static final WildChannelNode[] NO_CHILDREN = new WildChannelNode[0];
+
+        private final String _segment;
+        private final AtomicReference<AbstractSessionChannel> _wild = new AtomicReference<>();
+        private final AtomicReference<AbstractSessionChannel> _deepWild = new AtomicReference<>();
+        // Copy-on-write, modified only by the root while holding its lock,
+        // so that the lookups do not lock nor allocate.
+        private volatile WildChannelNode[] _children = NO_CHILDREN;
+
+        private WildChannelNode(String segment) {
+            _segment = segment;
+        }
+
+        private boolean isEmpty() {
+            return _children.length == 0 && _wild.get() == null && _deepWild.get() == null;
+        }
+
+        private WildChannelNode child(String channelName, int start, int end) {
+            int length = end - start;
+            for (WildChannelNode child : _children) {
+                String segment = child._segment;
+                if (segment.length() == length && channelName.regionMatches(start, segment, 0, length)) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        private WildChannelNode child(String segment) {
+            return child(segment, 0, segment.length());
+        }
+
+        private void add(AbstractSessionChannel channel) {
+            ChannelId channelId = channel.getChannelId();
+            synchronized (this) {
+                WildChannelNode node = this;
+                for (int i = 0; i < channelId.depth() - 1; ++i) {
+                    String segment = channelId.getSegment(i);
+                    WildChannelNode child = node.child(segment);
+                    if (child == null) {
+                        child = new WildChannelNode(segment);
+                        WildChannelNode[] children = Arrays.copyOf(node._children, node._children.length + 1);
+                        children[children.length - 1] = child;
+                        node._children = children;
+                    }
+                    node = child;
+                }
+                (channelId.isDeepWild() ? node._deepWild : node._wild).set(channel);
+            }
+        }
+
+        private void remove(AbstractSessionChannel channel) {
+            ChannelId channelId = channel.getChannelId();
+            int depth = channelId.depth() - 1;
+            synchronized (this) {
+                WildChannelNode[] path = new WildChannelNode[depth + 1];
+                path[0] = this;
+                for (int i = 0; i < depth; ++i) {
+                    WildChannelNode child = path[i].child(channelId.getSegment(i));
+                    if (child == null) {
+                        return;
+                    }
+                    path[i + 1] = child;
+                }
+                WildChannelNode node = path[depth];
+                (channelId.isDeepWild() ? node._deepWild : node._wild).compareAndSet(channel, null);
+                // Prune the nodes left empty, so that dispatching does
+                // not walk the trie when there are no wild channels.
+                for (int i = depth; i > 0 && path[i].isEmpty(); --i) {
+                    path[i - 1].removeChild(path[i]);
+                }
+            }
+        }
+
+        private void removeChild(WildChannelNode child) {
+            WildChannelNode[] children = _children;
+            WildChannelNode[] result = new WildChannelNode[children.length - 1];
+            int index = 0;
+            for (WildChannelNode c : children) {
+                if (c != child) {
+                    result[index++] = c;
+                }
+            }
+            _children = result;
+        }
+    }
 }
@@ -17,6 +17,7 @@ package org.cometd.common;
 
 import java.io.InputStream;
 import java.io.Reader;
+import java.io.StringReader;
 import java.text.ParseException;
 import java.util.List;
 
@@ -37,6 +38,20 @@ public interface JSONContext {
     public interface Generator {
         public String generate(Object object);
     }
+
+    public interface Converter {
+        /**
+         * <p>Converts an object obtained by parsing JSON, typically a {@code Map},
+         * into an object of the given type.</p>
+         *
+         * @param object the object to convert
+         * @param type   the type to convert to
+         * @param <T>    the type to convert to
+         * @return the converted object
+         * @throws ParseException if the object cannot be converted
+         */
+        public <T> T convert(Object object, Class<T> type) throws ParseException;
+    }
 }
 
 interface JSONParserGenerator<T extends Message.Mutable> {
@@ -53,4 +68,17 @@ interface JSONParserGenerator<T extends Message.Mutable> {
     public JSONContext.Parser getParser();
 
     public JSONContext.Generator getGenerator();
+
+    public default JSONContext.Converter getConverter() {
+        return new JSONContext.Converter() {
+            @Override
+            public <R> R convert(Object object, Class<R> type) throws ParseException {
+                if (object == null || type.isInstance(object)) {
+                    return type.cast(object);
+                }
+                String json = getGenerator().generate(object);
+                return getParser().parse(new StringReader(json), type);
+            }
+        };
+    }
 }
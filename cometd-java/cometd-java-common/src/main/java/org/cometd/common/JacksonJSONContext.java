@@ -89,6 +89,10 @@ public abstract class JacksonJSONContext<T extends Message.Mutable, I extends T>
         return new ObjectMapperGenerator();
     }
 
+    public JSONContext.Converter getConverter() {
+        return new ObjectMapperConverter();
+    }
+
     private class ObjectMapperParser implements JSONContext.Parser {
         @Override
         public <T> T parse(Reader reader, Class<T> type) throws ParseException {
@@ -100,6 +104,18 @@ public abstract class JacksonJSONContext<T extends Message.Mutable, I extends T>
         }
     }
 
+    private class ObjectMapperConverter implements JSONContext.Converter {
+        @Override
+        public <R> R convert(Object object, Class<R> type) throws ParseException {
+            try {
+                // Binds the object directly, without generating and parsing JSON.
+                return getObjectMapper().convertValue(object, type);
+            } catch (IllegalArgumentException x) {
+                throw (ParseException)new ParseException("", -1).initCause(x);
+            }
+        }
+    }
+
     private class ObjectMapperGenerator implements JSONContext.Generator {
         @Override
         public String generate(Object object) {
@@ -38,6 +38,14 @@ public abstract class JettyJSONContext<T extends Message.Mutable> {
         return _jsonParser;
     }
 
+    /**
+     * @param name the name of a top-level field of a message
+     * @return the JSON parser for the value of the given message field
+     */
+    protected JSON getJSON(String name) {
+        return getJSON();
+    }
+
     protected abstract T newRoot();
 
     protected abstract T[] newRootArray(int size);
@@ -93,6 +101,10 @@ public abstract class JettyJSONContext<T extends Message.Mutable> {
         return new JSONGenerator();
     }
 
+    public JSONContext.Converter getConverter() {
+        return new JSONConverter();
+    }
+
     private class FieldJSON extends JSON {
         // Allows for optimizations
 
@@ -111,7 +123,7 @@ public abstract class JettyJSONContext<T extends Message.Mutable> {
 
         @Override
         protected JSON contextFor(String field) {
-            return getJSON();
+            return getJSON(field);
         }
 
         @Override
@@ -133,7 +145,7 @@ public abstract class JettyJSONContext<T extends Message.Mutable> {
 
         @Override
         protected JSON contextFor(String field) {
-            return getJSON();
+            return getJSON(field);
         }
 
         @Override
@@ -155,6 +167,23 @@ public abstract class JettyJSONContext<T extends Message.Mutable> {
         }
     }
 
+    private class JSONConverter implements JSONContext.Converter {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <R> R convert(Object object, Class<R> type) throws ParseException {
+            if (object == null || type.isInstance(object)) {
+                return type.cast(object);
+            }
+            if (object instanceof Map) {
+                JSON.Convertor convertor = _jsonParser.getConvertor(type);
+                if (convertor != null) {
+                    return type.cast(convertor.fromJSON((Map<String, Object>)object));
+                }
+            }
+            throw new ParseException("No convertor for " + type.getName(), -1);
+        }
+    }
+
     private class JSONGenerator implements JSONContext.Generator {
         @Override
         public String generate(Object object) {
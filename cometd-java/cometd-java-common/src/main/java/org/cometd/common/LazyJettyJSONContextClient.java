@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2008-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cometd.common;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import org.cometd.bayeux.Message;
+import org.eclipse.jetty.util.ajax.JSON;
+
+/**
+ * <p>A {@link JSONContext.Client} that parses the envelope fields of messages,
+ * such as the channel, the id or the advice, but defers the parsing of the
+ * {@code data} and {@code ext} fields until they are accessed.</p>
+ * <p>Applications that receive many messages but only look at the data of
+ * few of them save the time and the garbage of parsing the data of the others.</p>
+ */
+public class LazyJettyJSONContextClient extends JettyJSONContextClient {
+    private final JSON _rawJSON = new RawJSON();
+
+    @Override
+    protected JSON getJSON(String name) {
+        if (Message.DATA_FIELD.equals(name) || Message.EXT_FIELD.equals(name)) {
+            return _rawJSON;
+        }
+        return super.getJSON(name);
+    }
+
+    @Override
+    protected Message.Mutable newRoot() {
+        return new LazyMessage();
+    }
+
+    /**
+     * <p>Captures the text of JSON objects and arrays, without parsing it;
+     * other JSON values are parsed normally, since they are cheap to parse.</p>
+     */
+    private class RawJSON extends JSON {
+        @Override
+        public Object parse(Source source) {
+            while (source.hasNext() && Character.isWhitespace(source.peek())) {
+                source.next();
+            }
+            if (!source.hasNext()) {
+                return null;
+            }
+
+            char first = source.peek();
+            if (first != '{' && first != '[') {
+                return getJSON().parse(source);
+            }
+
+            StringBuilder builder = new StringBuilder();
+            int depth = 0;
+            boolean string = false;
+            boolean escape = false;
+            while (source.hasNext()) {
+                char c = source.next();
+                builder.append(c);
+                if (string) {
+                    if (escape) {
+                        escape = false;
+                    } else if (c == '\\') {
+                        escape = true;
+                    } else if (c == '"') {
+                        string = false;
+                    }
+                } else if (c == '"') {
+                    string = true;
+                } else if (c == '{' || c == '[') {
+                    ++depth;
+                } else if (c == '}' || c == ']') {
+                    if (--depth == 0) {
+                        return new LazyValue(builder.toString());
+                    }
+                }
+            }
+            throw new IllegalStateException("Incomplete JSON " + builder);
+        }
+    }
+
+    private class LazyValue {
+        private final String json;
+
+        private LazyValue(String json) {
+            this.json = json;
+        }
+
+        private Object parse() {
+            return getJSON().fromJSON(json);
+        }
+
+        @Override
+        public String toString() {
+            return json;
+        }
+    }
+
+    /**
+     * <p>A message that parses the lazy fields the first time they are accessed,
+     * either directly or by iterating over the message fields.</p>
+     */
+    private class LazyMessage extends HashMapMessage {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Object get(Object key) {
+            Object value = super.get(key);
+            if (value instanceof LazyValue) {
+                value = ((LazyValue)value).parse();
+                super.put((String)key, value);
+            }
+            return value;
+        }
+
+        @Override
+        public Object getOrDefault(Object key, Object defaultValue) {
+            return containsKey(key) ? get(key) : defaultValue;
+        }
+
+        @Override
+        public Object remove(Object key) {
+            Object value = get(key);
+            super.remove(key);
+            return value;
+        }
+
+        @Override
+        public boolean containsValue(Object value) {
+            parseAll();
+            return super.containsValue(value);
+        }
+
+        @Override
+        public Set<Map.Entry<String, Object>> entrySet() {
+            parseAll();
+            return super.entrySet();
+        }
+
+        @Override
+        public Collection<Object> values() {
+            parseAll();
+            return super.values();
+        }
+
+        @Override
+        public void forEach(BiConsumer<? super String, ? super Object> action) {
+            parseAll();
+            super.forEach(action);
+        }
+
+        private void parseAll() {
+            get(DATA_FIELD);
+            get(EXT_FIELD);
+        }
+
+        private Object writeReplace() {
+            return new HashMapMessage(this);
+        }
+    }
+}
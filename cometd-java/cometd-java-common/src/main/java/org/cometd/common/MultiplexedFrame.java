@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2008-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cometd.common;
+
+import java.text.ParseException;
+
+/**
+ * <p>A frame that carries the messages of one of the many Bayeux sessions that
+ * are multiplexed over the same WebSocket connection.</p>
+ * <p>Multiplexed frames are JSON objects that wrap the JSON array of messages
+ * with the key of the logical session they belong to:</p>
+ * <pre>
+ * {"session":"&lt;key&gt;","messages":[...]}
+ * </pre>
+ * <p>while a logical session is closed, without closing the WebSocket
+ * connection, with the frame:</p>
+ * <pre>
+ * {"session":"&lt;key&gt;","close":&lt;code&gt;}
+ * </pre>
+ * <p>Non multiplexed frames are JSON arrays, so they can be told apart
+ * from multiplexed frames by their first character.</p>
+ */
+public class MultiplexedFrame {
+    private static final String SESSION_PREFIX = "{\"session\":\"";
+    private static final String MESSAGES_INFIX = "\",\"messages\":";
+    private static final String CLOSE_INFIX = "\",\"close\":";
+
+    private final String session;
+    private final String content;
+    private final int closeCode;
+
+    private MultiplexedFrame(String session, String content, int closeCode) {
+        this.session = session;
+        this.content = content;
+        this.closeCode = closeCode;
+    }
+
+    /**
+     * @return the key of the logical session this frame belongs to
+     */
+    public String getSession() {
+        return session;
+    }
+
+    /**
+     * @return the JSON array of messages, or null if this is a close frame
+     */
+    public String getContent() {
+        return content;
+    }
+
+    /**
+     * @return whether this frame closes the logical session
+     */
+    public boolean isClose() {
+        return content == null;
+    }
+
+    /**
+     * @return the close code, or -1 if this is not a close frame
+     */
+    public int getCloseCode() {
+        return closeCode;
+    }
+
+    /**
+     * @param data the WebSocket frame text
+     * @return whether the given frame text is a multiplexed frame
+     */
+    public static boolean isMultiplexed(String data) {
+        return data.startsWith(SESSION_PREFIX);
+    }
+
+    /**
+     * @param session the logical session key
+     * @param content the JSON array of messages
+     * @return the multiplexed frame text
+     */
+    public static String messages(String session, String content) {
+        return SESSION_PREFIX + checkSession(session) + MESSAGES_INFIX + content + "}";
+    }
+
+    /**
+     * @param session the logical session key
+     * @param code    the close code
+     * @return the multiplexed close frame text
+     */
+    public static String close(String session, int code) {
+        return SESSION_PREFIX + checkSession(session) + CLOSE_INFIX + code + "}";
+    }
+
+    /**
+     * @param data the multiplexed frame text
+     * @return the parsed frame
+     * @throws ParseException if the frame text is not a valid multiplexed frame
+     */
+    public static MultiplexedFrame parse(String data) throws ParseException {
+        if (!isMultiplexed(data) || !data.endsWith("}")) {
+            throw new ParseException(data, 0);
+        }
+        int start = SESSION_PREFIX.length();
+        int end = data.indexOf('"', start);
+        if (end < 0) {
+            throw new ParseException(data, start);
+        }
+        String session = data.substring(start, end);
+        if (!isValidSession(session)) {
+            throw new ParseException(data, start);
+        }
+        if (data.startsWith(MESSAGES_INFIX, end)) {
+            String content = data.substring(end + MESSAGES_INFIX.length(), data.length() - 1);
+            return new MultiplexedFrame(session, content, -1);
+        }
+        if (data.startsWith(CLOSE_INFIX, end)) {
+            try {
+                int code = Integer.parseInt(data.substring(end + CLOSE_INFIX.length(), data.length() - 1).trim());
+                return new MultiplexedFrame(session, null, code);
+            } catch (NumberFormatException x) {
+                throw new ParseException(data, end);
+            }
+        }
+        throw new ParseException(data, end);
+    }
+
+    private static String checkSession(String session) {
+        if (!isValidSession(session)) {
+            throw new IllegalArgumentException("Invalid session key: " + session);
+        }
+        return session;
+    }
+
+    private static boolean isValidSession(String session) {
+        if (session.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < session.length(); ++i) {
+            char c = session.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '-' && c != '_' && c != '.') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s@%x[session=%s,%s]", getClass().getSimpleName(), hashCode(), session, isClose() ? "close=" + closeCode : "messages");
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2008-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cometd.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Map;
+
+import org.cometd.bayeux.Message;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LazyJettyJSONContextClientTest {
+    @Test
+    public void testLazyMessagesEqualEagerMessages() throws Exception {
+        String json = "[" +
+                "{\"channel\":\"/meta/connect\",\"id\":\"1\",\"successful\":true,\"advice\":{\"timeout\":0},\"ext\":{\"ack\":3}}," +
+                "{\"channel\":\"/a\", \"data\" : {\"text\":\"}{\\\"][\",\"list\":[1,{\"b\":[]}]} ,\"id\":\"2\"}," +
+                "{\"channel\":\"/b\",\"data\":[\"x\",null,true]}," +
+                "{\"channel\":\"/c\",\"data\":\"text\",\"ext\":null}," +
+                "{\"channel\":\"/d\",\"data\":42}" +
+                "]";
+
+        JSONContext.Generator generator = new JettyJSONContextClient().getGenerator();
+        Message.Mutable[] eager = new JettyJSONContextClient().parse(json);
+        Message.Mutable[] lazy = new LazyJettyJSONContextClient().parse(json);
+
+        Assert.assertEquals(eager.length, lazy.length);
+        for (int i = 0; i < eager.length; ++i) {
+            Assert.assertEquals(eager[i].getChannel(), lazy[i].getChannel());
+            Assert.assertEquals(eager[i].getId(), lazy[i].getId());
+            Assert.assertEquals(eager[i].isSuccessful(), lazy[i].isSuccessful());
+            Assert.assertEquals(eager[i].getAdvice(), lazy[i].getAdvice());
+            // Arrays are parsed as Object[], compare their JSON.
+            Assert.assertEquals(generator.generate(eager[i].getData()), generator.generate(lazy[i].getData()));
+            Assert.assertEquals(eager[i].getExt(), lazy[i].getExt());
+        }
+
+        Map<String, Object> data = lazy[1].getDataAsMap();
+        Assert.assertEquals("}{\"][", data.get("text"));
+        Assert.assertEquals(42L, lazy[4].getData());
+    }
+
+    @Test
+    public void testLazyMessageIteration() throws Exception {
+        String json = "[{\"channel\":\"/a\",\"data\":{\"x\":1},\"ext\":{\"y\":2}}]";
+        Message.Mutable eager = new JettyJSONContextClient().parse(json)[0];
+        Message.Mutable lazy = new LazyJettyJSONContextClient().parse(json)[0];
+
+        // Iteration, equality and generation parse the lazy fields.
+        Assert.assertEquals(eager, lazy);
+        Assert.assertEquals(eager, new HashMapMessage(lazy));
+        Assert.assertEquals(new JettyJSONContextClient().generate(eager), new LazyJettyJSONContextClient().generate(lazy));
+    }
+
+    @Test
+    public void testLazyMessageSerialization() throws Exception {
+        String json = "[{\"channel\":\"/a\",\"data\":{\"x\":1}}]";
+        Message.Mutable lazy = new LazyJettyJSONContextClient().parse(json)[0];
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(baos);
+        oos.writeObject(lazy);
+        oos.close();
+
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()));
+        HashMapMessage deserialized = (HashMapMessage)ois.readObject();
+
+        Assert.assertEquals(lazy, deserialized);
+        Assert.assertEquals(1L, deserialized.getDataAsMap().get("x"));
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2008-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cometd.common;
+
+import java.text.ParseException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MultiplexedFrameTest {
+    @Test
+    public void testParseMessages() throws Exception {
+        MultiplexedFrame frame = MultiplexedFrame.parse(MultiplexedFrame.messages("a-1", "[{}]"));
+        Assert.assertEquals("a-1", frame.getSession());
+        Assert.assertEquals("[{}]", frame.getContent());
+        Assert.assertFalse(frame.isClose());
+    }
+
+    @Test
+    public void testParseClose() throws Exception {
+        MultiplexedFrame frame = MultiplexedFrame.parse(MultiplexedFrame.close("a_1", 1000));
+        Assert.assertEquals("a_1", frame.getSession());
+        Assert.assertTrue(frame.isClose());
+        Assert.assertEquals(1000, frame.getCloseCode());
+    }
+
+    @Test
+    public void testParseInvalidSessionKey() {
+        String[] keys = {"", "a b", "a\\\\b", "a/b"};
+        for (String key : keys) {
+            try {
+                MultiplexedFrame.parse("{\"session\":\"" + key + "\",\"messages\":[]}");
+                Assert.fail(key);
+            } catch (ParseException expected) {
+                // Expected.
+            }
+        }
+    }
+}
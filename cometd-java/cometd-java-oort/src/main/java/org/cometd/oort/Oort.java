@@ -21,12 +21,15 @@ import java.net.URISyntaxException;
 import java.security.MessageDigest;
 import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.EventListener;
 import java.util.EventObject;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -37,6 +40,8 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.cometd.bayeux.Channel;
 import org.cometd.bayeux.ChannelId;
@@ -54,6 +59,7 @@ import org.cometd.client.ext.AckExtension;
 import org.cometd.client.transport.ClientTransport;
 import org.cometd.client.transport.LongPollingTransport;
 import org.cometd.common.JSONContext;
+import org.cometd.server.BayeuxServerImpl;
 import org.cometd.server.authorizer.GrantAuthorizer;
 import org.cometd.server.ext.AcknowledgedMessagesExtension;
 import org.cometd.server.ext.BinaryExtension;
@@ -81,6 +87,21 @@ import org.slf4j.LoggerFactory;
  * <p>Oort instances can be configured with a shared {@link #setSecret(String) secret}, which allows
  * the Oort instance to distinguish handshakes coming from remote clients from handshakes coming from
  * other Oort comets: the firsts may be subject to a stricter authentication policy than the seconds.</p>
+ * <p>By default, messages published on {@link #observeChannel(String) observed channels} are sent by
+ * the node where they are published directly to every other node.
+ * Large clouds may configure a {@link #setRelayFanOut(int) relay fan out}, so that messages are instead
+ * relayed along a tree that spans all the nodes, where each node sends messages only to its parent
+ * and to its children; in this case, every node must observe the same channels, and messages
+ * meant for a specific node must be published through the {@link OortComet} connected to that
+ * node rather than on a channel observed only by that node.</p>
+ * <p>The failure of a remote node is normally detected when the session of its comet expires.
+ * When a {@link #setFailureDetectionThreshold(double) failure detection threshold} is configured,
+ * the failure is instead suspected from the statistics of the {@code /meta/connect} messages that
+ * the comet sends, which is typically much faster.</p>
+ * <p>The data of the messages that nodes exchange on Oort internal channels is encoded
+ * with a {@link #setCodec(OortCodec) codec}, when both nodes use a codec with the same name.</p>
+ * <p>Nodes advertise in the Oort handshake the features that they support, so that messages
+ * in formats introduced by newer versions are only sent to nodes that support them.</p>
  *
  * @see OortMulticastConfigServlet
  * @see OortStaticConfigServlet
@@ -94,10 +115,18 @@ public class Oort extends ContainerLifeCycle {
     public static final String EXT_OORT_SECRET_FIELD = "oortSecret";
     public static final String EXT_COMET_URL_FIELD = "cometURL";
     public static final String EXT_OORT_ALIAS_URL_FIELD = "oortAliasURL";
+    public static final String EXT_OORT_CODEC_FIELD = "oortCodec";
+    public static final String EXT_OORT_FEATURES_FIELD = "oortFeatures";
     public static final String OORT_CLOUD_CHANNEL = "/oort/cloud";
     public static final String OORT_SERVICE_CHANNEL = "/service/oort";
     private static final String COMET_URL_ATTRIBUTE = EXT_OORT_FIELD + "." + EXT_COMET_URL_FIELD;
     private static final String JOIN_MESSAGE_ATTRIBUTE = Oort.class.getName() + ".joinMessage";
+    private static final String COMET_ID_ATTRIBUTE = EXT_OORT_FIELD + "." + EXT_OORT_ID_FIELD;
+    private static final String RELAY_ID_FIELD = "relayId";
+    private static final String RELAY_FROM_FIELD = "relayFrom";
+    private static final int RELAY_HISTORY_SIZE = 4096;
+    private static final int HEARTBEAT_HISTORY_SIZE = 64;
+    private static final List<String> FEATURES = Arrays.asList(OortService.BATCH_FEATURE, Seti.GROUP_FEATURE);
 
     private final Map<String, OortComet> _pendingComets = new HashMap<>();
     private final Map<String, ClientCometInfo> _clientComets = new HashMap<>();
@@ -114,6 +143,17 @@ public class Oort extends ContainerLifeCycle {
     private final Logger _logger;
     private final LocalSession _oortSession;
     private final Object _lock = this;
+    private final AtomicLong _relayIds = new AtomicLong();
+    private final Map<String, Boolean> _relayHistory = new LinkedHashMap<String, Boolean>(RELAY_HISTORY_SIZE, 0.75F, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > RELAY_HISTORY_SIZE;
+        }
+    };
+    private volatile int _relayFanOut;
+    private volatile double _failureDetectionThreshold;
+    private volatile long _heartbeatInterval = 1000;
+    private volatile OortCodec _codec = new OortCompactCodec();
     private ScheduledExecutorService _scheduler;
     private String _secret;
     private boolean _ackExtensionEnabled;
@@ -188,6 +228,11 @@ public class Oort extends ContainerLifeCycle {
         oortServiceChannel.addListener(_joinListener);
 
         _oortSession.handshake();
+
+        if (getFailureDetectionThreshold() > 0) {
+            long period = Math.max(10, getHeartbeatInterval() / 4);
+            _scheduler.scheduleWithFixedDelay(this::detectFailures, period, period, TimeUnit.MILLISECONDS);
+        }
     }
 
     @Override
@@ -289,6 +334,138 @@ public class Oort extends ContainerLifeCycle {
         _binaryExtensionEnabled = value;
     }
 
+    @ManagedAttribute("The max number of children of each node in the relay tree, or 0 to send to all nodes")
+    public int getRelayFanOut() {
+        return _relayFanOut;
+    }
+
+    /**
+     * <p>Sets the max number of children of each node in the tree along which messages
+     * published on observed channels are relayed.</p>
+     * <p>With a fan out of {@code k}, the nodes are sorted by URL and arranged in a
+     * {@code k}-ary tree, so that each node sends a message to at most {@code k + 1}
+     * nodes, independently of the number of nodes in the cloud.
+     * Each node relays the messages it receives to its other tree neighbors, and
+     * discards the messages it has already relayed.</p>
+     *
+     * @param fanOut the max number of children of each node, or 0 (the default)
+     *               to send messages directly to all nodes
+     */
+    public void setRelayFanOut(int fanOut) {
+        if (fanOut < 0) {
+            throw new IllegalArgumentException("Invalid relay fan out " + fanOut);
+        }
+        _relayFanOut = fanOut;
+    }
+
+    @ManagedAttribute("The phi value above which a comet is suspected to have failed, or 0 to disable failure detection")
+    public double getFailureDetectionThreshold() {
+        return _failureDetectionThreshold;
+    }
+
+    /**
+     * <p>Sets the threshold of the phi accrual failure detector.</p>
+     * <p>For each remote comet, the detector records the time between the reply to a
+     * {@code /meta/connect} message and the arrival of the next {@code /meta/connect}
+     * message, and computes the suspicion level phi of the remote comet from the mean
+     * and the standard deviation of these times.
+     * A phi of {@code 1} means a 10% probability of a false suspicion, a phi of {@code 2}
+     * a 1% probability, a phi of {@code 3} a 0.1% probability, and so forth.</p>
+     * <p>When phi exceeds the threshold, the session of the remote comet is expired and
+     * {@link CometListener#cometLeft(CometListener.Event)} is emitted, without waiting
+     * for the session {@code maxInterval}; if the remote comet is still alive, it will
+     * handshake again and join the cloud again.</p>
+     * <p>This value must be configured before this instance is started.</p>
+     *
+     * @param threshold the phi threshold (for example, 8), or 0 (the default) to disable failure detection
+     */
+    public void setFailureDetectionThreshold(double threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Invalid failure detection threshold " + threshold);
+        }
+        _failureDetectionThreshold = threshold;
+    }
+
+    @ManagedAttribute("The period of time, in milliseconds, the /meta/connect messages of remote comets are held, when failure detection is enabled")
+    public long getHeartbeatInterval() {
+        return _heartbeatInterval;
+    }
+
+    /**
+     * <p>Sets the period of time for which {@code /meta/connect} messages of remote comets
+     * are held when {@link #setFailureDetectionThreshold(double) failure detection} is enabled,
+     * so that remote comets send {@code /meta/connect} messages at least at this rate.</p>
+     * <p>Shorter intervals detect failures faster at the cost of more messages.</p>
+     *
+     * @param heartbeatInterval the heartbeat interval in milliseconds
+     */
+    public void setHeartbeatInterval(long heartbeatInterval) {
+        if (heartbeatInterval <= 0) {
+            throw new IllegalArgumentException("Invalid heartbeat interval " + heartbeatInterval);
+        }
+        _heartbeatInterval = heartbeatInterval;
+    }
+
+    public OortCodec getCodec() {
+        return _codec;
+    }
+
+    /**
+     * <p>Sets the codec used to encode the data of the messages exchanged with other nodes
+     * on Oort internal channels, by default an {@link OortCompactCodec}.</p>
+     * <p>The codec is negotiated when a remote node connects, so a remote node that uses
+     * a codec with a different name, or no codec, exchanges plain JSON with this node.</p>
+     *
+     * @param codec the codec, or null to exchange plain JSON with all nodes
+     */
+    public void setCodec(OortCodec codec) {
+        _codec = codec;
+    }
+
+    /**
+     * @param channelName the channel name
+     * @return whether the data of messages on the given channel may be encoded by the codec
+     */
+    static boolean isCodecChannel(String channelName) {
+        return OORT_SERVICE_CHANNEL.equals(channelName) ||
+                channelName.startsWith(OortObject.OORT_OBJECTS_CHANNEL + "/") ||
+                channelName.startsWith(Channel.SERVICE + OortObject.OORT_OBJECTS_CHANNEL + "/") ||
+                channelName.startsWith("/oort/service/") ||
+                channelName.startsWith("/service/oort/service/") ||
+                channelName.startsWith("/seti/");
+    }
+
+    /**
+     * @param oortExt the remote Oort information
+     * @return the codec to use with the remote node, or null if the remote node does not support it
+     */
+    private OortCodec negotiateCodec(Map<String, Object> oortExt) {
+        OortCodec codec = getCodec();
+        if (codec != null && codec.getName().equals(oortExt.get(EXT_OORT_CODEC_FIELD))) {
+            return codec;
+        }
+        return null;
+    }
+
+    /**
+     * @param oortExt the remote Oort information
+     * @return the features supported by the remote node, empty if the remote node does not advertise them
+     */
+    private Set<String> features(Map<String, Object> oortExt) {
+        Object features = oortExt.get(EXT_OORT_FEATURES_FIELD);
+        if (features instanceof Object[]) {
+            features = Arrays.asList((Object[])features);
+        }
+        if (!(features instanceof Collection)) {
+            return Collections.emptySet();
+        }
+        Set<String> result = new HashSet<>();
+        for (Object feature : (Collection<?>)features) {
+            result.add(String.valueOf(feature));
+        }
+        return result;
+    }
+
     public JSONContext.Client getJSONContextClient() {
         return _jsonContext;
     }
@@ -553,8 +730,11 @@ public class Oort extends ContainerLifeCycle {
             Set<String> observedChannels = getObservedChannels();
             List<OortComet> oortComets = new ArrayList<>();
             synchronized (_lock) {
+                Set<String> neighbors = relayNeighbors();
                 for (ClientCometInfo cometInfo : _clientComets.values()) {
-                    oortComets.add(cometInfo.getOortComet());
+                    if (neighbors == null || neighbors.contains(cometInfo.getOortURL())) {
+                        oortComets.add(cometInfo.getOortComet());
+                    }
                 }
             }
             for (OortComet oortComet : oortComets) {
@@ -641,6 +821,11 @@ public class Oort extends ContainerLifeCycle {
         String b64Secret = encodeSecret(getSecret());
         oortExt.put(EXT_OORT_SECRET_FIELD, b64Secret);
         oortExt.put(EXT_COMET_URL_FIELD, cometURL);
+        OortCodec codec = getCodec();
+        if (codec != null) {
+            oortExt.put(EXT_OORT_CODEC_FIELD, codec.getName());
+        }
+        oortExt.put(EXT_OORT_FEATURES_FIELD, FEATURES);
         if (oortAliasURL != null) {
             oortExt.put(EXT_OORT_ALIAS_URL_FIELD, oortAliasURL);
         }
@@ -689,6 +874,11 @@ public class Oort extends ContainerLifeCycle {
             clientCometInfo = _clientComets.get(remoteOortId);
         }
 
+        session.setAttribute(COMET_ID_ATTRIBUTE, remoteOortId);
+        if (getFailureDetectionThreshold() > 0) {
+            // Make the remote comet send /meta/connect messages at a regular rate.
+            session.setTimeout(getHeartbeatInterval());
+        }
         // Be notified when the remote comet stops.
         session.addListener(new OortCometDisconnectListener());
         // Prevent loops in sending/receiving messages.
@@ -742,6 +932,7 @@ public class Oort extends ContainerLifeCycle {
         if (_logger.isDebugEnabled()) {
             _logger.debug("Comet joined: {}|{}", remoteOortId, remoteOortURL);
         }
+        updateRelaySubscriptions();
         CometListener.Event event = new CometListener.Event(this, remoteOortId, remoteOortURL);
         for (CometListener cometListener : _cometListeners) {
             try {
@@ -756,6 +947,7 @@ public class Oort extends ContainerLifeCycle {
         if (_logger.isDebugEnabled()) {
             _logger.debug("Comet left: {}|{}", remoteOortId, remoteOortURL);
         }
+        updateRelaySubscriptions();
         CometListener.Event event = new CometListener.Event(this, remoteOortId, remoteOortURL);
         for (CometListener cometListener : _cometListeners) {
             try {
@@ -778,6 +970,186 @@ public class Oort extends ContainerLifeCycle {
         return new HashSet<>(_channels.keySet());
     }
 
+    /**
+     * @return the Oort URLs of the nodes this node exchanges messages on observed
+     * channels with, or null if messages are sent directly to all nodes
+     */
+    private Set<String> relayNeighbors() {
+        int fanOut = getRelayFanOut();
+        if (fanOut == 0) {
+            return null;
+        }
+        List<String> nodes = new ArrayList<>();
+        nodes.add(getURL());
+        synchronized (_lock) {
+            for (ClientCometInfo cometInfo : _clientComets.values()) {
+                nodes.add(cometInfo.getOortURL());
+            }
+        }
+        // All nodes sort the same URLs, and therefore build the same tree.
+        nodes.sort(null);
+        int index = nodes.indexOf(getURL());
+        Set<String> result = new HashSet<>();
+        if (index > 0) {
+            result.add(nodes.get((index - 1) / fanOut));
+        }
+        for (int i = 1; i <= fanOut; ++i) {
+            long child = (long)index * fanOut + i;
+            if (child >= nodes.size()) {
+                break;
+            }
+            result.add(nodes.get((int)child));
+        }
+        return result;
+    }
+
+    boolean isRelayNeighbor(String cometURL) {
+        Set<String> neighbors = relayNeighbors();
+        if (neighbors == null) {
+            return true;
+        }
+        synchronized (_lock) {
+            for (ClientCometInfo cometInfo : _clientComets.values()) {
+                if (cometInfo.matchesURL(cometURL)) {
+                    return neighbors.contains(cometInfo.getOortURL());
+                }
+            }
+        }
+        return false;
+    }
+
+    private void updateRelaySubscriptions() {
+        Set<String> neighbors = relayNeighbors();
+        if (neighbors == null) {
+            return;
+        }
+        if (_logger.isDebugEnabled()) {
+            _logger.debug("Relay neighbors {}", neighbors);
+        }
+        List<ClientCometInfo> cometInfos;
+        synchronized (_lock) {
+            cometInfos = new ArrayList<>(_clientComets.values());
+        }
+        Set<String> observedChannels = getObservedChannels();
+        for (ClientCometInfo cometInfo : cometInfos) {
+            OortComet oortComet = cometInfo.getOortComet();
+            if (neighbors.contains(cometInfo.getOortURL())) {
+                oortComet.subscribe(observedChannels);
+            } else {
+                oortComet.clearSubscriptions();
+            }
+        }
+    }
+
+    /**
+     * <p>Called by {@link OortComet} before republishing locally a message
+     * received from the given comet on an observed channel.</p>
+     *
+     * @param cometURL the URL of the comet the message has been received from
+     * @param message  the message to republish
+     * @return whether the message should be republished
+     */
+    boolean relay(String cometURL, Message.Mutable message) {
+        if (getRelayFanOut() == 0) {
+            return true;
+        }
+        Map<String, Object> ext = message.getExt();
+        Object oortExtObject = ext == null ? null : ext.get(EXT_OORT_FIELD);
+        if (!(oortExtObject instanceof Map)) {
+            return true;
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, Object> oortExt = new HashMap<>((Map<String, Object>)oortExtObject);
+        String relayId = (String)oortExt.get(RELAY_ID_FIELD);
+        if (relayId == null) {
+            return true;
+        }
+        synchronized (_relayHistory) {
+            if (_relayHistory.put(relayId, Boolean.TRUE) != null) {
+                if (_logger.isDebugEnabled()) {
+                    _logger.debug("Discarding duplicate relayed message {}", message);
+                }
+                return false;
+            }
+        }
+        String fromId = null;
+        synchronized (_lock) {
+            for (ClientCometInfo cometInfo : _clientComets.values()) {
+                if (cometInfo.matchesURL(cometURL)) {
+                    fromId = cometInfo.getOortId();
+                    break;
+                }
+            }
+        }
+        oortExt.put(RELAY_FROM_FIELD, fromId);
+        Map<String, Object> newExt = new HashMap<>(ext);
+        newExt.put(EXT_OORT_FIELD, oortExt);
+        message.put(Message.EXT_FIELD, newExt);
+        return true;
+    }
+
+    private FailureDetector findFailureDetector(ServerSession session) {
+        if (getFailureDetectionThreshold() == 0) {
+            return null;
+        }
+        Object oortId = session.getAttribute(COMET_ID_ATTRIBUTE);
+        if (oortId == null) {
+            return null;
+        }
+        synchronized (_lock) {
+            ServerCometInfo cometInfo = _serverComets.get(oortId);
+            if (cometInfo == null || cometInfo.getServerSession() != session) {
+                return null;
+            }
+            return cometInfo.getFailureDetector();
+        }
+    }
+
+    private void detectFailures() {
+        double threshold = getFailureDetectionThreshold();
+        long heartbeat = TimeUnit.MILLISECONDS.toNanos(getHeartbeatInterval());
+        long now = System.nanoTime();
+        List<ServerCometInfo> suspects = null;
+        synchronized (_lock) {
+            for (ServerCometInfo cometInfo : _serverComets.values()) {
+                // Heartbeats not sent at the expected time are expected to be
+                // delayed by a fraction of the heartbeat interval, not less.
+                double phi = cometInfo.getFailureDetector().phi(now, heartbeat, heartbeat / 2);
+                if (phi > threshold) {
+                    if (suspects == null) {
+                        suspects = new ArrayList<>(1);
+                    }
+                    suspects.add(cometInfo);
+                }
+            }
+        }
+        if (suspects != null) {
+            for (ServerCometInfo cometInfo : suspects) {
+                if (_logger.isDebugEnabled()) {
+                    _logger.debug("Suspected failure of comet {}", cometInfo);
+                }
+                // Expire the session as if it timed out, so that the
+                // OortComet keeps trying to connect to the remote comet.
+                ((BayeuxServerImpl)_bayeux).removeServerSession(cometInfo.getServerSession(), true);
+            }
+        }
+    }
+
+    private boolean isObserved(String channelName) {
+        if (_channels.containsKey(channelName)) {
+            return true;
+        }
+        ServerChannel channel = _bayeux.getChannel(channelName);
+        if (channel != null) {
+            for (String wild : channel.getChannelId().getWilds()) {
+                if (_channels.containsKey(wild)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     List<String> knownOortIds() {
         List<String> result = new ArrayList<>();
         synchronized (_lock) {
@@ -826,8 +1198,56 @@ public class Oort extends ContainerLifeCycle {
      * @see Oort#incomingCometHandshake(Map, ServerSession)
      */
     protected class OortExtension implements Extension {
+        @Override
+        public boolean send(ServerSession from, ServerSession to, Mutable message) {
+            // Tag the messages published on this node on observed
+            // channels, so that they can be relayed to other nodes.
+            if (to == null && getRelayFanOut() > 0 && isObserved(message.getChannel())) {
+                Map<String, Object> oortExt = getOortExt(message);
+                if (oortExt.get(RELAY_ID_FIELD) == null) {
+                    String relayId = _id + "/" + _relayIds.incrementAndGet();
+                    oortExt.put(RELAY_ID_FIELD, relayId);
+                    synchronized (_relayHistory) {
+                        _relayHistory.put(relayId, Boolean.TRUE);
+                    }
+                }
+            }
+            return true;
+        }
+
+        private Map<String, Object> getOortExt(Mutable message) {
+            Map<String, Object> ext = message.getExt(true);
+            Object oortExtObject = ext.get(EXT_OORT_FIELD);
+            if (oortExtObject instanceof Map) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> oortExt = (Map<String, Object>)oortExtObject;
+                return oortExt;
+            }
+            Map<String, Object> oortExt = new HashMap<>(2);
+            ext.put(EXT_OORT_FIELD, oortExt);
+            return oortExt;
+        }
+
+        @Override
+        public boolean rcvMeta(ServerSession session, Mutable message) {
+            if (Channel.META_CONNECT.equals(message.getChannel()) && session != null) {
+                FailureDetector failureDetector = findFailureDetector(session);
+                if (failureDetector != null) {
+                    failureDetector.connected(System.nanoTime());
+                }
+            }
+            return true;
+        }
+
         @Override
         public boolean sendMeta(ServerSession session, Mutable reply) {
+            if (Channel.META_CONNECT.equals(reply.getChannel()) && session != null) {
+                FailureDetector failureDetector = findFailureDetector(session);
+                if (failureDetector != null) {
+                    failureDetector.replied(System.nanoTime());
+                }
+                return true;
+            }
             if (!Channel.META_HANDSHAKE.equals(reply.getChannel())) {
                 return true;
             }
@@ -871,6 +1291,13 @@ public class Oort extends ContainerLifeCycle {
                     replyExt.put(EXT_OORT_FIELD, replyOortExt);
                     replyOortExt.put(EXT_OORT_URL_FIELD, getURL());
                     replyOortExt.put(EXT_OORT_ID_FIELD, getId());
+                    replyOortExt.put(EXT_OORT_FEATURES_FIELD, FEATURES);
+
+                    OortCodec codec = negotiateCodec(messageOortExt);
+                    if (codec != null) {
+                        replyOortExt.put(EXT_OORT_CODEC_FIELD, codec.getName());
+                        session.addExtension(new CodecExtension(codec));
+                    }
 
                     boolean connectBack = incomingCometHandshake(messageOortExt, session);
                     if (connectBack) {
@@ -1101,7 +1528,13 @@ public class Oort extends ContainerLifeCycle {
         @Override
         public boolean onMessage(ServerSession session, ServerSession sender, ServerMessage message) {
             // Prevent loops by not delivering a message from self or Oort session to remote Oort comets
-            if (session.getId().equals(sender.getId()) || isOort(sender)) {
+            if (session.getId().equals(sender.getId())) {
+                if (_logger.isDebugEnabled()) {
+                    _logger.debug("{} --| {} {}", sender, session, message);
+                }
+                return false;
+            }
+            if (isOort(sender) && !isRelayed(session, message)) {
                 if (_logger.isDebugEnabled()) {
                     _logger.debug("{} --| {} {}", sender, session, message);
                 }
@@ -1114,6 +1547,28 @@ public class Oort extends ContainerLifeCycle {
         }
     }
 
+    /**
+     * @return whether the given message, republished by this node, must be relayed
+     * to the remote comet represented by the given session
+     */
+    private boolean isRelayed(ServerSession session, ServerMessage message) {
+        if (getRelayFanOut() == 0) {
+            return false;
+        }
+        Map<String, Object> ext = message.getExt();
+        Object oortExtObject = ext == null ? null : ext.get(EXT_OORT_FIELD);
+        if (!(oortExtObject instanceof Map)) {
+            return false;
+        }
+        Map<?, ?> oortExt = (Map<?, ?>)oortExtObject;
+        if (oortExt.get(RELAY_ID_FIELD) == null) {
+            return false;
+        }
+        // Do not send back the message to the node it has been received from.
+        Object fromId = oortExt.get(RELAY_FROM_FIELD);
+        return fromId != null && !fromId.equals(session.getAttribute(COMET_ID_ATTRIBUTE));
+    }
+
     private class HandshakeListener implements ClientSessionChannel.MessageListener {
         private final String cometURL;
         private final OortComet oortComet;
@@ -1138,6 +1593,8 @@ public class Oort extends ContainerLifeCycle {
             Map<String, Object> oortExt = (Map<String, Object>)oortExtObject;
             String oortId = (String)oortExt.get(Oort.EXT_OORT_ID_FIELD);
             String oortURL = (String)oortExt.get(Oort.EXT_OORT_URL_FIELD);
+            oortComet.setCodec(negotiateCodec(oortExt));
+            oortComet.setFeatures(features(oortExt));
 
             ClientCometInfo clientCometInfo;
             ServerCometInfo serverCometInfo;
@@ -1205,6 +1662,41 @@ public class Oort extends ContainerLifeCycle {
         }
     }
 
+    /**
+     * <p>Decodes the messages received from, and encodes the messages sent
+     * to, a remote comet that negotiated the codec.</p>
+     */
+    private class CodecExtension implements ServerSession.Extension {
+        private final OortCodec codec;
+
+        private CodecExtension(OortCodec codec) {
+            this.codec = codec;
+        }
+
+        @Override
+        public boolean rcv(ServerSession session, Mutable message) {
+            Object data = message.getData();
+            if ((data instanceof List || data instanceof Object[]) && isCodecChannel(message.getChannel())) {
+                message.setData(codec.decode(data));
+            }
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public ServerMessage send(ServerSession session, ServerMessage message) {
+            Object data = message.getData();
+            if (data instanceof Map && isCodecChannel(message.getChannel())) {
+                // The message may be delivered to other sessions, so it must be copied.
+                Mutable result = _bayeux.newMessage();
+                result.putAll(message);
+                result.setData(codec.encode((Map<String, Object>)data));
+                return result;
+            }
+            return message;
+        }
+    }
+
     private static abstract class CometInfo {
         private final String oortId;
         private final String oortURL;
@@ -1229,6 +1721,7 @@ public class Oort extends ContainerLifeCycle {
     }
 
     private static class ServerCometInfo extends CometInfo {
+        private final FailureDetector failureDetector = new FailureDetector();
         private final ServerSession session;
 
         private ServerCometInfo(String oortId, String oortURL, ServerSession session) {
@@ -1240,6 +1733,10 @@ public class Oort extends ContainerLifeCycle {
             return session;
         }
 
+        private FailureDetector getFailureDetector() {
+            return failureDetector;
+        }
+
         @Override
         public String toString() {
             return String.format("%s[%s]", super.toString(), session);
@@ -1284,6 +1781,74 @@ public class Oort extends ContainerLifeCycle {
         }
     }
 
+    /**
+     * <p>A phi accrual failure detector fed by the {@code /meta/connect} messages of a remote comet.</p>
+     * <p>While a {@code /meta/connect} is held, the next one is expected after the heartbeat interval;
+     * otherwise, it is expected after the typical time it takes to the remote comet to send it.</p>
+     */
+    private static class FailureDetector {
+        private final long[] samples = new long[HEARTBEAT_HISTORY_SIZE];
+        private int count;
+        private int index;
+        private double sum;
+        private double sumOfSquares;
+        private long arrival;
+        private long reply;
+        private boolean held;
+
+        private synchronized void connected(long now) {
+            if (!held && reply != 0) {
+                sample(now - reply);
+            }
+            held = true;
+            arrival = now;
+        }
+
+        private synchronized void replied(long now) {
+            held = false;
+            reply = now;
+        }
+
+        private void sample(long value) {
+            if (count == samples.length) {
+                long old = samples[index];
+                sum -= old;
+                sumOfSquares -= (double)old * old;
+            } else {
+                ++count;
+            }
+            samples[index] = value;
+            index = (index + 1) % samples.length;
+            sum += value;
+            sumOfSquares += (double)value * value;
+        }
+
+        private synchronized double phi(long now, long heartbeat, long minDeviation) {
+            long elapsed;
+            if (held) {
+                elapsed = now - arrival - heartbeat;
+            } else if (reply != 0) {
+                elapsed = now - reply;
+            } else {
+                return 0;
+            }
+            if (elapsed <= 0) {
+                return 0;
+            }
+            double mean = count == 0 ? 0 : sum / count;
+            double variance = count == 0 ? 0 : Math.max(0, sumOfSquares / count - mean * mean);
+            double deviation = Math.max(minDeviation, Math.sqrt(variance));
+            // Logistic approximation of the cumulative normal distribution.
+            double y = (elapsed - mean) / deviation;
+            double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+            if (elapsed > mean) {
+                return -Math.log10(e / (1 + e));
+            } else {
+                return -Math.log10(1 - 1 / (1 + e));
+            }
+        }
+    }
+
     private static class DumpableCollection implements Dumpable {
         private final String name;
         private final Collection<?> collection;
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2008-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cometd.oort;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.cometd.bayeux.server.LocalSession;
+import org.cometd.server.BayeuxServerImpl;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.Scheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Base class for conflict-free replicated data types (CRDTs) deployed on an Oort cluster.</p>
+ * <p>Updates are applied to the local state without coordination with other nodes, and
+ * the local state is then periodically shared with the other nodes, at most once every
+ * {@link #getPeriod() period}, and only if it changed.
+ * Many updates performed within a period are therefore sent in a single message.</p>
+ * <p>Each node merges the states it receives from other nodes into its local state;
+ * the merge is commutative, associative and idempotent, so that all nodes converge
+ * to the same state, independently of the order in which states are received.</p>
+ * <p>Differently from {@link OortObject}, the contributions of a node that leaves the
+ * cluster are retained by the other nodes.</p>
+ * <p>States are transported by an internal {@link OortObject}, so they must be
+ * representable in JSON.</p>
+ *
+ * @see OortPNCounter
+ * @see OortORSet
+ */
+public abstract class OortCRDT extends AbstractLifeCycle implements Oort.CometListener {
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final OortObject<Map<String, Object>> state;
+    protected final Logger logger;
+    private volatile long period = 500;
+    private volatile Scheduler.Task task;
+
+    /**
+     * @param oort the oort this instance is associated to
+     * @param name the name of this CRDT
+     */
+    protected OortCRDT(Oort oort, String name) {
+        this.state = new OortObject<>(oort, name, OortObjectFactories.<String, Object>forMap());
+        this.state.addListener(new StateListener());
+        this.logger = LoggerFactory.getLogger(getClass().getName() + "." + Oort.replacePunctuation(oort.getURL(), '_') + "." + name);
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        state.start();
+        getOort().addCometListener(this);
+        schedule();
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        Scheduler.Task task = this.task;
+        if (task != null) {
+            task.cancel();
+        }
+        getOort().removeCometListener(this);
+        state.stop();
+    }
+
+    /**
+     * @return the {@link Oort} instance associated with this CRDT
+     */
+    public Oort getOort() {
+        return state.getOort();
+    }
+
+    /**
+     * @return the name of this CRDT
+     */
+    public String getName() {
+        return state.getName();
+    }
+
+    /**
+     * @return the local session that sends messages to other nodes
+     */
+    public LocalSession getLocalSession() {
+        return state.getLocalSession();
+    }
+
+    /**
+     * @return the max period, in milliseconds, at which the local state is shared with other nodes
+     */
+    public long getPeriod() {
+        return period;
+    }
+
+    /**
+     * @param period the max period, in milliseconds, at which the local state is shared with other nodes
+     */
+    public void setPeriod(long period) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Invalid period " + period);
+        }
+        this.period = period;
+    }
+
+    /**
+     * <p>Shares the local state with other nodes immediately, if it changed since it was last shared.</p>
+     */
+    public void flush() {
+        if (dirty.compareAndSet(true, false)) {
+            Map<String, Object> snapshot = snapshot();
+            if (logger.isDebugEnabled()) {
+                logger.debug("Sharing state {}", snapshot);
+            }
+            state.setAndShare(snapshot, null);
+        }
+    }
+
+    /**
+     * <p>Subclasses must call this method when the local state changes,
+     * so that it is shared with other nodes at the next period.</p>
+     */
+    protected void changed() {
+        dirty.set(true);
+    }
+
+    /**
+     * @return a JSON representation of the local state
+     */
+    protected abstract Map<String, Object> snapshot();
+
+    /**
+     * <p>Merges the state received from the given node into the local state.</p>
+     *
+     * @param oortURL the Oort URL of the node that sent the state
+     * @param state   the JSON representation of the state of the remote node
+     */
+    protected abstract void merge(String oortURL, Map<String, Object> state);
+
+    @Override
+    public void cometJoined(Event event) {
+        // Share the merged state, which may contain contributions
+        // of nodes that left before the new node joined.
+        changed();
+    }
+
+    @Override
+    public void cometLeft(Event event) {
+        changed();
+    }
+
+    private void schedule() {
+        if (isRunning() || isStarting()) {
+            task = ((BayeuxServerImpl)getOort().getBayeuxServer()).schedule(this::run, getPeriod());
+        }
+    }
+
+    private void run() {
+        try {
+            flush();
+        } catch (Throwable x) {
+            logger.info("Exception while sharing state of " + this, x);
+        } finally {
+            schedule();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[%s]@%s", getClass().getSimpleName(), getName(), getOort().getURL());
+    }
+
+    private class StateListener extends OortObject.Listener.Adapter<Map<String, Object>> {
+        @Override
+        public void onUpdated(OortObject.Info<Map<String, Object>> oldInfo, OortObject.Info<Map<String, Object>> newInfo) {
+            if (!newInfo.isLocal()) {
+                merge(newInfo.getOortURL(), newInfo.getObject());
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2008-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cometd.oort;
+
+import java.util.Map;
+
+/**
+ * <p>A codec that converts the data of the messages exchanged between Oort nodes
+ * on Oort internal channels into a more compact representation.</p>
+ * <p>Oort nodes advertise the name of their codec in the Oort handshake, and use
+ * the codec only with nodes that advertised a codec with the same name, while
+ * they exchange plain JSON maps with the other nodes.
+ * Codecs with the same name must therefore produce the same representation.</p>
+ * <p>The encoded representation must be a {@link java.util.List}, so that it can
+ * be told apart from the plain map representation.</p>
+ *
+ * @see Oort#setCodec(OortCodec)
+ * @see OortCompactCodec
+ */
+public interface OortCodec {
+    /**
+     * @return the name of this codec, advertised in the Oort handshake
+     */
+    public String getName();
+
+    /**
+     * @param data the message data to encode
+     * @return the encoded message data
+     */
+    public Object encode(Map<String, Object> data);
+
+    /**
+     * @param data the encoded message data, either a {@link java.util.List} or an {@code Object[]}
+     * @return the decoded message data
+     */
+    public Map<String, Object> decode(Object data);
+}
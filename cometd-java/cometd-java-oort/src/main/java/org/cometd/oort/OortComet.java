@@ -16,13 +16,17 @@
 package org.cometd.oort;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ScheduledExecutorService;
 
+import org.cometd.bayeux.Message;
+import org.cometd.bayeux.client.ClientSession;
 import org.cometd.bayeux.client.ClientSessionChannel;
 import org.cometd.client.BayeuxClient;
 import org.cometd.client.transport.ClientTransport;
@@ -35,11 +39,36 @@ public class OortComet extends BayeuxClient {
     private final Oort _oort;
     private final String _cometURL;
     private volatile boolean _subscriptionsAllowed;
+    private volatile OortCodec _codec;
+    private volatile Set<String> _features = Collections.emptySet();
 
     public OortComet(Oort oort, String cometURL, ScheduledExecutorService scheduler, ClientTransport transport, ClientTransport... transports) {
         super(cometURL, scheduler, transport, transports);
         _oort = oort;
         _cometURL = cometURL;
+        addExtension(new CodecExtension());
+    }
+
+    /**
+     * @param codec the codec negotiated with the remote comet, or null
+     */
+    void setCodec(OortCodec codec) {
+        _codec = codec;
+    }
+
+    /**
+     * @param features the features advertised by the remote comet in the Oort handshake
+     */
+    void setFeatures(Set<String> features) {
+        _features = features;
+    }
+
+    /**
+     * @param feature the feature name
+     * @return whether the remote comet advertised support for the given feature
+     */
+    boolean isFeatureSupported(String feature) {
+        return _features.contains(feature);
     }
 
     protected void subscribe(Set<String> observedChannels) {
@@ -54,6 +83,9 @@ public class OortComet extends BayeuxClient {
             }
 
             ClientSessionChannel.MessageListener listener = (c, message) -> {
+                if (!_oort.relay(_cometURL, (Message.Mutable)message)) {
+                    return;
+                }
                 if (logger.isDebugEnabled()) {
                     logger.debug("Republishing message {} from {}", message, _cometURL);
                 }
@@ -115,7 +147,9 @@ public class OortComet extends BayeuxClient {
             if (logger.isDebugEnabled()) {
                 logger.debug("Handshake completed, observing channels {}", channels);
             }
-            subscribe(channels);
+            if (_oort.isRelayNeighbor(_cometURL)) {
+                subscribe(channels);
+            }
 
             // Advertise the remote node that we have joined
             Map<String, Object> data = new HashMap<>(2);
@@ -128,6 +162,33 @@ public class OortComet extends BayeuxClient {
         });
     }
 
+    private class CodecExtension implements ClientSession.Extension {
+        @Override
+        public boolean rcv(ClientSession session, Message.Mutable message) {
+            OortCodec codec = _codec;
+            if (codec != null) {
+                Object data = message.getData();
+                if ((data instanceof List || data instanceof Object[]) && Oort.isCodecChannel(message.getChannel())) {
+                    message.setData(codec.decode(data));
+                }
+            }
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean send(ClientSession session, Message.Mutable message) {
+            OortCodec codec = _codec;
+            if (codec != null) {
+                Object data = message.getData();
+                if (data instanceof Map && Oort.isCodecChannel(message.getChannel())) {
+                    message.setData(codec.encode((Map<String, Object>)data));
+                }
+            }
+            return true;
+        }
+    }
+
     @Override
     public String toString() {
         return String.format("%s[%s]", super.toString(), _cometURL);
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2008-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cometd.oort;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>The default {@link OortCodec}, that encodes a map into a flat array of
+ * alternating keys and values, where the well-known field names used by
+ * {@link OortObject}, {@link OortService} and {@link Seti} are replaced by
+ * small integers, as are the well-known values of the type and action fields
+ * of {@link OortObject.Info}.</p>
+ * <p>For example, the map {@code {"oort.info.name":"users","oort.info.version":3}}
+ * is encoded as {@code [2,"users",0,3]}.</p>
+ * <p>Field names that are not well-known are encoded as strings, and values are
+ * encoded as they are, except for the batches of {@link OortService} and the
+ * entries of {@link OortMap}, that are encoded recursively.</p>
+ * <p>The well-known names are identified by their position in a fixed dictionary,
+ * so new names can only be appended to the dictionary, and nodes that use
+ * different dictionaries must use codecs with different names.</p>
+ */
+public class OortCompactCodec implements OortCodec {
+    public static final String NAME = "compact";
+
+    private static final List<String> KEYS = Arrays.asList(
+            // OortObject.Info
+            OortObject.Info.VERSION_FIELD,
+            OortObject.Info.OORT_URL_FIELD,
+            OortObject.Info.NAME_FIELD,
+            OortObject.Info.OBJECT_FIELD,
+            OortObject.Info.TYPE_FIELD,
+            OortObject.Info.ACTION_FIELD,
+            OortObject.Info.PEER_FIELD,
+            // OortContainer
+            "oort.container.digest",
+            "oort.container.buckets",
+            "oort.container.count",
+            "oort.container.chunk",
+            "oort.container.chunks",
+            // OortMap
+            "oort.map.key",
+            "oort.map.value",
+            // OortService
+            "oort.service.batch",
+            "oort.service.data",
+            "oort.service.id",
+            "oort.service.url",
+            "oort.service.parameter",
+            "oort.service.result",
+            // Seti
+            "userId",
+            "userIds",
+            "channel",
+            "setiId",
+            "data",
+            "alive",
+            "presence",
+            "snapshot",
+            // Oort
+            Oort.EXT_OORT_ID_FIELD,
+            Oort.EXT_OORT_URL_FIELD
+    );
+    private static final List<String> VALUES = Arrays.asList(
+            "oort.container.delta",
+            "oort.list.element",
+            "oort.map.entry",
+            "oort.object.push",
+            "oort.object.pull",
+            "oort.list.add",
+            "oort.list.remove",
+            "oort.map.put",
+            "oort.map.put.absent",
+            "oort.map.remove"
+    );
+    private static final String BATCH_FIELD = "oort.service.batch";
+    private static final String TYPE_FIELD_ENTRY_VALUE = "oort.map.entry";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Object encode(Map<String, Object> data) {
+        boolean entry = TYPE_FIELD_ENTRY_VALUE.equals(data.get(OortObject.Info.TYPE_FIELD));
+        List<Object> result = new ArrayList<>(data.size() * 2);
+        for (Map.Entry<String, Object> field : data.entrySet()) {
+            String key = field.getKey();
+            Object value = field.getValue();
+            int index = KEYS.indexOf(key);
+            result.add(index < 0 ? key : index);
+            result.add(encodeValue(key, value, entry));
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object encodeValue(String key, Object value, boolean entry) {
+        switch (key) {
+            case OortObject.Info.TYPE_FIELD:
+            case OortObject.Info.ACTION_FIELD: {
+                int index = VALUES.indexOf(value);
+                return index < 0 ? value : index;
+            }
+            case OortObject.Info.OBJECT_FIELD: {
+                if (entry && value instanceof Map) {
+                    return encode((Map<String, Object>)value);
+                }
+                return value;
+            }
+            case BATCH_FIELD: {
+                Collection<?> batch = toCollection(value);
+                if (batch == null) {
+                    return value;
+                }
+                List<Object> result = new ArrayList<>(batch.size());
+                for (Object element : batch) {
+                    result.add(element instanceof Map ? encode((Map<String, Object>)element) : element);
+                }
+                return result;
+            }
+            default: {
+                return value;
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Object> decode(Object data) {
+        List<?> list = new ArrayList<>(toCollection(data));
+        Map<String, Object> result = new HashMap<>(list.size());
+        for (int i = 0; i + 1 < list.size(); i += 2) {
+            Object key = list.get(i);
+            String name = key instanceof Number ? KEYS.get(((Number)key).intValue()) : (String)key;
+            result.put(name, decodeValue(name, list.get(i + 1)));
+        }
+        Object object = result.get(OortObject.Info.OBJECT_FIELD);
+        if (TYPE_FIELD_ENTRY_VALUE.equals(result.get(OortObject.Info.TYPE_FIELD)) && toCollection(object) != null) {
+            result.put(OortObject.Info.OBJECT_FIELD, decode(object));
+        }
+        return result;
+    }
+
+    private Object decodeValue(String key, Object value) {
+        switch (key) {
+            case OortObject.Info.TYPE_FIELD:
+            case OortObject.Info.ACTION_FIELD: {
+                return value instanceof Number ? VALUES.get(((Number)value).intValue()) : value;
+            }
+            case BATCH_FIELD: {
+                Collection<?> batch = toCollection(value);
+                if (batch == null) {
+                    return value;
+                }
+                List<Object> result = new ArrayList<>(batch.size());
+                for (Object element : batch) {
+                    result.add(toCollection(element) != null ? decode(element) : element);
+                }
+                return result;
+            }
+            default: {
+                return value;
+            }
+        }
+    }
+
+    private Collection<?> toCollection(Object object) {
+        if (object instanceof Object[]) {
+            return Arrays.asList((Object[])object);
+        }
+        if (object instanceof Collection) {
+            return (Collection<?>)object;
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s@%x[%s]", getClass().getSimpleName(), hashCode(), getName());
+    }
+}
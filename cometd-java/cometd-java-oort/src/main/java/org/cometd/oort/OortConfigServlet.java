@@ -54,6 +54,8 @@ public abstract class OortConfigServlet extends HttpServlet {
     public static final String OORT_ENABLE_ACK_EXTENSION_PARAM = "enableAckExtension";
     public static final String OORT_ENABLE_BINARY_EXTENSION_PARAM = "enableBinaryExtension";
     public static final String OORT_JSON_CONTEXT_PARAM = "jsonContext";
+    public static final String OORT_FAILURE_DETECTION_THRESHOLD_PARAM = "failureDetectionThreshold";
+    public static final String OORT_HEARTBEAT_INTERVAL_PARAM = "heartbeatInterval";
     protected static final Logger LOG = LoggerFactory.getLogger(OortConfigServlet.class);
 
     @Override
@@ -96,6 +98,16 @@ public abstract class OortConfigServlet extends HttpServlet {
                 oort.setJSONContextClient((JSONContext.Client)getClass().getClassLoader().loadClass(jsonContext).newInstance());
             }
 
+            String failureDetectionThreshold = config.getInitParameter(OORT_FAILURE_DETECTION_THRESHOLD_PARAM);
+            if (failureDetectionThreshold != null) {
+                oort.setFailureDetectionThreshold(Double.parseDouble(failureDetectionThreshold));
+            }
+
+            String heartbeatInterval = config.getInitParameter(OORT_HEARTBEAT_INTERVAL_PARAM);
+            if (heartbeatInterval != null) {
+                oort.setHeartbeatInterval(Long.parseLong(heartbeatInterval));
+            }
+
             oort.start();
             servletContext.setAttribute(Oort.OORT_ATTRIBUTE, oort);
 
@@ -15,26 +15,96 @@
  */
 package org.cometd.oort;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * <p>A specialized oort object whose entity is a container of items, such as a map or a list.</p>
+ * <p>Containers replicate single item updates rather than the whole entity.
+ * When an item update is lost (for example, the version of an update is not the
+ * expected one), the replica of the entity is resynchronized with the node that
+ * owns the entity.
+ * If the container supports {@link #digest(Object, int) digests}, the resynchronization
+ * only transfers the items that differ, otherwise the whole entity is transferred.</p>
+ * <p>Items are partitioned in {@link #getDigestBuckets() buckets}; the node that needs
+ * the resynchronization sends the hashes of its buckets to the node that owns the
+ * entity, which replies with the items of the buckets whose hash differ, in chunks
+ * of at most {@link #getChunkSize()} items.</p>
+ * <p>Containers also maintain a cluster-wide index from each {@link #items(Object) item}
+ * to the Oort URLs of the nodes whose entity contains that item, so that lookups
+ * across the whole cluster do not need to scan the entities of all nodes.</p>
+ *
+ * @param <T> the container type
+ */
 public abstract class OortContainer<T> extends OortObject<T> {
     private static final Map<String, Object> STALE_UPDATE = new HashMap<>();
+    private static final String TYPE_FIELD_DELTA_VALUE = "oort.container.delta";
+    private static final String DIGEST_FIELD = "oort.container.digest";
+    private static final String BUCKETS_FIELD = "oort.container.buckets";
+    private static final String COUNT_FIELD = "oort.container.count";
+    private static final String CHUNK_FIELD = "oort.container.chunk";
+    private static final String CHUNKS_FIELD = "oort.container.chunks";
 
     private final Map<String, Updater> updaters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Object, Set<String>> index = new ConcurrentHashMap<>();
+    private int digestBuckets = 256;
+    private int chunkSize = 1024;
 
     public OortContainer(Oort oort, String name, Factory<T> factory) {
         super(oort, name, factory);
     }
 
+    /**
+     * @return the number of buckets in which items are partitioned to compute digests
+     */
+    public int getDigestBuckets() {
+        return digestBuckets;
+    }
+
+    /**
+     * @param digestBuckets the number of buckets in which items are partitioned to compute digests
+     */
+    public void setDigestBuckets(int digestBuckets) {
+        if (digestBuckets <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.digestBuckets = digestBuckets;
+    }
+
+    /**
+     * @return the max number of items sent in a single message during resynchronization
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * @param chunkSize the max number of items sent in a single message during resynchronization
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.chunkSize = chunkSize;
+    }
+
     @Override
     protected void doStop() throws Exception {
         super.doStop();
         updaters.clear();
+        index.clear();
     }
 
     @Override
@@ -60,6 +130,25 @@ public abstract class OortContainer<T> extends OortObject<T> {
                     process(info, updater);
                 }
             }
+        } else if (isDeltaUpdate(data)) {
+            Info<T> info = getInfo(oortURL);
+            // Info may be null if the remote node left and joined again.
+            if (info != null) {
+                T object = updater.delta(info, data);
+                if (object != null) {
+                    Map<String, Object> update = new HashMap<>(4);
+                    update.put(Info.OORT_URL_FIELD, oortURL);
+                    update.put(Info.NAME_FIELD, getName());
+                    update.put(Info.VERSION_FIELD, data.get(Info.VERSION_FIELD));
+                    updateInfo(update, object);
+                    info = getInfo(oortURL);
+                    if (info != null) {
+                        updater.pulling = false;
+                        updater.version = info.getVersion();
+                        process(info, updater);
+                    }
+                }
+            }
         } else {
             super.onObject(data);
             Info<T> info = getInfo(oortURL);
@@ -90,7 +179,7 @@ public abstract class OortContainer<T> extends OortObject<T> {
             if (data == STALE_UPDATE) {
                 if (!updater.pulling) {
                     updater.pulling = true;
-                    pullInfo(info.getOortURL());
+                    pullDelta(info);
                 }
                 return;
             }
@@ -98,6 +187,276 @@ public abstract class OortContainer<T> extends OortObject<T> {
         }
     }
 
+    private void pullDelta(Info<T> info) {
+        String oortURL = info.getOortURL();
+        long[] digest = digest(info.getObject(), getDigestBuckets());
+        if (digest == null) {
+            pullInfo(oortURL);
+        } else {
+            Map<String, Object> fields = new HashMap<>(1);
+            fields.put(DIGEST_FIELD, digest);
+            pullInfo(oortURL, fields);
+        }
+    }
+
+    @Override
+    protected void onPull(Map<String, Object> data) {
+        String oortURL = (String)data.get(Info.OORT_URL_FIELD);
+        Object digestField = data.get(DIGEST_FIELD);
+        OortComet oortComet = getOort().findComet(oortURL);
+        Info<T> info = getInfo(getOort().getURL());
+        if (digestField == null || oortComet == null || info == null) {
+            super.onPull(data);
+            return;
+        }
+
+        // Read the version before scanning the object: an update that
+        // lands during the scan is then sent again with a newer version,
+        // rather than being dropped by the receiver as already applied.
+        long version = info.getVersion();
+
+        // Use the same number of buckets of the requesting node.
+        long[] remoteDigest = convertDigest(digestField);
+        int count = remoteDigest.length;
+        long[] localDigest = digest(info.getObject(), count);
+        if (localDigest == null) {
+            super.onPull(data);
+            return;
+        }
+
+        // Only the buckets whose hashes differ must be sent.
+        Set<Integer> buckets = new HashSet<>();
+        for (int i = 0; i < count; ++i) {
+            if (remoteDigest[i] != localDigest[i]) {
+                buckets.add(i);
+            }
+        }
+
+        List<T> chunks = diff(info.getObject(), buckets, count);
+        if (chunks == null) {
+            super.onPull(data);
+            return;
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Pushing delta (to {}): {}/{} buckets in {} chunks", oortURL, buckets.size(), count, chunks.size());
+        }
+
+        for (int i = 0; i < chunks.size(); ++i) {
+            Map<String, Object> message = new HashMap<>(8);
+            message.put(Info.OORT_URL_FIELD, getOort().getURL());
+            message.put(Info.NAME_FIELD, getName());
+            message.put(Info.VERSION_FIELD, version);
+            message.put(Info.TYPE_FIELD, TYPE_FIELD_DELTA_VALUE);
+            message.put(Info.OBJECT_FIELD, serialize(chunks.get(i)));
+            message.put(Info.PEER_FIELD, oortURL);
+            message.put(CHUNK_FIELD, i);
+            message.put(CHUNKS_FIELD, chunks.size());
+            if (i == 0) {
+                message.put(BUCKETS_FIELD, buckets);
+                message.put(COUNT_FIELD, count);
+            }
+            oortComet.getChannel(getServiceChannelName()).publish(message);
+        }
+    }
+
+    private boolean isDeltaUpdate(Map<String, Object> data) {
+        return TYPE_FIELD_DELTA_VALUE.equals(data.get(Info.TYPE_FIELD));
+    }
+
+    private long[] convertDigest(Object value) {
+        if (value instanceof long[]) {
+            return (long[])value;
+        }
+        Object[] array = value instanceof Collection ? ((Collection<?>)value).toArray() : (Object[])value;
+        long[] result = new long[array.length];
+        for (int i = 0; i < array.length; ++i) {
+            result[i] = ((Number)array[i]).longValue();
+        }
+        return result;
+    }
+
+    private Set<Integer> convertBuckets(Object value) {
+        Object[] array = value instanceof Collection ? ((Collection<?>)value).toArray() : (Object[])value;
+        Set<Integer> result = new HashSet<>(array.length);
+        for (Object bucket : array) {
+            result.add(((Number)bucket).intValue());
+        }
+        return result;
+    }
+
+    /**
+     * <p>Returns the bucket of the given item, where an item is a map key or a list element.</p>
+     *
+     * @param item    the item
+     * @param buckets the number of buckets
+     * @return the bucket of the item
+     */
+    protected int bucket(Object item, int buckets) {
+        // Use the string representation, since the item
+        // type may be changed by the JSON serialization.
+        return Math.floorMod(String.valueOf(item).hashCode(), buckets);
+    }
+
+    /**
+     * <p>Returns a hash of the given value, suitable to be summed with the hashes
+     * of other items of the same bucket to compute the hash of the bucket.</p>
+     *
+     * @param value the value to hash
+     * @return the hash of the value
+     */
+    protected long hash(Object value) {
+        long hash = value instanceof Object[] ? Arrays.deepHashCode((Object[])value) : value == null ? 0 : value.hashCode();
+        // Spread the bits so that sums of hashes do not easily collide.
+        hash *= 0x9E3779B97F4A7C15L;
+        hash ^= hash >>> 32;
+        hash *= 0xC2B2AE3D27D4EB4FL;
+        return hash ^ (hash >>> 29);
+    }
+
+    /**
+     * <p>Computes the digest of the given container object, that is the hashes of the
+     * buckets in which the items of the container are partitioned.</p>
+     * <p>This implementation returns {@code null}, meaning that digests are not supported
+     * and that resynchronizations always transfer the whole object.</p>
+     * <p>Subclasses that support digests must also override {@link #diff(Object, Set, int)}
+     * and {@link #patch(Object, Set, int, List)}, otherwise the whole object is transferred.</p>
+     *
+     * @param object  the container object
+     * @param buckets the number of buckets
+     * @return the hashes of the buckets, or null if digests are not supported
+     */
+    protected long[] digest(T object, int buckets) {
+        return null;
+    }
+
+    /**
+     * <p>Returns the items of the given container object that belong to the given buckets,
+     * split into containers of at most {@link #getChunkSize()} items.</p>
+     * <p>The returned list must contain at least one, possibly empty, container.</p>
+     * <p>This implementation returns {@code null}, meaning that the whole object is sent.</p>
+     *
+     * @param object  the container object
+     * @param buckets the buckets whose items must be returned
+     * @param count   the total number of buckets
+     * @return the chunks containing the items of the given buckets, or null to send the whole object
+     */
+    protected List<T> diff(T object, Set<Integer> buckets, int count) {
+        return null;
+    }
+
+    /**
+     * <p>Returns a new container object with the items of the given object, where
+     * the items belonging to the given buckets are replaced by the items of the chunks.</p>
+     * <p>This implementation returns {@code null}, meaning that the whole object is pulled.</p>
+     *
+     * @param object  the container object to patch
+     * @param buckets the buckets whose items are replaced
+     * @param count   the total number of buckets
+     * @param chunks  the chunks containing the items of the given buckets
+     * @return a new patched container object, or null to pull the whole object
+     */
+    protected T patch(T object, Set<Integer> buckets, int count, List<T> chunks) {
+        return null;
+    }
+
+    /**
+     * <p>Returns the items of the given container object, where an item is a map key
+     * or a list element, that are indexed to find the nodes that contain them.</p>
+     * <p>This implementation returns an empty collection, meaning that items are not indexed.</p>
+     *
+     * @param object the container object
+     * @return the items of the container object
+     */
+    protected Collection<?> items(T object) {
+        return Collections.emptyList();
+    }
+
+    /**
+     * @param item the item to search
+     * @return the Oort URLs of the nodes whose entity contains the given item
+     */
+    protected Set<String> findOortURLs(Object item) {
+        Set<String> oortURLs = index.get(item);
+        return oortURLs == null ? Collections.<String>emptySet() : oortURLs;
+    }
+
+    /**
+     * @return a live, unmodifiable, view of the items contained in the entities of all nodes
+     */
+    protected Set<Object> findItems() {
+        return Collections.unmodifiableSet(index.keySet());
+    }
+
+    /**
+     * <p>Records that the entity of the given node contains the given item.</p>
+     *
+     * @param item    the item added to the entity
+     * @param oortURL the Oort URL of the node that owns the entity
+     */
+    protected void index(Object item, String oortURL) {
+        index.compute(item, (key, oortURLs) -> {
+            if (oortURLs == null) {
+                oortURLs = ConcurrentHashMap.newKeySet();
+            }
+            oortURLs.add(oortURL);
+            return oortURLs;
+        });
+    }
+
+    /**
+     * <p>Records that the entity of the given node does not contain the given item anymore.</p>
+     *
+     * @param item    the item removed from the entity
+     * @param oortURL the Oort URL of the node that owns the entity
+     */
+    protected void unindex(Object item, String oortURL) {
+        index.computeIfPresent(item, (key, oortURLs) -> {
+            oortURLs.remove(oortURL);
+            return oortURLs.isEmpty() ? null : oortURLs;
+        });
+    }
+
+    @Override
+    protected void notifyUpdated(Info<T> oldInfo, Info<T> newInfo) {
+        String oortURL = newInfo.getOortURL();
+        Collection<?> newItems = items(newInfo.getObject());
+        if (oldInfo == null || oldInfo.getObject() == newInfo.getObject()) {
+            for (Object item : newItems) {
+                index(item, oortURL);
+            }
+        } else {
+            // Only touch the items that changed, so that the items
+            // contained in both objects are always found in the index.
+            Set<?> oldSet = asSet(items(oldInfo.getObject()));
+            Set<?> newSet = asSet(newItems);
+            for (Object item : oldSet) {
+                if (!newSet.contains(item)) {
+                    unindex(item, oortURL);
+                }
+            }
+            for (Object item : newSet) {
+                if (!oldSet.contains(item)) {
+                    index(item, oortURL);
+                }
+            }
+        }
+        super.notifyUpdated(oldInfo, newInfo);
+    }
+
+    private static Set<?> asSet(Collection<?> items) {
+        return items instanceof Set ? (Set<?>)items : new HashSet<>(items);
+    }
+
+    @Override
+    protected void notifyRemoved(Info<T> info) {
+        String oortURL = info.getOortURL();
+        for (Object item : items(info.getObject())) {
+            unindex(item, oortURL);
+        }
+        super.notifyRemoved(info);
+    }
+
     protected abstract boolean isItemUpdate(Map<String, Object> data);
 
     protected abstract void onItem(Info<T> info, Map<String, Object> data);
@@ -112,11 +471,62 @@ public abstract class OortContainer<T> extends OortObject<T> {
         private final Queue<Map<String, Object>> updates = new PriorityQueue<>(2, new VersionComparator());
         private boolean pulling;
         private long version;
+        private long deltaVersion = -1;
+        private Set<Integer> deltaBuckets;
+        private int deltaBucketCount;
+        private List<T> deltaChunks;
+        private int deltaCount;
 
         private void enqueue(Map<String, Object> data) {
             updates.offer(data);
         }
 
+        /**
+         * Collects the chunks of a delta update.
+         *
+         * @return the patched object when all chunks have been received, null otherwise
+         */
+        private T delta(Info<T> info, Map<String, Object> data) {
+            long deltaVersion = ((Number)data.get(Info.VERSION_FIELD)).longValue();
+            int chunks = ((Number)data.get(CHUNKS_FIELD)).intValue();
+            if (deltaVersion != this.deltaVersion) {
+                this.deltaVersion = deltaVersion;
+                deltaBuckets = null;
+                deltaChunks = new ArrayList<>(chunks);
+                for (int i = 0; i < chunks; ++i) {
+                    deltaChunks.add(null);
+                }
+                deltaCount = 0;
+            }
+
+            Object buckets = data.get(BUCKETS_FIELD);
+            if (buckets != null) {
+                deltaBuckets = convertBuckets(buckets);
+                deltaBucketCount = ((Number)data.get(COUNT_FIELD)).intValue();
+            }
+            T chunk = getFactory().newObject(deserialize(data.get(Info.OBJECT_FIELD)));
+            int index = ((Number)data.get(CHUNK_FIELD)).intValue();
+            if (deltaChunks.set(index, chunk) == null) {
+                ++deltaCount;
+            }
+
+            if (deltaCount < chunks || deltaBuckets == null) {
+                return null;
+            }
+
+            if (logger.isDebugEnabled()) {
+                logger.debug("Applying delta version={}, {} buckets in {} chunks", deltaVersion, deltaBuckets.size(), chunks);
+            }
+            T result = patch(info.getObject(), deltaBuckets, deltaBucketCount, deltaChunks);
+            this.deltaVersion = -1;
+            deltaBuckets = null;
+            deltaChunks = null;
+            if (result == null) {
+                pullInfo(info.getOortURL());
+            }
+            return result;
+        }
+
         private Map<String, Object> dequeue() {
             while (true) {
                 Map<String, Object> result = updates.peek();
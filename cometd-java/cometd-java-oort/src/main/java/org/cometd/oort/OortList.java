@@ -17,10 +17,12 @@ package org.cometd.oort;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.EventListener;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.cometd.bayeux.Promise;
@@ -38,6 +40,8 @@ import org.cometd.bayeux.server.BayeuxServer;
  * {@link DeltaListener} converts whole list updates triggered by {@link #setAndShare(Object, Result)}
  * into events for {@link ElementListener}s, giving applications a single listener type to implement
  * their business logic.</p>
+ * <p>Since the order of the elements matters, a replica of a remote list is resynchronized with the
+ * node that owns it by pulling the whole list, rather than only the elements that differ.</p>
  *
  * @param <E> the element type
  */
@@ -77,18 +81,33 @@ public class OortList<E> extends OortContainer<List<E>> {
 
     /**
      * Returns whether the given {@code element} is present in one of the entity lists of all nodes.
-     * Differently from {@link #contains(Object)} entity lists of all nodes are scanned.
+     * Differently from {@link #contains(Object)} entity lists of all nodes are searched, using the
+     * cluster-wide index of elements so that no entity list needs to be scanned.
      *
      * @param element the element to test for presence
      * @return true if the {@code element} is contained in one of the entity lists of all nodes, false otherwise
      */
     public boolean isPresent(E element) {
-        for (Info<List<E>> info : this) {
-            if (info.getObject().contains(element)) {
-                return true;
-            }
-        }
-        return false;
+        return !findOortURLs(element).isEmpty();
+    }
+
+    /**
+     * <p>Returns a live, unmodifiable, view of the distinct elements of the entity lists of all nodes.</p>
+     * <p>Differently from {@link #merge(Merger)} with {@link OortObjectMergers#listUnion()},
+     * the view is not a copy: it is backed by the cluster-wide index of elements, and it is kept
+     * up to date as elements are added and removed on any node.
+     * Duplicate elements appear only once, and iterations are weakly consistent.</p>
+     *
+     * @return a live view of the distinct elements of the entity lists of all nodes
+     */
+    @SuppressWarnings("unchecked")
+    public Set<E> getMergedView() {
+        return (Set<E>)findItems();
+    }
+
+    @Override
+    protected Collection<?> items(List<E> list) {
+        return list;
     }
 
     /**
@@ -175,6 +194,21 @@ public class OortList<E> extends OortContainer<List<E>> {
                 throw new IllegalArgumentException(action);
         }
 
+        // Update the index.
+        switch (action) {
+            case ACTION_FIELD_ADD_VALUE:
+                for (E element : elements) {
+                    index(element, info.getOortURL());
+                }
+                break;
+            case ACTION_FIELD_REMOVE_VALUE:
+                // List.removeAll() removes all the occurrences.
+                for (E element : elements) {
+                    unindex(element, info.getOortURL());
+                }
+                break;
+        }
+
         // Update the version.
         info.put(Info.VERSION_FIELD, data.get(Info.VERSION_FIELD));
 
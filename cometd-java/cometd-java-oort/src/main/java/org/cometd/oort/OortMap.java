@@ -15,11 +15,19 @@
  */
 package org.cometd.oort;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.EventListener;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
@@ -63,6 +71,7 @@ public abstract class OortMap<K, V> extends OortContainer<ConcurrentMap<K, V>> {
     private static final String VALUE_FIELD = "oort.map.value";
 
     private final List<EntryListener<K, V>> listeners = new CopyOnWriteArrayList<>();
+    private final Map<K, V> mergedView = new MergedView();
 
     protected OortMap(Oort oort, String name, Factory<ConcurrentMap<K, V>> factory) {
         super(oort, name, factory);
@@ -191,20 +200,16 @@ public abstract class OortMap<K, V> extends OortContainer<ConcurrentMap<K, V>> {
 
     /**
      * Returns the first non-null value mapped to the given key from the entity maps of all nodes.
-     * Differently from {@link #get(Object)}, entity maps of all nodes are scanned.
+     * Differently from {@link #get(Object)}, entity maps of all nodes are searched, using the
+     * cluster-wide index of keys so that only the maps that contain the key are accessed.
      *
      * @param key the key mapped to the value to return
      * @return the value mapped to the given key, or
      * {@code null} if the maps do not contain the given key
      */
     public V find(K key) {
-        for (Info<ConcurrentMap<K, V>> info : this) {
-            V result = info.getObject().get(key);
-            if (result != null) {
-                return result;
-            }
-        }
-        return null;
+        Info<ConcurrentMap<K, V>> info = findInfo(key);
+        return info == null ? null : info.getObject().get(key);
     }
 
     /**
@@ -212,14 +217,79 @@ public abstract class OortMap<K, V> extends OortContainer<ConcurrentMap<K, V>> {
      * @return the first {@link Info} whose entity map contains the given key.
      */
     public Info<ConcurrentMap<K, V>> findInfo(K key) {
-        for (Info<ConcurrentMap<K, V>> info : this) {
-            if (info.getObject().get(key) != null) {
+        for (String oortURL : findOortURLs(key)) {
+            Info<ConcurrentMap<K, V>> info = getInfo(oortURL);
+            if (info != null && info.getObject().get(key) != null) {
                 return info;
             }
         }
         return null;
     }
 
+    /**
+     * <p>Returns a live, unmodifiable, view of the union of the entity maps of all nodes.</p>
+     * <p>Differently from {@link #merge(Merger)} with {@link OortObjectMergers#concurrentMapUnion()},
+     * the view is not a copy: it is backed by the cluster-wide index of keys, and it is kept
+     * up to date as entries are put and removed on any node.
+     * Lookups via {@link Map#get(Object)} and {@link Map#containsKey(Object)} are therefore
+     * as cheap as {@link #find(Object)}, and iterations are weakly consistent.</p>
+     *
+     * @return a live view of the union of the entity maps of all nodes
+     */
+    public Map<K, V> getMergedView() {
+        return mergedView;
+    }
+
+    @Override
+    protected Collection<?> items(ConcurrentMap<K, V> map) {
+        return map.keySet();
+    }
+
+    @Override
+    protected long[] digest(ConcurrentMap<K, V> map, int buckets) {
+        long[] result = new long[buckets];
+        for (Map.Entry<K, V> entry : map.entrySet()) {
+            K key = entry.getKey();
+            result[bucket(key, buckets)] += 31 * hash(String.valueOf(key)) + hash(entry.getValue());
+        }
+        return result;
+    }
+
+    @Override
+    protected List<ConcurrentMap<K, V>> diff(ConcurrentMap<K, V> map, Set<Integer> buckets, int count) {
+        List<ConcurrentMap<K, V>> result = new ArrayList<>();
+        ConcurrentMap<K, V> chunk = new ConcurrentHashMap<>();
+        if (!buckets.isEmpty()) {
+            for (Map.Entry<K, V> entry : map.entrySet()) {
+                K key = entry.getKey();
+                if (buckets.contains(bucket(key, count))) {
+                    if (chunk.size() == getChunkSize()) {
+                        result.add(chunk);
+                        chunk = new ConcurrentHashMap<>();
+                    }
+                    chunk.put(key, entry.getValue());
+                }
+            }
+        }
+        result.add(chunk);
+        return result;
+    }
+
+    @Override
+    protected ConcurrentMap<K, V> patch(ConcurrentMap<K, V> map, Set<Integer> buckets, int count, List<ConcurrentMap<K, V>> chunks) {
+        Map<K, V> result = new HashMap<>(map.size());
+        for (Map.Entry<K, V> entry : map.entrySet()) {
+            K key = entry.getKey();
+            if (!buckets.contains(bucket(key, count))) {
+                result.put(key, entry.getValue());
+            }
+        }
+        for (ConcurrentMap<K, V> chunk : chunks) {
+            result.putAll(chunk);
+        }
+        return getFactory().newObject(result);
+    }
+
     @Override
     protected boolean isItemUpdate(Map<String, Object> data) {
         return TYPE_FIELD_ENTRY_VALUE.equals(data.get(Info.TYPE_FIELD));
@@ -253,6 +323,15 @@ public abstract class OortMap<K, V> extends OortContainer<ConcurrentMap<K, V>> {
                 throw new IllegalArgumentException(action);
         }
 
+        // Update the index.
+        if (ACTION_FIELD_REMOVE_VALUE.equals(action)) {
+            if (result != null) {
+                unindex(key, info.getOortURL());
+            }
+        } else if (result == null) {
+            index(key, info.getOortURL());
+        }
+
         // Update the version.
         info.put(Info.VERSION_FIELD, data.get(Info.VERSION_FIELD));
 
@@ -299,6 +378,71 @@ public abstract class OortMap<K, V> extends OortContainer<ConcurrentMap<K, V>> {
         }
     }
 
+    /**
+     * <p>A live view of the union of the entity maps of all nodes, backed by the key index.</p>
+     */
+    private class MergedView extends AbstractMap<K, V> {
+        private final Set<Map.Entry<K, V>> entries = new AbstractSet<Map.Entry<K, V>>() {
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                final Iterator<Object> keys = findItems().iterator();
+                return new Iterator<Map.Entry<K, V>>() {
+                    private Map.Entry<K, V> next;
+
+                    @Override
+                    public boolean hasNext() {
+                        while (next == null && keys.hasNext()) {
+                            @SuppressWarnings("unchecked")
+                            K key = (K)keys.next();
+                            // The key may be removed concurrently.
+                            V value = find(key);
+                            if (value != null) {
+                                next = new SimpleImmutableEntry<>(key, value);
+                            }
+                        }
+                        return next != null;
+                    }
+
+                    @Override
+                    public Map.Entry<K, V> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        Map.Entry<K, V> result = next;
+                        next = null;
+                        return result;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return findItems().size();
+            }
+        };
+
+        @Override
+        public Set<Map.Entry<K, V>> entrySet() {
+            return entries;
+        }
+
+        @Override
+        public int size() {
+            return findItems().size();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return !findOortURLs(key).isEmpty();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V get(Object key) {
+            return find((K)key);
+        }
+    }
+
     /**
      * Listener for entry events that update the entity map, either locally or remotely.
      *
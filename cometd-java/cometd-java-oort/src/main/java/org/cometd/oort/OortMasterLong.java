@@ -15,6 +15,9 @@
  */
 package org.cometd.oort;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -29,9 +32,16 @@ import java.util.concurrent.atomic.AtomicLong;
  * (it may be negative) and a {@link Callback} object that will be
  * invoked on the <em>requesting node</em> when the result has been
  * computed and transmitted back by the "master" node.</p>
+ * <p>When the {@link #setLeaseTime(long) lease time} is positive, the value
+ * retrieved by {@link #get(Callback)} on non-master nodes is served from local
+ * memory until the lease expires or the "master" node revokes it because the
+ * value changed; updates are always forwarded to the "master" node.</p>
  */
 public class OortMasterLong extends OortMasterService<Long, OortMasterLong.Context> {
+    private static final String LEASE_FIELD = "lease";
+
     private final AtomicLong value = new AtomicLong();
+    private volatile Lease lease;
 
     public OortMasterLong(Oort oort, String name, boolean master) {
         this(oort, name, master, 0);
@@ -63,7 +73,19 @@ public class OortMasterLong extends OortMasterService<Long, OortMasterLong.Conte
      * @return whether the request could be forwarded to the "master" node
      */
     public boolean get(Callback callback) {
-        return getAndAdd(0, callback);
+        if (isMaster() || getLeaseTime() == 0) {
+            return getAndAdd(0, callback);
+        }
+        long now = System.nanoTime();
+        Lease lease = this.lease;
+        if (lease != null && lease.expiration - now > 0) {
+            callback.succeeded(lease.value);
+            return true;
+        }
+        Context context = new Context(0, callback, false);
+        context.leaseExpiration = now + TimeUnit.MILLISECONDS.toNanos(getLeaseTime());
+        context.leaseRevocations = getLeaseRevocations();
+        return forward(getMasterOortURL(), Collections.singletonMap(LEASE_FIELD, true), context);
     }
 
     /**
@@ -100,7 +122,13 @@ public class OortMasterLong extends OortMasterService<Long, OortMasterLong.Conte
             return Result.ignore(0L);
         }
 
-        long delta = ((Number)request.getData()).longValue();
+        Object data = request.getData();
+        if (data instanceof Map) {
+            grantLease(request.getOortURL());
+            return Result.success(value.get());
+        }
+
+        long delta = ((Number)data).longValue();
         long oldValue = value.get();
         while (true) {
             if (value.compareAndSet(oldValue, oldValue + delta)) {
@@ -108,11 +136,18 @@ public class OortMasterLong extends OortMasterService<Long, OortMasterLong.Conte
             }
             oldValue = value.get();
         }
+        if (delta != 0) {
+            revokeLeases();
+        }
         return Result.success(oldValue);
     }
 
     @Override
     protected void onForwardSucceeded(Long result, Context context) {
+        // Use the result for the lease only if no revocation overtook it.
+        if (context.leaseExpiration != 0 && context.leaseRevocations == getLeaseRevocations()) {
+            lease = new Lease(result, context.leaseExpiration);
+        }
         context.callback.succeeded(context.compute ? result + context.delta : result);
     }
 
@@ -121,6 +156,11 @@ public class OortMasterLong extends OortMasterService<Long, OortMasterLong.Conte
         context.callback.failed(failure);
     }
 
+    @Override
+    protected void onLeaseRevoked() {
+        lease = null;
+    }
+
     /**
      * Callback invoked when the result of the operation on the counter is available,
      * or when the operation failed.
@@ -158,6 +198,8 @@ public class OortMasterLong extends OortMasterService<Long, OortMasterLong.Conte
         private final long delta;
         private final Callback callback;
         private final boolean compute;
+        private long leaseExpiration;
+        private long leaseRevocations;
 
         private Context(long delta, Callback callback, boolean compute) {
             this.delta = delta;
@@ -165,4 +207,14 @@ public class OortMasterLong extends OortMasterService<Long, OortMasterLong.Conte
             this.compute = compute;
         }
     }
+
+    private static class Lease {
+        private final long value;
+        private final long expiration;
+
+        private Lease(long value, long expiration) {
+            this.value = value;
+            this.expiration = expiration;
+        }
+    }
 }
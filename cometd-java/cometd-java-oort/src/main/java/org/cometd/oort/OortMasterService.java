@@ -15,6 +15,17 @@
  */
 package org.cometd.oort;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.cometd.bayeux.server.ServerChannel;
+import org.cometd.bayeux.server.ServerMessage;
+import org.cometd.bayeux.server.ServerSession;
+
 /**
  * <p>{@link OortMasterService} extends {@link OortService} to allow applications
  * to perform actions on entities that always live in a "master" node.</p>
@@ -35,13 +46,27 @@ package org.cometd.oort;
  * Then, applications may call {@link #getMasterOortURL()} to get the Oort URL
  * of the "master" node, and pass that Oort URL to
  * {@link #forward(String, Object, Object)} as described in {@link OortService}.</p>
+ * <p>Subclasses may allow non-master nodes to read entities from local memory
+ * rather than forwarding every read to the "master" node, using <em>leases</em>.
+ * When the {@link #getLeaseTime() lease time} is positive, the "master" node
+ * {@link #grantLease(String) grants} a lease to the requesting node when it
+ * returns the value of an entity, and {@link #revokeLeases() revokes} the leases
+ * when the entity is modified, by sending an invalidation to the nodes that hold
+ * a lease that has not expired yet.
+ * While the lease holds, the requesting node may return the value it received,
+ * until {@link #onLeaseRevoked()} is invoked.</p>
  *
  * @param <R> the result type
  * @param <C> the opaque context type
  */
 public abstract class OortMasterService<R, C> extends OortService<R, C> {
+    private final ConcurrentMap<String, Long> leases = new ConcurrentHashMap<>();
+    private final AtomicLong revocations = new AtomicLong();
+    private final ServerChannel.MessageListener revokeListener = new RevokeListener();
     private final boolean master;
     private final OortObject<Boolean> nodes;
+    private final String revokeChannelName;
+    private volatile long leaseTime;
 
     /**
      * @param oort   the oort this instance is associated to
@@ -52,6 +77,7 @@ public abstract class OortMasterService<R, C> extends OortService<R, C> {
         super(oort, name);
         this.master = master;
         this.nodes = new OortObject<>(oort, name, OortObjectFactories.forBoolean(master));
+        this.revokeChannelName = "/service/oort/service/" + name + "/lease";
     }
 
     /**
@@ -69,15 +95,112 @@ public abstract class OortMasterService<R, C> extends OortService<R, C> {
         return info == null ? null : info.getOortURL();
     }
 
+    /**
+     * @return the time, in milliseconds, for which a value read from the "master" node
+     * may be served from local memory, or 0 if leases are disabled (the default)
+     */
+    public long getLeaseTime() {
+        return leaseTime;
+    }
+
+    /**
+     * @param leaseTime the time, in milliseconds, for which a value read from the "master" node
+     *                  may be served from local memory, or 0 to disable leases
+     */
+    public void setLeaseTime(long leaseTime) {
+        if (leaseTime < 0) {
+            throw new IllegalArgumentException("Invalid lease time " + leaseTime);
+        }
+        this.leaseTime = leaseTime;
+    }
+
     @Override
     protected void doStart() throws Exception {
         super.doStart();
+        getOort().getBayeuxServer().createChannelIfAbsent(revokeChannelName).getReference().addListener(revokeListener);
         nodes.start();
     }
 
     @Override
     protected void doStop() throws Exception {
         nodes.stop();
+        ServerChannel channel = getOort().getBayeuxServer().getChannel(revokeChannelName);
+        if (channel != null) {
+            channel.removeListener(revokeListener);
+        }
+        leases.clear();
         super.doStop();
     }
+
+    /**
+     * <p>Called on the "master" node to grant a lease to the given requesting node.</p>
+     * <p>The lease must be granted <em>before</em> reading the value that is returned
+     * to the requesting node, so that a concurrent modification either revokes this
+     * lease, or is visible to the read.</p>
+     *
+     * @param oortURL the Oort URL of the requesting node
+     */
+    protected void grantLease(String oortURL) {
+        long leaseTime = getLeaseTime();
+        if (leaseTime > 0 && !getOort().getURL().equals(oortURL)) {
+            leases.put(oortURL, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(leaseTime));
+        }
+    }
+
+    /**
+     * <p>Called on the "master" node, after the value has been modified, to revoke
+     * the leases that have not expired yet.</p>
+     */
+    protected void revokeLeases() {
+        long now = System.nanoTime();
+        for (Map.Entry<String, Long> entry : leases.entrySet()) {
+            String oortURL = entry.getKey();
+            Long expiration = entry.getValue();
+            // Only remove the lease that has been read,
+            // not a lease that has been renewed concurrently.
+            if (!leases.remove(oortURL, expiration)) {
+                continue;
+            }
+            if (expiration - now > 0) {
+                OortComet comet = getOort().getComet(oortURL);
+                if (comet != null) {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("Revoking lease of {}", oortURL);
+                    }
+                    comet.getChannel(revokeChannelName).publish(new HashMap<>(0));
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>Returns the number of lease revocations received by this node.</p>
+     * <p>Requesting nodes should take this value before forwarding a read to the
+     * "master" node, and use the value returned only if this value did not change
+     * by the time the result arrives, since a revocation may overtake the result.</p>
+     *
+     * @return the number of lease revocations received by this node
+     */
+    protected long getLeaseRevocations() {
+        return revocations.get();
+    }
+
+    /**
+     * <p>Called on a requesting node when the "master" node revokes the lease,
+     * so that the value read from local memory must be discarded.</p>
+     */
+    protected void onLeaseRevoked() {
+    }
+
+    private class RevokeListener implements ServerChannel.MessageListener {
+        @Override
+        public boolean onMessage(ServerSession from, ServerChannel channel, ServerMessage.Mutable message) {
+            revocations.incrementAndGet();
+            if (logger.isDebugEnabled()) {
+                logger.debug("Lease revoked");
+            }
+            onLeaseRevoked();
+            return true;
+        }
+    }
 }
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2008-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cometd.oort;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * <p>A distributed set whose elements can be added and removed on any node
+ * without coordination (an observed-remove set CRDT).</p>
+ * <p>When the same element is concurrently added on one node and removed on
+ * another node, the addition wins: a removal only removes the additions that
+ * the removing node has observed.</p>
+ * <p>Each addition is tagged with the replica that performed it and with a
+ * per-replica counter; each node also keeps, for every replica, the highest
+ * counter it has observed.
+ * A replica is identified by the Oort URL of its node and by an incarnation id
+ * that is different for every instance of this class, so that a node restarted
+ * with the same Oort URL does not reuse counters that other nodes have already
+ * observed.
+ * A removal discards the tags of the element, and the counters allow the merge
+ * to tell apart tags that have been removed from tags that have not been
+ * observed yet, so that no tombstone needs to be retained.</p>
+ * <p>Elements must be representable in JSON, and must compare equal after the
+ * JSON serialization and deserialization (for example, strings).</p>
+ *
+ * @param <E> the element type
+ */
+public class OortORSet<E> extends OortCRDT {
+    private static final String CLOCK_FIELD = "clock";
+    private static final String ELEMENTS_FIELD = "elements";
+
+    private final Map<String, Long> clock = new HashMap<>();
+    private final Map<E, Map<String, Set<Long>>> elements = new HashMap<>();
+    private final String replica;
+
+    /**
+     * @param oort the oort this instance is associated to
+     * @param name the name of this set
+     */
+    public OortORSet(Oort oort, String name) {
+        super(oort, name);
+        this.replica = oort.getURL() + "#" + UUID.randomUUID();
+    }
+
+    /**
+     * @param element the element to add
+     * @return whether the element was not present before
+     */
+    public boolean add(E element) {
+        boolean result;
+        synchronized (this) {
+            long counter = clock.merge(replica, 1L, Long::sum);
+            Map<String, Set<Long>> tags = elements.computeIfAbsent(element, k -> new HashMap<>());
+            result = tags.isEmpty();
+            tags.computeIfAbsent(replica, k -> new HashSet<>()).add(counter);
+        }
+        changed();
+        return result;
+    }
+
+    /**
+     * @param element the element to remove
+     * @return whether the element was present before
+     */
+    public boolean remove(E element) {
+        boolean result;
+        synchronized (this) {
+            result = elements.remove(element) != null;
+        }
+        if (result) {
+            changed();
+        }
+        return result;
+    }
+
+    /**
+     * @param element the element to test for presence
+     * @return whether the element is present in the set, as known by this node
+     */
+    public synchronized boolean contains(E element) {
+        return elements.containsKey(element);
+    }
+
+    /**
+     * @return the number of elements in the set, as known by this node
+     */
+    public synchronized int size() {
+        return elements.size();
+    }
+
+    /**
+     * @return a snapshot of the elements of the set, as known by this node
+     */
+    public synchronized Set<E> getElements() {
+        return new HashSet<>(elements.keySet());
+    }
+
+    @Override
+    protected synchronized Map<String, Object> snapshot() {
+        List<Object> list = new ArrayList<>(elements.size());
+        for (Map.Entry<E, Map<String, Set<Long>>> entry : elements.entrySet()) {
+            Map<String, Object> tags = new HashMap<>();
+            for (Map.Entry<String, Set<Long>> tag : entry.getValue().entrySet()) {
+                tags.put(tag.getKey(), new ArrayList<>(tag.getValue()));
+            }
+            list.add(Arrays.asList(entry.getKey(), tags));
+        }
+        Map<String, Object> result = new HashMap<>(2);
+        result.put(CLOCK_FIELD, new HashMap<>(clock));
+        result.put(ELEMENTS_FIELD, list);
+        return result;
+    }
+
+    @Override
+    protected void merge(String oortURL, Map<String, Object> state) {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> clockObject = (Map<String, Object>)state.get(CLOCK_FIELD);
+        // The remote set may not have shared its state yet.
+        if (clockObject == null) {
+            return;
+        }
+        Map<String, Long> remoteClock = new HashMap<>();
+        for (Map.Entry<String, Object> entry : clockObject.entrySet()) {
+            remoteClock.put(entry.getKey(), ((Number)entry.getValue()).longValue());
+        }
+
+        Map<E, Map<String, Set<Long>>> remoteElements = new HashMap<>();
+        for (Object item : toCollection(state.get(ELEMENTS_FIELD))) {
+            List<Object> pair = new ArrayList<>(toCollection(item));
+            @SuppressWarnings("unchecked")
+            E element = (E)pair.get(0);
+            @SuppressWarnings("unchecked")
+            Map<String, Object> tagsObject = (Map<String, Object>)pair.get(1);
+            Map<String, Set<Long>> tags = new HashMap<>();
+            for (Map.Entry<String, Object> entry : tagsObject.entrySet()) {
+                Set<Long> counters = new HashSet<>();
+                for (Object counter : toCollection(entry.getValue())) {
+                    counters.add(((Number)counter).longValue());
+                }
+                tags.put(entry.getKey(), counters);
+            }
+            remoteElements.put(element, tags);
+        }
+
+        synchronized (this) {
+            Set<E> all = new HashSet<>(elements.keySet());
+            all.addAll(remoteElements.keySet());
+            for (E element : all) {
+                Map<String, Set<Long>> local = elements.get(element);
+                Map<String, Set<Long>> remote = remoteElements.get(element);
+                Map<String, Set<Long>> merged = mergeTags(local, clock, remote, remoteClock);
+                if (merged.isEmpty()) {
+                    elements.remove(element);
+                } else {
+                    elements.put(element, merged);
+                }
+            }
+            for (Map.Entry<String, Long> entry : remoteClock.entrySet()) {
+                clock.merge(entry.getKey(), entry.getValue(), Math::max);
+            }
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Merged state from {}, size {}", oortURL, size());
+        }
+    }
+
+    /**
+     * <p>Keeps the tags present on both sides, plus the tags present on one side only
+     * that the other side has not observed yet (as opposed to observed and removed).</p>
+     */
+    private Map<String, Set<Long>> mergeTags(Map<String, Set<Long>> local, Map<String, Long> localClock, Map<String, Set<Long>> remote, Map<String, Long> remoteClock) {
+        Map<String, Set<Long>> result = new HashMap<>();
+        if (local != null) {
+            for (Map.Entry<String, Set<Long>> entry : local.entrySet()) {
+                String replicaId = entry.getKey();
+                Set<Long> remoteCounters = remote == null ? null : remote.get(replicaId);
+                long remoteMax = remoteClock.getOrDefault(replicaId, 0L);
+                for (Long counter : entry.getValue()) {
+                    if ((remoteCounters != null && remoteCounters.contains(counter)) || counter > remoteMax) {
+                        result.computeIfAbsent(replicaId, k -> new HashSet<>()).add(counter);
+                    }
+                }
+            }
+        }
+        if (remote != null) {
+            for (Map.Entry<String, Set<Long>> entry : remote.entrySet()) {
+                String replicaId = entry.getKey();
+                long localMax = localClock.getOrDefault(replicaId, 0L);
+                for (Long counter : entry.getValue()) {
+                    if (counter > localMax) {
+                        result.computeIfAbsent(replicaId, k -> new HashSet<>()).add(counter);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private Collection<?> toCollection(Object object) {
+        if (object instanceof Object[]) {
+            return Arrays.asList((Object[])object);
+        }
+        return (Collection<?>)object;
+    }
+}
@@ -427,6 +427,12 @@ public class OortObject<T> extends AbstractLifeCycle implements ConfigurableServ
             object = getFactory().newObject(object);
         }
 
+        updateInfo(data, object);
+    }
+
+    void updateInfo(Map<String, Object> data, Object object) {
+        String oortURL = (String)data.get(Info.OORT_URL_FIELD);
+
         Info<T> newInfo = new Info<>(oort.getURL(), data);
         newInfo.put(Info.OBJECT_FIELD, object);
 
@@ -497,9 +503,16 @@ public class OortObject<T> extends AbstractLifeCycle implements ConfigurableServ
     }
 
     protected void pullInfo(String oortURL) {
+        pullInfo(oortURL, null);
+    }
+
+    protected void pullInfo(String oortURL, Map<String, Object> fields) {
         OortComet oortComet = oort.getComet(oortURL);
         if (oortComet != null) {
             Map<String, Object> message = new HashMap<>();
+            if (fields != null) {
+                message.putAll(fields);
+            }
             message.put(Info.OORT_URL_FIELD, getOort().getURL());
             message.put(Info.NAME_FIELD, getName());
             message.put(Info.ACTION_FIELD, ACTION_FIELD_PULL_VALUE);
@@ -510,6 +523,20 @@ public class OortObject<T> extends AbstractLifeCycle implements ConfigurableServ
         }
     }
 
+    /**
+     * <p>Replies to a pull request from another node.</p>
+     * <p>By default, the whole local {@link Info} is pushed to the requesting node.</p>
+     *
+     * @param data the pull request
+     */
+    protected void onPull(Map<String, Object> data) {
+        pushInfoReply((String)data.get(Info.OORT_URL_FIELD));
+    }
+
+    String getServiceChannelName() {
+        return serviceChannel;
+    }
+
     protected Collection<Info<T>> getInfos() {
         List<Info<T>> result = new ArrayList<>(parts.size());
         for (ObjectPart part : parts.values()) {
@@ -867,7 +894,7 @@ public class OortObject<T> extends AbstractLifeCycle implements ConfigurableServ
                 String oortURL = (String)data.get(Info.OORT_URL_FIELD);
 
                 if (ACTION_FIELD_PULL_VALUE.equals(data.get(Info.ACTION_FIELD))) {
-                    pushInfoReply(oortURL);
+                    onPull(data);
                     continue;
                 }
 
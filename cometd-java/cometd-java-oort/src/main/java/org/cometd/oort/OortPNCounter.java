@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2008-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cometd.oort;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>A distributed counter that can be incremented and decremented on any node
+ * without coordination (a PN-counter CRDT).</p>
+ * <p>Each node counts its own increments and decrements in memory, so that
+ * {@link #add(long)} does not send any message; the counts of all the nodes
+ * are periodically shared, and {@link #get()} returns the sum of the counts
+ * of all the nodes, as known by this node.</p>
+ * <p>Where {@link OortMasterLong} requires a round trip to the "master" node for
+ * every operation, and {@link OortLong} broadcasts a message for every operation,
+ * this class sends at most one message per {@link #getPeriod() period}.
+ * Differently from {@link OortLong}, the counts of a node that leaves the cluster
+ * are retained, which suits counters such as the number of messages processed.</p>
+ */
+public class OortPNCounter extends OortCRDT {
+    private static final String INCREMENTS_FIELD = "p";
+    private static final String DECREMENTS_FIELD = "n";
+
+    private final LongAdder increments = new LongAdder();
+    private final LongAdder decrements = new LongAdder();
+    private final ConcurrentMap<String, long[]> counts = new ConcurrentHashMap<>();
+
+    /**
+     * @param oort the oort this instance is associated to
+     * @param name the name of this counter
+     */
+    public OortPNCounter(Oort oort, String name) {
+        super(oort, name);
+    }
+
+    /**
+     * @param delta the value to add to the counter, may be negative
+     */
+    public void add(long delta) {
+        if (delta > 0) {
+            increments.add(delta);
+            changed();
+        } else if (delta < 0) {
+            decrements.add(-delta);
+            changed();
+        }
+    }
+
+    /**
+     * Adds one to the counter.
+     */
+    public void increment() {
+        add(1);
+    }
+
+    /**
+     * Subtracts one from the counter.
+     */
+    public void decrement() {
+        add(-1);
+    }
+
+    /**
+     * @return the value of the counter contributed by this node
+     */
+    public long getLocal() {
+        return increments.sum() - decrements.sum();
+    }
+
+    /**
+     * @return the value of the counter across the cluster, as known by this node
+     */
+    public long get() {
+        long result = getLocal();
+        String localOortURL = getOort().getURL();
+        for (Map.Entry<String, long[]> entry : counts.entrySet()) {
+            if (!localOortURL.equals(entry.getKey())) {
+                long[] value = entry.getValue();
+                result += value[0] - value[1];
+            }
+        }
+        return result;
+    }
+
+    @Override
+    protected Map<String, Object> snapshot() {
+        Map<String, Object> result = new HashMap<>();
+        for (Map.Entry<String, long[]> entry : counts.entrySet()) {
+            result.put(entry.getKey(), toJSON(entry.getValue()[0], entry.getValue()[1]));
+        }
+        result.put(getOort().getURL(), toJSON(increments.sum(), decrements.sum()));
+        return result;
+    }
+
+    private void restore(LongAdder adder, long count) {
+        long delta = count - adder.sum();
+        if (delta > 0) {
+            adder.add(delta);
+            changed();
+        }
+    }
+
+    private Map<String, Object> toJSON(long increments, long decrements) {
+        Map<String, Object> result = new HashMap<>(2);
+        result.put(INCREMENTS_FIELD, increments);
+        result.put(DECREMENTS_FIELD, decrements);
+        return result;
+    }
+
+    @Override
+    protected void merge(String oortURL, Map<String, Object> state) {
+        String localOortURL = getOort().getURL();
+        for (Map.Entry<String, Object> entry : state.entrySet()) {
+            String nodeURL = entry.getKey();
+            @SuppressWarnings("unchecked")
+            Map<String, Object> value = (Map<String, Object>)entry.getValue();
+            long p = ((Number)value.get(INCREMENTS_FIELD)).longValue();
+            long n = ((Number)value.get(DECREMENTS_FIELD)).longValue();
+            if (localOortURL.equals(nodeURL)) {
+                // Other nodes may know more about our counts than
+                // us if this node has been restarted with the same URL.
+                restore(increments, p);
+                restore(decrements, n);
+                continue;
+            }
+            // Counts only grow, so the merge is the max.
+            counts.merge(nodeURL, new long[]{p, n}, (v1, v2) -> new long[]{Math.max(v1[0], v2[0]), Math.max(v1[1], v2[1])});
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Merged state from {}, value {}", oortURL, get());
+        }
+    }
+}
@@ -0,0 +1,502 @@
+/*
+ * Copyright (c) 2008-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cometd.oort;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>A distributed map service that partitions its entries across the nodes
+ * of the cluster, rather than replicating them to every node like
+ * {@link OortMap} does.</p>
+ * <p>Each key is assigned an <em>owner</em> node, and optionally a number of
+ * <em>backup</em> nodes, via consistent hashing of the key over a ring built
+ * from the Oort URLs of the local node and of the
+ * {@link Oort#getKnownComets() known comets}.
+ * Reads and writes are forwarded to the owner node as described in
+ * {@link OortService}; the owner node applies the action and, if configured,
+ * copies the entry to the backup nodes.</p>
+ * <p>When nodes join or leave the cluster, the ring is rebuilt and every node
+ * moves the entries it is no longer responsible for to their new owner, and
+ * copies the entries it now owns to their new backup nodes.
+ * While the cluster membership changes, different nodes may temporarily
+ * disagree on the owner of a key; the map is eventually consistent once
+ * the membership is stable.
+ * Entries that have no backup are lost if their owner node leaves.</p>
+ * <p>Keys are strings, and values must be serializable to JSON, since they
+ * travel across nodes; {@code null} values are not allowed.
+ * Values received from other nodes are in their JSON representation, and are
+ * converted to the value type by the {@link OortObject.Factory} passed to the
+ * constructor, similarly to what {@link OortObject} does; without a factory,
+ * the value type must be a type produced by the JSON parser, such as
+ * {@link String}, {@link Long}, {@link Boolean} or {@link Map}.</p>
+ * <p>There must be one instance of {@link OortPartitionedMap} with the same
+ * name and number of backups on every node of the cluster.</p>
+ *
+ * @param <V> the value type
+ */
+public class OortPartitionedMap<V> extends OortService<Object, OortPartitionedMap.Context<V>> implements Oort.CometListener {
+    private static final String ACTION_FIELD = "oort.partition.action";
+    private static final String KEY_FIELD = "oort.partition.key";
+    private static final String VALUE_FIELD = "oort.partition.value";
+    private static final String ACTION_FIELD_GET_VALUE = "oort.partition.get";
+    private static final String ACTION_FIELD_PUT_VALUE = "oort.partition.put";
+    private static final String ACTION_FIELD_REMOVE_VALUE = "oort.partition.remove";
+    private static final String ACTION_FIELD_BACKUP_VALUE = "oort.partition.backup";
+    private static final String ACTION_FIELD_MIGRATE_VALUE = "oort.partition.migrate";
+
+    private final ConcurrentMap<String, V> entries = new ConcurrentHashMap<>();
+    private final int backups;
+    private final OortObject.Factory<V> factory;
+    private volatile int virtualNodes = 64;
+    private volatile NavigableMap<Long, String> ring = Collections.emptyNavigableMap();
+    private volatile int members;
+
+    /**
+     * @param oort the oort this instance is associated to
+     * @param name the name of this service
+     */
+    public OortPartitionedMap(Oort oort, String name) {
+        this(oort, name, 0);
+    }
+
+    /**
+     * @param oort    the oort this instance is associated to
+     * @param name    the name of this service
+     * @param backups the number of backup nodes for each entry
+     */
+    @SuppressWarnings("unchecked")
+    public OortPartitionedMap(Oort oort, String name, int backups) {
+        this(oort, name, backups, representation -> (V)representation);
+    }
+
+    /**
+     * @param oort    the oort this instance is associated to
+     * @param name    the name of this service
+     * @param backups the number of backup nodes for each entry
+     * @param factory the factory that converts the values received from other nodes
+     */
+    public OortPartitionedMap(Oort oort, String name, int backups, OortObject.Factory<V> factory) {
+        super(oort, name);
+        if (backups < 0) {
+            throw new IllegalArgumentException("Invalid backups " + backups);
+        }
+        this.backups = backups;
+        this.factory = factory;
+    }
+
+    /**
+     * @return the number of backup nodes for each entry
+     */
+    public int getBackups() {
+        return backups;
+    }
+
+    /**
+     * @return the number of points that each node occupies on the consistent hashing ring
+     */
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    /**
+     * <p>Sets the number of points that each node occupies on the consistent
+     * hashing ring; more points give a more even distribution of the keys.</p>
+     * <p>This value must be the same on every node and can only be set
+     * before this service is started.</p>
+     *
+     * @param virtualNodes the number of points that each node occupies on the ring
+     */
+    public void setVirtualNodes(int virtualNodes) {
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("Invalid virtual nodes " + virtualNodes);
+        }
+        if (isRunning()) {
+            throw new IllegalStateException("Cannot set virtual nodes on a running " + this);
+        }
+        this.virtualNodes = virtualNodes;
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        super.doStart();
+        getOort().addCometListener(this);
+        updateRing();
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        getOort().removeCometListener(this);
+        entries.clear();
+        ring = Collections.emptyNavigableMap();
+        super.doStop();
+    }
+
+    /**
+     * @param key the key
+     * @return the Oort URL of the node that owns the given key
+     */
+    public String getOwnerOortURL(String key) {
+        List<String> replicas = getReplicaOortURLs(key);
+        return replicas.isEmpty() ? null : replicas.get(0);
+    }
+
+    /**
+     * @param key the key
+     * @return the Oort URLs of the owner node followed by the backup nodes of the given key
+     */
+    public List<String> getReplicaOortURLs(String key) {
+        NavigableMap<Long, String> ring = this.ring;
+        int count = Math.min(1 + getBackups(), members);
+        List<String> result = new ArrayList<>(count);
+        if (count == 0) {
+            return result;
+        }
+        long hash = hash(key);
+        for (String oortURL : ring.tailMap(hash, true).values()) {
+            if (!result.contains(oortURL)) {
+                result.add(oortURL);
+                if (result.size() == count) {
+                    return result;
+                }
+            }
+        }
+        for (String oortURL : ring.headMap(hash, false).values()) {
+            if (!result.contains(oortURL)) {
+                result.add(oortURL);
+                if (result.size() == count) {
+                    return result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param key the key
+     * @return whether this node owns the given key
+     */
+    public boolean isOwner(String key) {
+        return getOort().getURL().equals(getOwnerOortURL(key));
+    }
+
+    /**
+     * @return the number of entries stored on this node, either as owner or as backup
+     */
+    public int getLocalSize() {
+        return entries.size();
+    }
+
+    /**
+     * @return a snapshot of the keys stored on this node, either as owner or as backup
+     */
+    public Set<String> getLocalKeys() {
+        return new TreeSet<>(entries.keySet());
+    }
+
+    /**
+     * <p>Retrieves the value associated with the given key from the owner node.</p>
+     *
+     * @param key      the key
+     * @param callback the callback invoked with the value, or null if there is no value
+     * @return whether the request could be forwarded to the owner node
+     */
+    public boolean get(String key, Callback<V> callback) {
+        return forward(ACTION_FIELD_GET_VALUE, key, null, callback);
+    }
+
+    /**
+     * <p>Associates the given value with the given key on the owner node.</p>
+     *
+     * @param key      the key
+     * @param value    the value
+     * @param callback the callback invoked with the previous value, or null if there was no value
+     * @return whether the request could be forwarded to the owner node
+     */
+    public boolean put(String key, V value, Callback<V> callback) {
+        if (value == null) {
+            throw new NullPointerException("value");
+        }
+        return forward(ACTION_FIELD_PUT_VALUE, key, value, callback);
+    }
+
+    /**
+     * <p>Removes the value associated with the given key on the owner node.</p>
+     *
+     * @param key      the key
+     * @param callback the callback invoked with the removed value, or null if there was no value
+     * @return whether the request could be forwarded to the owner node
+     */
+    public boolean remove(String key, Callback<V> callback) {
+        return forward(ACTION_FIELD_REMOVE_VALUE, key, null, callback);
+    }
+
+    private boolean forward(String action, String key, V value, Callback<V> callback) {
+        String ownerOortURL = getOwnerOortURL(key);
+        if (ownerOortURL == null) {
+            return false;
+        }
+        return forward(ownerOortURL, action, key, value, new Context<>(key, callback));
+    }
+
+    private boolean forward(String oortURL, String action, String key, V value, Context<V> context) {
+        context.oortURL = oortURL;
+        Map<String, Object> data = new HashMap<>(4);
+        data.put(ACTION_FIELD, action);
+        data.put(KEY_FIELD, key);
+        if (value != null) {
+            data.put(VALUE_FIELD, value);
+        }
+        return forward(oortURL, data, context);
+    }
+
+    @Override
+    protected Result<Object> onForward(Request request) {
+        Map<String, Object> data = request.getDataAsMap();
+        String action = (String)data.get(ACTION_FIELD);
+        String key = (String)data.get(KEY_FIELD);
+        V value = convert(request.getOortURL(), data.get(VALUE_FIELD));
+        switch (action) {
+            case ACTION_FIELD_GET_VALUE: {
+                return Result.success(entries.get(key));
+            }
+            case ACTION_FIELD_PUT_VALUE: {
+                V result = entries.put(key, value);
+                backup(key, value);
+                return Result.success(result);
+            }
+            case ACTION_FIELD_REMOVE_VALUE: {
+                V result = entries.remove(key);
+                if (result != null) {
+                    backup(key, null);
+                }
+                return Result.success(result);
+            }
+            case ACTION_FIELD_BACKUP_VALUE: {
+                V result = value == null ? entries.remove(key) : entries.put(key, value);
+                return Result.success(result);
+            }
+            case ACTION_FIELD_MIGRATE_VALUE: {
+                // An entry written on this node after a membership
+                // change is more recent than the one being migrated.
+                V result = entries.putIfAbsent(key, value);
+                if (result == null) {
+                    backup(key, value);
+                }
+                return Result.success(result);
+            }
+            default: {
+                return Result.failure("Unknown action " + action);
+            }
+        }
+    }
+
+    @Override
+    protected void onForwardSucceeded(Object result, Context<V> context) {
+        if (context.migrated != null) {
+            // Remove only if it has not been modified in the meantime.
+            entries.remove(context.key, context.migrated);
+        }
+        if (context.callback != null) {
+            context.callback.succeeded(convert(context.oortURL, result));
+        }
+    }
+
+    @Override
+    protected void onForwardFailed(Object failure, Context<V> context) {
+        if (context.migrated != null) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Could not migrate entry {}: {}", context.key, failure);
+            }
+        }
+        if (context.callback != null) {
+            context.callback.failed(failure);
+        }
+    }
+
+    /**
+     * @param oortURL the Oort URL of the node the value comes from
+     * @param value   the value, or its JSON representation if it comes from another node
+     * @return the value converted by the factory if it comes from another node
+     */
+    @SuppressWarnings("unchecked")
+    private V convert(String oortURL, Object value) {
+        if (value == null || getOort().getURL().equals(oortURL)) {
+            return (V)value;
+        }
+        return factory.newObject(value);
+    }
+
+    private void backup(String key, V value) {
+        String localOortURL = getOort().getURL();
+        List<String> replicas = getReplicaOortURLs(key);
+        for (int i = 1; i < replicas.size(); ++i) {
+            String oortURL = replicas.get(i);
+            if (!localOortURL.equals(oortURL)) {
+                forward(oortURL, ACTION_FIELD_BACKUP_VALUE, key, value, new Context<>(key, null));
+            }
+        }
+    }
+
+    @Override
+    public void cometJoined(Event event) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("Oort {} joined", event.getCometURL());
+        }
+        updateRing();
+        rebalance();
+    }
+
+    @Override
+    public void cometLeft(Event event) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("Oort {} left", event.getCometURL());
+        }
+        updateRing();
+        rebalance();
+    }
+
+    private synchronized void updateRing() {
+        Set<String> oortURLs = new TreeSet<>(getOort().getKnownComets());
+        oortURLs.add(getOort().getURL());
+        int virtualNodes = getVirtualNodes();
+        NavigableMap<Long, String> ring = new TreeMap<>();
+        for (String oortURL : oortURLs) {
+            for (int i = 0; i < virtualNodes; ++i) {
+                ring.put(hash(oortURL + "#" + i), oortURL);
+            }
+        }
+        this.ring = ring;
+        this.members = oortURLs.size();
+        if (logger.isDebugEnabled()) {
+            logger.debug("Partition ring updated with {}", oortURLs);
+        }
+    }
+
+    /**
+     * <p>Moves the entries that this node is no longer responsible for to their owner node,
+     * and copies the entries owned by this node to their backup nodes.</p>
+     */
+    protected void rebalance() {
+        String localOortURL = getOort().getURL();
+        int migrated = 0;
+        for (Map.Entry<String, V> entry : entries.entrySet()) {
+            String key = entry.getKey();
+            V value = entry.getValue();
+            List<String> replicas = getReplicaOortURLs(key);
+            if (replicas.isEmpty()) {
+                continue;
+            }
+            if (localOortURL.equals(replicas.get(0))) {
+                backup(key, value);
+            } else if (!replicas.contains(localOortURL)) {
+                Context<V> context = new Context<>(key, null);
+                context.migrated = value;
+                if (forward(replicas.get(0), ACTION_FIELD_MIGRATE_VALUE, key, value, context)) {
+                    ++migrated;
+                }
+            }
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Rebalanced {} entries, {} migrated", entries.size(), migrated);
+        }
+    }
+
+    /**
+     * <p>Hashes the given string to a position on the consistent hashing ring.</p>
+     * <p>The hash must be the same on every node, so it is computed
+     * from the UTF-8 bytes of the string (FNV-1a) rather than from
+     * {@link Object#hashCode()}, and then mixed to spread the values.</p>
+     *
+     * @param value the string to hash
+     * @return the position on the ring
+     */
+    protected long hash(String value) {
+        long hash = 0xCBF29CE484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[%s,backups=%d]@%s", getClass().getSimpleName(), getName(), getBackups(), getOort().getURL());
+    }
+
+    /**
+     * Callback invoked when the result of an operation on the map is available,
+     * or when the operation failed.
+     *
+     * @param <V> the value type
+     */
+    public interface Callback<V> {
+        /**
+         * Callback method invoked when the operation on the map succeeded.
+         *
+         * @param result the result of the operation
+         */
+        public void succeeded(V result);
+
+        /**
+         * Callback method invoked when the operation on the map failed.
+         *
+         * @param failure the failure object
+         */
+        public void failed(Object failure);
+
+        /**
+         * Empty implementation of {@link Callback}
+         *
+         * @param <V> the value type
+         */
+        public static class Adapter<V> implements Callback<V> {
+            @Override
+            public void succeeded(V result) {
+            }
+
+            @Override
+            public void failed(Object failure) {
+            }
+        }
+    }
+
+    protected static class Context<V> {
+        private final String key;
+        private final Callback<V> callback;
+        private String oortURL;
+        private V migrated;
+
+        private Context(String key, Callback<V> callback) {
+            this.key = key;
+            this.callback = callback;
+        }
+    }
+}
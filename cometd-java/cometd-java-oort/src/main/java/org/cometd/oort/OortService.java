@@ -15,14 +15,25 @@
  */
 package org.cometd.oort;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.cometd.bayeux.Message;
 import org.cometd.bayeux.Promise;
+import org.cometd.bayeux.client.ClientSession;
+import org.cometd.bayeux.client.ClientSessionChannel;
 import org.cometd.bayeux.server.BayeuxServer;
 import org.cometd.bayeux.server.LocalSession;
 import org.cometd.bayeux.server.ServerChannel;
@@ -80,21 +91,33 @@ import org.slf4j.LoggerFactory;
  * </ol>
  * <p>The steps above do not change if the <em>requesting node</em> and
  * the <em>owner node</em> are the same.</p>
+ * <p>Actions forwarded to the same remote node are pipelined: while a message
+ * carrying actions is being delivered to a node, further actions for that node
+ * are queued and then sent together in a single message, up to
+ * {@link #getMaxBatchSize()} actions per message.
+ * Results returned to the same requesting node are batched in the same way.
+ * Batches are only formed under load, so that single actions are not delayed,
+ * and only sent to nodes that advertised support for them in the Oort handshake.</p>
  *
  * @param <R> the result type
  * @param <C> the opaque context type
  */
 public abstract class OortService<R, C> extends AbstractLifeCycle implements ServerChannel.MessageListener {
-    private static final String CONTEXT_FIELD = "oort.service.context";
+    static final String BATCH_FEATURE = "oortServiceBatch";
+    private static final String BATCH_FIELD = "oort.service.batch";
     private static final String DATA_FIELD = "oort.service.data";
     private static final String ID_FIELD = "oort.service.id";
     private static final String OORT_URL_FIELD = "oort.service.url";
     private static final String PARAMETER_FIELD = "oort.service.parameter";
     private static final String RESULT_FIELD = "oort.service.result";
-    private static final String TIMEOUT_FIELD = "oort.service.timeout";
+    private static final long TIMEOUT_TICK = 50;
+    private static final int TIMEOUT_WHEEL_SIZE = 512;
 
     private final AtomicLong contextIds = new AtomicLong();
-    private final ConcurrentMap<Long, Map<String, Object>> callbacks = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Forward> callbacks = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Batch> forwardBatches = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Batch> resultBatches = new ConcurrentHashMap<>();
+    private final TimeoutWheel timeouts = new TimeoutWheel();
     private final Oort oort;
     private final String name;
     private final String forwardChannelName;
@@ -103,6 +126,7 @@ public abstract class OortService<R, C> extends AbstractLifeCycle implements Ser
     private final LocalSession session;
     protected final Logger logger;
     private volatile long timeout = 5000;
+    private volatile int maxBatchSize = 256;
 
     /**
      * Creates an {@link OortService} with the given name.
@@ -155,8 +179,26 @@ public abstract class OortService<R, C> extends AbstractLifeCycle implements Ser
         this.timeout = timeout;
     }
 
+    /**
+     * @return the max number of actions, or results, sent to a node in a single message
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * @param maxBatchSize the max number of actions, or results, sent to a node in a single message
+     */
+    public void setMaxBatchSize(int maxBatchSize) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Invalid max batch size " + maxBatchSize);
+        }
+        this.maxBatchSize = maxBatchSize;
+    }
+
     @Override
     protected void doStart() throws Exception {
+        timeouts.start();
         session.handshake();
         BayeuxServer bayeuxServer = oort.getBayeuxServer();
         bayeuxServer.createChannelIfAbsent(forwardChannelName).getReference().addListener(this);
@@ -185,6 +227,9 @@ public abstract class OortService<R, C> extends AbstractLifeCycle implements Ser
             channel.removeListener(this);
         }
         session.disconnect();
+        timeouts.stop();
+        forwardBatches.clear();
+        resultBatches.clear();
         if (logger.isDebugEnabled()) {
             logger.debug("Stopped {}", this);
         }
@@ -202,10 +247,8 @@ public abstract class OortService<R, C> extends AbstractLifeCycle implements Ser
      * @return whether the forward succeeded
      */
     protected boolean forward(String targetOortURL, Object parameter, C context) {
-        Map<String, Object> ctx = new HashMap<>(4);
         long contextId = contextIds.incrementAndGet();
-        ctx.put(ID_FIELD, contextId);
-        ctx.put(CONTEXT_FIELD, context);
+        Forward ctx = new Forward(contextId, context);
         callbacks.put(contextId, ctx);
 
         Map<String, Object> data = new HashMap<>(3);
@@ -239,12 +282,13 @@ public abstract class OortService<R, C> extends AbstractLifeCycle implements Ser
                         logger.debug("Forwarding action from {} to {}: {}", localOortURL, targetOortURL, data);
                     }
                     startTimeout(ctx);
-                    comet.getChannel(forwardChannelName).publish(data);
+                    batch(forwardBatches, targetOortURL, forwardChannelName).offer(data);
                     return true;
                 } else {
                     if (logger.isDebugEnabled()) {
                         logger.debug("Could not forward action from {} to {}: {}", localOortURL, targetOortURL, data);
                     }
+                    callbacks.remove(contextId);
                     return false;
                 }
             }
@@ -254,15 +298,35 @@ public abstract class OortService<R, C> extends AbstractLifeCycle implements Ser
     @Override
     public boolean onMessage(ServerSession from, ServerChannel channel, ServerMessage.Mutable message) {
         if (forwardChannelName.equals(message.getChannel())) {
-            onForwardMessage(message.getDataAsMap(), false);
+            for (Map<String, Object> data : unbatch(message.getDataAsMap())) {
+                onForwardMessage(data, false);
+            }
         } else if (broadcastChannelName.equals(message.getChannel())) {
             onForwardMessage(message.getDataAsMap(), true);
         } else if (resultChannelName.equals(message.getChannel())) {
-            onResultMessage(message.getDataAsMap());
+            for (Map<String, Object> data : unbatch(message.getDataAsMap())) {
+                onResultMessage(data);
+            }
         }
         return true;
     }
 
+    @SuppressWarnings("unchecked")
+    private Collection<Map<String, Object>> unbatch(Map<String, Object> data) {
+        Object batch = data.get(BATCH_FIELD);
+        if (batch == null) {
+            return Collections.singletonList(data);
+        }
+        if (batch instanceof Object[]) {
+            return (List<Map<String, Object>>)(List<?>)Arrays.asList((Object[])batch);
+        }
+        return (Collection<Map<String, Object>>)batch;
+    }
+
+    private Batch batch(ConcurrentMap<String, Batch> batches, String oortURL, String channelName) {
+        return batches.computeIfAbsent(oortURL, key -> new Batch(key, channelName));
+    }
+
     protected void onForwardMessage(Map<String, Object> data, boolean broadcast) {
         if (logger.isDebugEnabled()) {
             logger.debug("Received {} action {}", broadcast ? "broadcast" : "forwarded", data);
@@ -321,7 +385,7 @@ public abstract class OortService<R, C> extends AbstractLifeCycle implements Ser
                 if (logger.isDebugEnabled()) {
                     logger.debug("Returning forwarded action result {} to remote {}", resultData, oortURL);
                 }
-                comet.getChannel(resultChannelName).publish(resultData);
+                batch(resultBatches, oortURL, resultChannelName).offer(resultData);
             } else {
                 // Probably the node disconnected concurrently
                 if (logger.isDebugEnabled()) {
@@ -333,18 +397,16 @@ public abstract class OortService<R, C> extends AbstractLifeCycle implements Ser
 
     protected void onResultMessage(Map<String, Object> data) {
         long actionId = ((Number)data.get(ID_FIELD)).longValue();
-        Map<String, Object> ctx = callbacks.remove(actionId);
+        Forward ctx = callbacks.remove(actionId);
         if (logger.isDebugEnabled()) {
             logger.debug("Action result {} with context {}", data, ctx);
         }
         // Atomically remove the callback, so we guarantee one notification only.
         // Multiple notifications may happen when broadcasting the forward request
         // and nodes mistakenly return multiple results.
+        // The timeout needs not be cancelled, as it is ignored once the callback is removed.
         if (ctx != null) {
-            cancelTimeout(ctx);
-
-            @SuppressWarnings("unchecked")
-            C context = (C)ctx.get(CONTEXT_FIELD);
+            C context = ctx.context;
             boolean success = (Boolean)data.get(RESULT_FIELD);
             if (success) {
                 @SuppressWarnings("unchecked")
@@ -357,17 +419,9 @@ public abstract class OortService<R, C> extends AbstractLifeCycle implements Ser
         }
     }
 
-    private void startTimeout(Map<String, Object> ctx) {
-        long contextId = ((Number)ctx.get(ID_FIELD)).longValue();
-        TimeoutTask timeoutTask = new TimeoutTask(contextId);
-        ctx.put(TIMEOUT_FIELD, ((BayeuxServerImpl)oort.getBayeuxServer()).schedule(timeoutTask, getTimeout()));
-    }
-
-    private void cancelTimeout(Map<String, Object> ctx) {
-        Scheduler.Task timeoutTask = (Scheduler.Task)ctx.get(TIMEOUT_FIELD);
-        if (timeoutTask != null) {
-            timeoutTask.cancel();
-        }
+    private void startTimeout(Forward ctx) {
+        ctx.expiration = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(getTimeout());
+        timeouts.add(ctx);
     }
 
     /**
@@ -578,20 +632,207 @@ public abstract class OortService<R, C> extends AbstractLifeCycle implements Ser
         }
     }
 
-    private class TimeoutTask implements Runnable {
-        private final long contextId;
+    private class Forward {
+        private final long id;
+        private final C context;
+        private long expiration;
+
+        private Forward(long id, C context) {
+            this.id = id;
+            this.context = context;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s@%x[%d,%s]", getClass().getSimpleName(), hashCode(), id, context);
+        }
+    }
+
+    /**
+     * <p>A timing wheel that expires the forwarded actions that did not receive a result.</p>
+     * <p>A single task scheduled every {@link #TIMEOUT_TICK} milliseconds checks the slot of
+     * the wheel corresponding to the current tick, rather than scheduling one task per action.
+     * The task is only scheduled while there are actions in the wheel.
+     * Actions that received a result are not removed from the wheel, but just skipped.</p>
+     */
+    private class TimeoutWheel implements Runnable {
+        private final long tickNanos = TimeUnit.MILLISECONDS.toNanos(TIMEOUT_TICK);
+        private final List<Queue<Forward>> slots = new ArrayList<>(TIMEOUT_WHEEL_SIZE);
+        private volatile long begin;
+        private volatile long tick;
+        private int pending;
+        private Scheduler.Task task;
+
+        private TimeoutWheel() {
+            for (int i = 0; i < TIMEOUT_WHEEL_SIZE; ++i) {
+                slots.add(new ConcurrentLinkedQueue<>());
+            }
+        }
+
+        private void start() {
+            begin = System.nanoTime();
+            tick = 0;
+        }
+
+        private void stop() {
+            Scheduler.Task task;
+            synchronized (this) {
+                task = this.task;
+                this.task = null;
+                pending = 0;
+            }
+            if (task != null) {
+                task.cancel();
+            }
+            for (Queue<Forward> slot : slots) {
+                slot.clear();
+            }
+        }
+
+        private Scheduler.Task schedule() {
+            return ((BayeuxServerImpl)oort.getBayeuxServer()).schedule(this, TIMEOUT_TICK);
+        }
+
+        private long current() {
+            return (System.nanoTime() - begin) / tickNanos;
+        }
+
+        private long ticks(long expiration) {
+            // Round up, so that actions never expire early.
+            return (expiration - begin + tickNanos - 1) / tickNanos;
+        }
 
-        private TimeoutTask(long contextId) {
-            this.contextId = contextId;
+        private void add(Forward forward) {
+            synchronized (this) {
+                ++pending;
+                if (task == null) {
+                    // The wheel was idle and its slots are empty,
+                    // so the ticks elapsed in the meantime are skipped.
+                    tick = Math.max(tick, current());
+                    task = schedule();
+                }
+                // The slot of the current tick may be concurrently checked,
+                // so actions are added at least to the slot of the next tick.
+                long ticks = Math.max(ticks(forward.expiration), tick + 1);
+                slots.get((int)(ticks % slots.size())).offer(forward);
+            }
         }
 
         @Override
         public void run() {
-            Map<String, Object> data = new HashMap<>(3);
-            data.put(ID_FIELD, contextId);
-            data.put(RESULT_FIELD, false);
-            data.put(DATA_FIELD, new TimeoutException());
-            onResultMessage(data);
+            int removed = 0;
+            try {
+                long current = current();
+                while (tick <= current) {
+                    removed += expire(tick);
+                    tick = tick + 1;
+                }
+            } catch (Throwable x) {
+                logger.info("Exception while expiring actions", x);
+            } finally {
+                synchronized (this) {
+                    pending -= removed;
+                    // Only tick while there are actions to expire.
+                    task = pending > 0 && isRunning() ? schedule() : null;
+                }
+            }
+        }
+
+        private int expire(long tick) {
+            int removed = 0;
+            Queue<Forward> slot = slots.get((int)(tick % slots.size()));
+            for (int i = slot.size(); i > 0; --i) {
+                Forward forward = slot.poll();
+                if (forward == null) {
+                    break;
+                }
+                if (callbacks.get(forward.id) != forward) {
+                    // Already completed.
+                    ++removed;
+                    continue;
+                }
+                if (ticks(forward.expiration) > tick) {
+                    // Expires in a later round of the wheel.
+                    slot.offer(forward);
+                    continue;
+                }
+                ++removed;
+                Map<String, Object> data = new HashMap<>(3);
+                data.put(ID_FIELD, forward.id);
+                data.put(RESULT_FIELD, false);
+                data.put(DATA_FIELD, new TimeoutException());
+                onResultMessage(data);
+            }
+            return removed;
+        }
+    }
+
+    /**
+     * <p>Queues messages for a node while a previous message to the same node is
+     * being delivered, and then sends the queued messages in a single message.</p>
+     */
+    private class Batch implements ClientSession.MessageListener {
+        private final List<Map<String, Object>> queue = new ArrayList<>();
+        private final String oortURL;
+        private final String channelName;
+        private boolean flushing;
+
+        private Batch(String oortURL, String channelName) {
+            this.oortURL = oortURL;
+            this.channelName = channelName;
+        }
+
+        private void offer(Map<String, Object> data) {
+            synchronized (this) {
+                queue.add(data);
+                if (flushing) {
+                    return;
+                }
+                flushing = true;
+            }
+            flush();
+        }
+
+        private void flush() {
+            OortComet comet = getOort().getComet(oortURL);
+            List<Map<String, Object>> batch;
+            synchronized (this) {
+                if (comet == null) {
+                    // The node disconnected, the actions will time out.
+                    queue.clear();
+                }
+                if (queue.isEmpty()) {
+                    flushing = false;
+                    return;
+                }
+                List<Map<String, Object>> head = queue.subList(0, Math.min(queue.size(), getMaxBatchSize()));
+                batch = new ArrayList<>(head);
+                head.clear();
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("Sending batch of {} on {} to {}", batch.size(), channelName, oortURL);
+            }
+            ClientSessionChannel channel = comet.getChannel(channelName);
+            if (comet.isFeatureSupported(BATCH_FEATURE)) {
+                Object data = batch.size() == 1 ? batch.get(0) : Collections.singletonMap(BATCH_FIELD, batch);
+                channel.publish(data, this);
+            } else {
+                // The remote node does not understand batches,
+                // send one message for each action or result.
+                comet.batch(() -> {
+                    int last = batch.size() - 1;
+                    for (int i = 0; i < last; ++i) {
+                        channel.publish(batch.get(i));
+                    }
+                    channel.publish(batch.get(last), this);
+                });
+            }
+        }
+
+        @Override
+        public void onMessage(Message message) {
+            // The previous message has been delivered, send the queued ones.
+            flush();
         }
     }
 }
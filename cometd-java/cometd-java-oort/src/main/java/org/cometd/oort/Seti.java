@@ -23,11 +23,16 @@ import java.util.EventListener;
 import java.util.EventObject;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
 
 import org.cometd.bayeux.Message;
 import org.cometd.bayeux.Promise;
@@ -47,6 +52,7 @@ import org.eclipse.jetty.util.annotation.Name;
 import org.eclipse.jetty.util.component.AbstractLifeCycle;
 import org.eclipse.jetty.util.component.ContainerLifeCycle;
 import org.eclipse.jetty.util.component.Dumpable;
+import org.eclipse.jetty.util.thread.Scheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -67,15 +73,26 @@ import org.slf4j.LoggerFactory;
  * {@link #sendMessage(String, String, Object)} methods may be
  * used to send messages to user(s) anywhere in the Oort cluster
  * and Seti organizes the search in order to locate the user(s).</p>
+ * <p>By default, the presence of a user is broadcast to the Oort cloud as soon as it changes.
+ * When many users associate or disassociate at the same time, for example when they
+ * reconnect after a node restart, a {@link #setPresenceBatchWindow(long) presence batch window}
+ * allows to broadcast the presence changes that happened within the window in a single message.</p>
+ * <p>Messages sent to users associated on a node that is not reachable may be lost if the node
+ * crashes, even if the users then reconnect to another node.
+ * A {@link #setMessageBufferSize(int) message buffer} allows to retain these messages for a
+ * {@link #setMessageBufferTTL(long) period of time}, and to send them again when the users
+ * associate again on any node, or when the node becomes reachable again.</p>
  *
  * @see SetiServlet
  */
 @ManagedObject("CometD cloud peer discovery component")
 public class Seti extends AbstractLifeCycle implements Dumpable {
     public static final String SETI_ATTRIBUTE = Seti.class.getName();
+    static final String GROUP_FEATURE = "setiMessageGroup";
     private static final String SETI_ALL_CHANNEL = "/seti/all";
 
-    private final Map<String, Set<Location>> _uid2Location = new HashMap<>();
+    private final ConcurrentMap<String, Set<Location>> _uid2Location = new ConcurrentHashMap<>();
+    private final Set<String> _presenceComets = ConcurrentHashMap.newKeySet();
     private final List<PresenceListener> _presenceListeners = new CopyOnWriteArrayList<>();
     private final Oort.CometListener _cometListener = new CometListener();
     private final ServerChannel.SubscriptionListener _initialStateListener = new InitialStateListener();
@@ -83,6 +100,13 @@ public class Seti extends AbstractLifeCycle implements Dumpable {
     private final String _setiId;
     private final Logger _logger;
     private final LocalSession _session;
+    private final Set<String> _pendingPresences = new HashSet<>();
+    private Scheduler.Task _presenceTask;
+    private volatile long _presenceBatchWindow;
+    private final Map<String, List<BufferedMessage>> _messageBuffers = new HashMap<>();
+    private Scheduler.Task _messageBufferTask;
+    private volatile int _messageBufferSize;
+    private volatile long _messageBufferTTL = 30000;
 
     public Seti(Oort oort) {
         _oort = oort;
@@ -101,6 +125,81 @@ public class Seti extends AbstractLifeCycle implements Dumpable {
         return _setiId;
     }
 
+    @ManagedAttribute("The period of time, in milliseconds, within which presence changes are broadcast in a single message")
+    public long getPresenceBatchWindow() {
+        return _presenceBatchWindow;
+    }
+
+    /**
+     * <p>Sets the period of time within which the presence changes caused by
+     * {@link #associate(String, ServerSession) associations} and
+     * {@link #disassociate(String, ServerSession) disassociations} are
+     * collected and then broadcast to the Oort cloud in a single message.</p>
+     * <p>Other nodes may not find users associated within the window until the
+     * window expires, so the window should be small, typically tens of milliseconds.</p>
+     *
+     * @param window the presence batch window in milliseconds, or 0 to broadcast presence changes immediately
+     */
+    public void setPresenceBatchWindow(long window) {
+        if (window < 0) {
+            throw new IllegalArgumentException("Invalid presence batch window " + window);
+        }
+        _presenceBatchWindow = window;
+    }
+
+    @ManagedAttribute("The max number of messages buffered for each unreachable node")
+    public int getMessageBufferSize() {
+        return _messageBufferSize;
+    }
+
+    /**
+     * <p>Sets the max number of messages that are buffered for each node that is not reachable.</p>
+     * <p>When the buffer of a node is full, the oldest message is discarded.</p>
+     * <p>A message is only buffered if it could not be sent to any of the nodes where
+     * the user is associated, and it is sent again at most once.</p>
+     *
+     * @param size the max number of messages buffered for each unreachable node, or 0 to disable buffering
+     * @see #setMessageBufferTTL(long)
+     */
+    public void setMessageBufferSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Invalid message buffer size " + size);
+        }
+        _messageBufferSize = size;
+    }
+
+    @ManagedAttribute("The period of time, in milliseconds, messages are buffered for unreachable nodes")
+    public long getMessageBufferTTL() {
+        return _messageBufferTTL;
+    }
+
+    /**
+     * @param ttl the period of time, in milliseconds, after which buffered messages are discarded
+     * @see #setMessageBufferSize(int)
+     */
+    public void setMessageBufferTTL(long ttl) {
+        if (ttl <= 0) {
+            throw new IllegalArgumentException("Invalid message buffer TTL " + ttl);
+        }
+        _messageBufferTTL = ttl;
+    }
+
+    @ManagedAttribute(value = "The number of messages buffered for unreachable nodes", readonly = true)
+    public int getBufferedMessageCount() {
+        synchronized (_messageBuffers) {
+            // The same message may be buffered for multiple nodes.
+            Set<BufferedMessage> result = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (List<BufferedMessage> buffer : _messageBuffers.values()) {
+                for (BufferedMessage message : buffer) {
+                    if (!message._resent) {
+                        result.add(message);
+                    }
+                }
+            }
+            return result.size();
+        }
+    }
+
     @Override
     protected void doStart() throws Exception {
         BayeuxServer bayeux = _oort.getBayeuxServer();
@@ -125,6 +224,20 @@ public class Seti extends AbstractLifeCycle implements Dumpable {
 
     @Override
     protected void doStop() throws Exception {
+        synchronized (_pendingPresences) {
+            if (_presenceTask != null) {
+                _presenceTask.cancel();
+                _presenceTask = null;
+            }
+            _pendingPresences.clear();
+        }
+        synchronized (_messageBuffers) {
+            if (_messageBufferTask != null) {
+                _messageBufferTask.cancel();
+                _messageBufferTask = null;
+            }
+            _messageBuffers.clear();
+        }
         removeAssociationsAndPresences();
         _presenceListeners.clear();
 
@@ -179,11 +292,9 @@ public class Seti extends AbstractLifeCycle implements Dumpable {
             session.setAttribute(LocalLocation.class.getName(), location);
 
             if (!wasAssociated) {
-                if (_logger.isDebugEnabled()) {
-                    _logger.debug("Broadcasting association addition for user {}", userId);
-                }
                 // Let everyone in the cluster know that this session is here
-                _session.getChannel(SETI_ALL_CHANNEL).publish(new SetiPresence(true, userId));
+                broadcastPresence(true, userId);
+                resendBufferedMessages(userId, location);
             }
         }
 
@@ -195,22 +306,24 @@ public class Seti extends AbstractLifeCycle implements Dumpable {
             return false;
         }
 
-        synchronized (_uid2Location) {
-            Set<Location> locations = _uid2Location.get(userId);
+        boolean[] result = new boolean[1];
+        // Modifications of the locations of a userId happen atomically
+        // inside compute(), which only locks the map entry for that userId.
+        _uid2Location.compute(userId, (key, locations) -> {
             if (locations == null) {
-                locations = new HashSet<>();
-                _uid2Location.put(userId, locations);
-            }
-            boolean result = locations.add(location);
-            if (_logger.isDebugEnabled()) {
-                _logger.debug("Associations: {}", _uid2Location.size());
+                locations = new CopyOnWriteArraySet<>();
             }
-            // Logging below can generate hugely long lines.
-            if (_logger.isTraceEnabled()) {
-                _logger.trace("Associations: {}", _uid2Location);
-            }
-            return result;
+            result[0] = locations.add(location);
+            return locations;
+        });
+        if (_logger.isDebugEnabled()) {
+            _logger.debug("Associations: {}", _uid2Location.size());
         }
+        // Logging below can generate hugely long lines.
+        if (_logger.isTraceEnabled()) {
+            _logger.trace("Associations: {}", _uid2Location);
+        }
+        return result[0];
     }
 
     private boolean associateRemote(String userId, SetiLocation location) {
@@ -243,18 +356,16 @@ public class Seti extends AbstractLifeCycle implements Dumpable {
      */
     @ManagedOperation(value = "Whether the given userId is associated locally", impact = "INFO")
     public boolean isAssociated(@Name(value = "userId", description = "The userId to test for local association") String userId) {
-        synchronized (_uid2Location) {
-            Set<Location> locations = _uid2Location.get(userId);
-            if (locations == null) {
-                return false;
-            }
-            for (Location location : locations) {
-                if (location instanceof LocalLocation) {
-                    return true;
-                }
-            }
+        Set<Location> locations = _uid2Location.get(userId);
+        if (locations == null) {
             return false;
         }
+        for (Location location : locations) {
+            if (location instanceof LocalLocation) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -265,19 +376,17 @@ public class Seti extends AbstractLifeCycle implements Dumpable {
      */
     @ManagedOperation(value = "The number of local associations for the given userId", impact = "INFO")
     public int getAssociationCount(@Name(value = "userId", description = "The userId to test for local association count") String userId) {
-        synchronized (_uid2Location) {
-            Set<Location> locations = _uid2Location.get(userId);
-            if (locations == null) {
-                return 0;
+        Set<Location> locations = _uid2Location.get(userId);
+        if (locations == null) {
+            return 0;
+        }
+        int result = 0;
+        for (Location location : locations) {
+            if (location instanceof LocalLocation) {
+                ++result;
             }
-            int result = 0;
-            for (Location location : locations) {
-                if (location instanceof LocalLocation) {
-                    ++result;
-                }
-            }
-            return result;
         }
+        return result;
     }
 
     /**
@@ -289,10 +398,7 @@ public class Seti extends AbstractLifeCycle implements Dumpable {
      */
     @ManagedOperation(value = "Whether the given userId is present in the cloud", impact = "INFO")
     public boolean isPresent(@Name(value = "userId", description = "The userId to test for presence in the cloud") String userId) {
-        synchronized (_uid2Location) {
-            Set<Location> locations = _uid2Location.get(userId);
-            return locations != null;
-        }
+        return _uid2Location.containsKey(userId);
     }
 
     /**
@@ -303,10 +409,8 @@ public class Seti extends AbstractLifeCycle implements Dumpable {
      */
     @ManagedOperation(value = "The number of local and remote associations for the given userId", impact = "INFO")
     public int getPresenceCount(@Name(value = "userId", description = "The userId to test for presence count") String userId) {
-        synchronized (_uid2Location) {
-            Set<Location> locations = _uid2Location.get(userId);
-            return locations == null ? 0 : locations.size();
-        }
+        Set<Location> locations = _uid2Location.get(userId);
+        return locations == null ? 0 : locations.size();
     }
 
     /**
@@ -342,11 +446,8 @@ public class Seti extends AbstractLifeCycle implements Dumpable {
             // associations, and if a presence message is sent, the remote comets will wrongly think
             // that the user is gone, while in reality it is still associated with the remaining association.
             if (_session.isConnected() && !isAssociated(userId)) {
-                if (_logger.isDebugEnabled()) {
-                    _logger.debug("Broadcasting association removal for user {}", userId);
-                }
                 // Let everyone in the cluster know that this session is not here anymore
-                _session.getChannel(SETI_ALL_CHANNEL).publish(new SetiPresence(false, userId));
+                broadcastPresence(false, userId);
             }
         }
 
@@ -364,8 +465,9 @@ public class Seti extends AbstractLifeCycle implements Dumpable {
      */
     public Set<ServerSession> disassociate(final String userId) {
         final Set<LocalLocation> userLocations = new HashSet<>();
-        synchronized (_uid2Location) {
-            for (Location location : _uid2Location.get(userId)) {
+        Set<Location> locations = _uid2Location.get(userId);
+        if (locations != null) {
+            for (Location location : locations) {
                 if (location instanceof LocalLocation) {
                     userLocations.add((LocalLocation)location);
                 }
@@ -384,33 +486,82 @@ public class Seti extends AbstractLifeCycle implements Dumpable {
         return removedUserSessions;
     }
 
-    protected boolean disassociate(String userId, Location location) {
-        synchronized (_uid2Location) {
-            boolean result = false;
-            Set<Location> locations = _uid2Location.get(userId);
-            if (locations != null) {
-                result = locations.remove(location);
-                if (locations.isEmpty()) {
-                    _uid2Location.remove(userId);
+    private void broadcastPresence(boolean present, String userId) {
+        long window = getPresenceBatchWindow();
+        if (window > 0) {
+            synchronized (_pendingPresences) {
+                _pendingPresences.add(userId);
+                if (_presenceTask == null) {
+                    _presenceTask = ((BayeuxServerImpl)_oort.getBayeuxServer()).schedule(this::flushPresences, window);
                 }
             }
+        } else {
             if (_logger.isDebugEnabled()) {
-                _logger.debug("Associations: {}", _uid2Location.size());
+                _logger.debug("Broadcasting association {} for user {}", present ? "addition" : "removal", userId);
             }
-            // Logging below can generate hugely long lines.
-            if (_logger.isTraceEnabled()) {
-                _logger.trace("Associations: {}", _uid2Location);
+            _session.getChannel(SETI_ALL_CHANNEL).publish(new SetiPresence(present, userId));
+        }
+    }
+
+    /**
+     * <p>Broadcasts the presence changes collected within the
+     * {@link #getPresenceBatchWindow() presence batch window}.</p>
+     * <p>The presence of a user that changed multiple times within the
+     * window is broadcast only once, with its current value.</p>
+     */
+    protected void flushPresences() {
+        Set<String> userIds;
+        synchronized (_pendingPresences) {
+            _presenceTask = null;
+            userIds = new HashSet<>(_pendingPresences);
+            _pendingPresences.clear();
+        }
+        if (userIds.isEmpty() || !_session.isConnected()) {
+            return;
+        }
+        Set<String> added = new HashSet<>();
+        Set<String> removed = new HashSet<>();
+        for (String userId : userIds) {
+            if (isAssociated(userId)) {
+                added.add(userId);
+            } else {
+                removed.add(userId);
             }
-            return result;
+        }
+        if (!added.isEmpty()) {
+            if (_logger.isDebugEnabled()) {
+                _logger.debug("Broadcasting association addition for users {}", added);
+            }
+            _session.getChannel(SETI_ALL_CHANNEL).publish(new SetiPresence(true, added));
+        }
+        if (!removed.isEmpty()) {
+            if (_logger.isDebugEnabled()) {
+                _logger.debug("Broadcasting association removal for users {}", removed);
+            }
+            _session.getChannel(SETI_ALL_CHANNEL).publish(new SetiPresence(false, removed));
         }
     }
 
+    protected boolean disassociate(String userId, Location location) {
+        boolean[] result = new boolean[1];
+        _uid2Location.computeIfPresent(userId, (key, locations) -> {
+            result[0] = locations.remove(location);
+            return locations.isEmpty() ? null : locations;
+        });
+        if (_logger.isDebugEnabled()) {
+            _logger.debug("Associations: {}", _uid2Location.size());
+        }
+        // Logging below can generate hugely long lines.
+        if (_logger.isTraceEnabled()) {
+            _logger.trace("Associations: {}", _uid2Location);
+        }
+        return result[0];
+    }
+
     protected void removeAssociationsAndPresences() {
         final Set<String> userIds = new HashSet<>();
-        synchronized (_uid2Location) {
-            getAssociatedUserIds(userIds);
-            _uid2Location.clear();
-        }
+        getAssociatedUserIds(userIds);
+        _uid2Location.clear();
         if (_logger.isDebugEnabled()) {
             _logger.debug("Broadcasting association removal for users {}", userIds);
         }
@@ -421,24 +572,19 @@ public class Seti extends AbstractLifeCycle implements Dumpable {
 
     protected void removePresences(String oortURL) {
         List<String> userIds = new ArrayList<>();
-        synchronized (_uid2Location) {
-            for (Iterator<Map.Entry<String, Set<Location>>> entries = _uid2Location.entrySet().iterator(); entries.hasNext(); ) {
-                Map.Entry<String, Set<Location>> entry = entries.next();
-                Set<Location> userLocations = entry.getValue();
-                for (Iterator<Location> iterator = userLocations.iterator(); iterator.hasNext(); ) {
-                    Location location = iterator.next();
+        for (String userId : _uid2Location.keySet()) {
+            _uid2Location.computeIfPresent(userId, (key, locations) -> {
+                for (Location location : locations) {
                     if (location instanceof SetiLocation) {
                         if (oortURL.equals(((SetiLocation)location)._oortURL)) {
-                            iterator.remove();
-                            userIds.add(entry.getKey());
+                            locations.remove(location);
+                            userIds.add(key);
                             break;
                         }
                     }
                 }
-                if (userLocations.isEmpty()) {
-                    entries.remove();
-                }
-            }
+                return locations.isEmpty() ? null : locations;
+            });
         }
         if (_logger.isDebugEnabled()) {
             _logger.debug("Removing presences of comet {} for users {}", oortURL, userIds);
@@ -453,9 +599,7 @@ public class Seti extends AbstractLifeCycle implements Dumpable {
      */
     @ManagedAttribute(value = "The set of userIds known to this Seti", readonly = true)
     public Set<String> getUserIds() {
-        synchronized (_uid2Location) {
-            return new HashSet<>(_uid2Location.keySet());
-        }
+        return new HashSet<>(_uid2Location.keySet());
     }
 
     /**
@@ -468,13 +612,11 @@ public class Seti extends AbstractLifeCycle implements Dumpable {
     }
 
     private void getAssociatedUserIds(Set<String> result) {
-        synchronized (_uid2Location) {
-            for (Map.Entry<String, Set<Location>> entry : _uid2Location.entrySet()) {
-                for (Location location : entry.getValue()) {
-                    if (location instanceof LocalLocation) {
-                        result.add(entry.getKey());
-                        break;
-                    }
+        for (Map.Entry<String, Set<Location>> entry : _uid2Location.entrySet()) {
+            for (Location location : entry.getValue()) {
+                if (location instanceof LocalLocation) {
+                    result.add(entry.getKey());
+                    break;
                 }
             }
         }
@@ -500,26 +642,255 @@ public class Seti extends AbstractLifeCycle implements Dumpable {
      * @param data      the content of the message
      */
     public void sendMessage(final Collection<String> toUserIds, final String toChannel, final Object data) {
+        // Remote userIds are grouped by comet, so
+        // that only one message is sent to each remote comet.
+        Map<String, Set<String>> remoteUserIds = new HashMap<>();
         for (String toUserId : toUserIds) {
-            Set<Location> copy = new HashSet<>();
-            synchronized (_uid2Location) {
-                Set<Location> locations = _uid2Location.get(toUserId);
-                if (locations == null) {
-                    copy.add(new SetiLocation(toUserId, null));
+            // The locations are copy-on-write, so iterating
+            // over them does not need locking nor copying.
+            Set<Location> locations = _uid2Location.get(toUserId);
+            if (locations == null) {
+                // The user is not present on the comets that have sent us their
+                // associations, so only the comets that have not may have it.
+                locations = new HashSet<>();
+                for (String oortURL : getCandidateComets()) {
+                    locations.add(new SetiLocation(toUserId, oortURL));
+                }
+            }
+
+            if (_logger.isDebugEnabled()) {
+                _logger.debug("Sending message to locations {}", locations);
+            }
+            // The message is buffered only if it does not reach the user
+            // on any node, so that the user does not receive it twice.
+            List<String> unreachableURLs = new ArrayList<>();
+            boolean reachable = false;
+            for (Location location : locations) {
+                if (location instanceof SetiLocation) {
+                    String oortURL = ((SetiLocation)location)._oortURL;
+                    if (isBuffering(oortURL)) {
+                        unreachableURLs.add(oortURL);
+                        continue;
+                    }
+                    remoteUserIds.computeIfAbsent(oortURL, key -> new HashSet<>()).add(toUserId);
                 } else {
-                    copy.addAll(locations);
+                    location.send(toUserId, toChannel, data);
                 }
+                reachable = true;
             }
+            if (!reachable && !unreachableURLs.isEmpty()) {
+                bufferMessage(unreachableURLs, toUserId, toChannel, data);
+            }
+        }
 
+        for (Map.Entry<String, Set<String>> entry : remoteUserIds.entrySet()) {
+            String oortURL = entry.getKey();
+            Set<String> userIds = entry.getValue();
             if (_logger.isDebugEnabled()) {
-                _logger.debug("Sending message to locations {}", copy);
+                _logger.debug("Sending message to users {} on {}", userIds, oortURL);
+            }
+            new SetiLocation(userIds.iterator().next(), oortURL).send(userIds, toChannel, data);
+        }
+    }
+
+    /**
+     * <p>Publishes the given message to the Seti of the given node.</p>
+     * <p>The message is published on the Seti channel of the node through the
+     * {@link OortComet} connected to it, so that its delivery does not depend on
+     * the node receiving the messages of this node on observed channels, which
+     * is not the case for every node when {@link Oort#setRelayFanOut(int) relaying}.</p>
+     *
+     * @param oortURL the URL of the node, or null to broadcast the message
+     * @param message the message to publish
+     */
+    private void publish(String oortURL, SetiMessage message) {
+        if (oortURL == null) {
+            _session.getChannel(SETI_ALL_CHANNEL).publish(message);
+            return;
+        }
+        String setiChannel = generateSetiChannel(generateSetiId(oortURL));
+        OortComet oortComet = _oort.getComet(oortURL);
+        if (oortComet == null) {
+            _session.getChannel(setiChannel).publish(message);
+        } else {
+            oortComet.getChannel(setiChannel).publish(message);
+        }
+    }
+
+    /**
+     * @param oortURL the URL of a node
+     * @return whether messages to the given node must be buffered because the node is not reachable
+     */
+    private boolean isBuffering(String oortURL) {
+        return getMessageBufferSize() > 0 && oortURL != null && !isReachable(oortURL);
+    }
+
+    /**
+     * <p>Buffers the given message if the given node is not reachable.</p>
+     *
+     * @param oortURL   the URL of the node where the user is associated
+     * @param toUserId  the userId to send the message to
+     * @param toChannel the channel to send the message to
+     * @param data      the content of the message
+     * @return whether the message has been buffered
+     */
+    private boolean bufferMessage(String oortURL, String toUserId, String toChannel, Object data) {
+        return isBuffering(oortURL) && bufferMessage(Collections.singletonList(oortURL), toUserId, toChannel, data);
+    }
+
+    /**
+     * <p>Buffers the given message for all the given unreachable nodes.</p>
+     * <p>The same message is shared by the buffers of the given nodes,
+     * so that it is sent again at most once.</p>
+     *
+     * @param oortURLs  the URLs of the unreachable nodes where the user is associated
+     * @param toUserId  the userId to send the message to
+     * @param toChannel the channel to send the message to
+     * @param data      the content of the message
+     * @return whether the message has been buffered
+     */
+    private boolean bufferMessage(List<String> oortURLs, String toUserId, String toChannel, Object data) {
+        // Read the size only once, as buffering may be disabled concurrently.
+        int size = getMessageBufferSize();
+        if (size <= 0) {
+            return false;
+        }
+        if (_logger.isDebugEnabled()) {
+            _logger.debug("Buffering message for {} on {} to unreachable comets {}", toUserId, toChannel, oortURLs);
+        }
+        long expiration = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(getMessageBufferTTL());
+        BufferedMessage message = new BufferedMessage(toUserId, toChannel, data, expiration);
+        synchronized (_messageBuffers) {
+            for (String oortURL : oortURLs) {
+                List<BufferedMessage> buffer = _messageBuffers.computeIfAbsent(oortURL, key -> new ArrayList<>());
+                buffer.removeIf(buffered -> buffered._resent);
+                while (buffer.size() >= size) {
+                    BufferedMessage discarded = buffer.remove(0);
+                    if (_logger.isDebugEnabled()) {
+                        _logger.debug("Discarding buffered message {} for comet {}", discarded, oortURL);
+                    }
+                }
+                buffer.add(message);
+            }
+            if (_messageBufferTask == null) {
+                scheduleMessageBufferSweep();
+            }
+        }
+        return true;
+    }
+
+    private boolean isReachable(String oortURL) {
+        OortComet oortComet = _oort.getComet(oortURL);
+        return oortComet != null && oortComet.isConnected();
+    }
+
+    private void scheduleMessageBufferSweep() {
+        long period = Math.min(1000, getMessageBufferTTL());
+        _messageBufferTask = ((BayeuxServerImpl)_oort.getBayeuxServer()).schedule(this::sweepMessageBuffers, period);
+    }
+
+    /**
+     * <p>Discards the expired buffered messages, and sends again
+     * the buffered messages of the nodes that are reachable again.</p>
+     */
+    private void sweepMessageBuffers() {
+        Map<String, List<BufferedMessage>> resend = new HashMap<>();
+        synchronized (_messageBuffers) {
+            _messageBufferTask = null;
+            long now = System.nanoTime();
+            Iterator<Map.Entry<String, List<BufferedMessage>>> entries = _messageBuffers.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<String, List<BufferedMessage>> entry = entries.next();
+                List<BufferedMessage> buffer = entry.getValue();
+                if (isReachable(entry.getKey())) {
+                    List<BufferedMessage> messages = new ArrayList<>();
+                    for (BufferedMessage message : buffer) {
+                        if (!message._resent && !message.isExpired(now)) {
+                            // Not sent again for the other nodes it is buffered for.
+                            message._resent = true;
+                            messages.add(message);
+                        }
+                    }
+                    resend.put(entry.getKey(), messages);
+                    buffer.clear();
+                } else {
+                    buffer.removeIf(message -> message._resent || message.isExpired(now));
+                }
+                if (buffer.isEmpty()) {
+                    entries.remove();
+                }
+            }
+            if (!_messageBuffers.isEmpty() && isRunning()) {
+                scheduleMessageBufferSweep();
+            }
+        }
+        for (Map.Entry<String, List<BufferedMessage>> entry : resend.entrySet()) {
+            for (BufferedMessage message : entry.getValue()) {
+                resendBufferedMessage(message, new SetiLocation(message._userId, entry.getKey()));
+            }
+        }
+    }
+
+    /**
+     * <p>Sends again the buffered messages for the given userId to the given
+     * location, after the userId has been associated again on some node.</p>
+     *
+     * @param userId   the userId that has been associated
+     * @param location the location where the userId has been associated
+     */
+    private void resendBufferedMessages(String userId, Location location) {
+        List<BufferedMessage> resend = new ArrayList<>();
+        synchronized (_messageBuffers) {
+            if (_messageBuffers.isEmpty()) {
+                return;
             }
-            for (Location location : copy) {
-                location.send(toUserId, toChannel, data);
+            long now = System.nanoTime();
+            for (List<BufferedMessage> buffer : _messageBuffers.values()) {
+                Iterator<BufferedMessage> iterator = buffer.iterator();
+                while (iterator.hasNext()) {
+                    BufferedMessage message = iterator.next();
+                    if (message._resent) {
+                        iterator.remove();
+                    } else if (message._userId.equals(userId)) {
+                        iterator.remove();
+                        // The same message may be buffered for multiple nodes.
+                        message._resent = true;
+                        if (!message.isExpired(now)) {
+                            resend.add(message);
+                        }
+                    }
+                }
             }
+            _messageBuffers.values().removeIf(List::isEmpty);
+        }
+        for (BufferedMessage message : resend) {
+            resendBufferedMessage(message, location);
         }
     }
 
+    private void resendBufferedMessage(BufferedMessage message, Location location) {
+        if (_logger.isDebugEnabled()) {
+            _logger.debug("Sending buffered message {} to {}", message, location);
+        }
+        location.send(message._userId, message._channel, message._data);
+    }
+
+    /**
+     * <p>Returns the URLs of the comets that may have the association for a userId
+     * that is not present in this Seti.</p>
+     * <p>Comets that have sent the whole set of their associations to this Seti
+     * are kept up-to-date via presence messages, so a userId not present in this Seti
+     * is not associated on those comets either.
+     * Only the comets whose associations have not been received yet are candidates.</p>
+     *
+     * @return the URLs of the comets that may have the association for an unknown userId
+     */
+    protected Set<String> getCandidateComets() {
+        Set<String> result = _oort.getKnownComets();
+        result.removeAll(_presenceComets);
+        return result;
+    }
+
     /**
      * <p>Receives messages directly from other Setis in the cloud, containing
      * messages to be delivered to sessions connected to this comet.</p>
@@ -606,20 +977,33 @@ public class Seti extends AbstractLifeCycle implements Dumpable {
             _logger.debug("Received remote presence message from comet {} for {}", oortURL, userIds);
         }
 
+        Object alive = presence.get(SetiPresence.ALIVE_FIELD);
+        if (alive == Boolean.FALSE) {
+            _presenceComets.remove(oortURL);
+        } else if (presence.get(SetiPresence.SNAPSHOT_FIELD) == Boolean.TRUE) {
+            // The remote Seti sent all its associations, so from now
+            // on it is known whether a user is present on that comet.
+            _presenceComets.add(oortURL);
+        }
+
+        // Apply all the presences, then notify the listeners.
+        List<String> changed = new ArrayList<>(userIds.size());
         for (String userId : userIds) {
             SetiLocation location = new SetiLocation(userId, oortURL);
+            if (present ? associateRemote(userId, location) : disassociate(userId, location)) {
+                changed.add(userId);
+            }
+        }
+        for (String userId : changed) {
             if (present) {
-                if (associateRemote(userId, location)) {
-                    notifyPresenceAdded(oortURL, userId);
-                }
+                notifyPresenceAdded(oortURL, userId);
+                resendBufferedMessages(userId, new SetiLocation(userId, oortURL));
             } else {
-                if (disassociate(userId, location)) {
-                    notifyPresenceRemoved(oortURL, userId);
-                }
+                notifyPresenceRemoved(oortURL, userId);
             }
         }
 
-        if (presence.get(SetiPresence.ALIVE_FIELD) == Boolean.TRUE) {
+        if (alive == Boolean.TRUE) {
             // Message sent on startup by the remote Seti, push our associations
             OortComet oortComet = _oort.findComet(oortURL);
             if (oortComet != null) {
@@ -628,7 +1012,9 @@ public class Seti extends AbstractLifeCycle implements Dumpable {
                     _logger.debug("Pushing associated users {} to comet {}", associatedUserIds, oortURL);
                 }
                 ClientSessionChannel channel = oortComet.getChannel(generateSetiChannel(generateSetiId(oortURL)));
-                channel.publish(new SetiPresence(true, associatedUserIds));
+                SetiPresence snapshot = new SetiPresence(true, associatedUserIds);
+                snapshot.put(SetiPresence.SNAPSHOT_FIELD, true);
+                channel.publish(snapshot);
             }
         }
     }
@@ -673,41 +1059,49 @@ public class Seti extends AbstractLifeCycle implements Dumpable {
      * @param message the seti message received
      */
     protected void receiveMessage(Map<String, Object> message) {
-        String userId = (String)message.get(SetiMessage.USER_ID_FIELD);
         String channel = (String)message.get(SetiMessage.CHANNEL_FIELD);
         Object data = message.get(SetiMessage.DATA_FIELD);
 
-        Set<Location> copy = new HashSet<>();
-        synchronized (_uid2Location) {
-            Set<Location> locations = _uid2Location.get(userId);
-            if (locations != null) {
-                // Consider cometA, cometB and cometC and a user that is associated
-                // in both cometA and cometB. When cometC sends a message to the user,
-                // it knows that the user is in both cometA and cometB (thanks to presence
-                // messages) and will send a message to both cometA and cometB.
-                // But cometA also knows from presence messages that the user is also in
-                // cometB and should not forward the message arriving from cometC to cometB
-                // since cometC will take care of sending to cometB.
-                // Hence, we forward the message only locally
-                for (Location location : locations) {
-                    if (location instanceof LocalLocation) {
-                        copy.add(location);
-                    }
-                }
+        Object userIds = message.get(SetiMessage.USER_IDS_FIELD);
+        if (userIds == null) {
+            String userId = (String)message.get(SetiMessage.USER_ID_FIELD);
+            receiveMessage(userId, channel, data);
+        } else {
+            // A message for multiple users, fan it out locally.
+            for (String userId : convertUserIds(userIds)) {
+                receiveMessage(userId, channel, data);
             }
         }
+    }
 
+    private void receiveMessage(String userId, String channel, Object data) {
+        Set<Location> locations = _uid2Location.get(userId);
         if (_logger.isDebugEnabled()) {
-            _logger.debug("Received message {} for locations {}", message, copy);
-        }
-        for (Location location : copy) {
-            location.receive(userId, channel, data);
+            _logger.debug("Received message for {} on {} for locations {}", userId, channel, locations);
+        }
+        if (locations != null) {
+            // Consider cometA, cometB and cometC and a user that is associated
+            // in both cometA and cometB. When cometC sends a message to the user,
+            // it knows that the user is in both cometA and cometB (thanks to presence
+            // messages) and will send a message to both cometA and cometB.
+            // But cometA also knows from presence messages that the user is also in
+            // cometB and should not forward the message arriving from cometC to cometB
+            // since cometC will take care of sending to cometB.
+            // Hence, we forward the message only locally
+            for (Location location : locations) {
+                if (location instanceof LocalLocation) {
+                    location.receive(userId, channel, data);
+                }
+            }
         }
     }
 
-    @SuppressWarnings("unchecked")
     private Set<String> convertPresenceUsers(Map<String, Object> presence) {
-        Object value = presence.get(SetiPresence.USER_IDS_FIELD);
+        return convertUserIds(presence.get(SetiPresence.USER_IDS_FIELD));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<String> convertUserIds(Object value) {
         if (value instanceof Set) {
             return (Set<String>)value;
         }
@@ -744,10 +1138,8 @@ public class Seti extends AbstractLifeCycle implements Dumpable {
             @Override
             public void dump(Appendable out, String indent) throws IOException {
                 List<String> state = new ArrayList<>();
-                synchronized (_uid2Location) {
-                    for (Map.Entry<String, Set<Location>> entry : _uid2Location.entrySet()) {
-                        state.add(String.format("%s @ %s", entry.getKey(), entry.getValue()));
-                    }
+                for (Map.Entry<String, Set<Location>> entry : _uid2Location.entrySet()) {
+                    state.add(String.format("%s @ %s", entry.getKey(), entry.getValue()));
                 }
                 ContainerLifeCycle.dumpObject(out, "locations: " + state.size());
                 if (((BayeuxServerImpl)getOort().getBayeuxServer()).isDetailedDump()) {
@@ -845,7 +1237,41 @@ public class Seti extends AbstractLifeCycle implements Dumpable {
 
         @Override
         public void send(String toUser, String toChannel, Object data) {
-            _session.getChannel(_setiChannel).publish(new SetiMessage(toUser, toChannel, data));
+            send(Collections.singleton(toUser), toChannel, data);
+        }
+
+        /**
+         * <p>Sends a message to multiple users connected to the remote comet of this location.</p>
+         * <p>A single message is sent if the remote comet advertised support for messages
+         * to multiple users, otherwise one message is sent for each user.</p>
+         *
+         * @param toUsers   the users to send the message to
+         * @param toChannel the channel to send the message to
+         * @param data      the content of the message
+         */
+        protected void send(Set<String> toUsers, String toChannel, Object data) {
+            List<String> userIds = new ArrayList<>(toUsers.size());
+            for (String toUser : toUsers) {
+                if (!bufferMessage(_oortURL, toUser, toChannel, data)) {
+                    userIds.add(toUser);
+                }
+            }
+            if (userIds.size() > 1 && isGroupSupported()) {
+                publish(_oortURL, new SetiMessage(userIds, toChannel, data));
+            } else {
+                for (String userId : userIds) {
+                    publish(_oortURL, new SetiMessage(userId, toChannel, data));
+                }
+            }
+        }
+
+        private boolean isGroupSupported() {
+            if (_oortURL == null) {
+                // Not all comets may support it.
+                return false;
+            }
+            OortComet oortComet = _oort.getComet(_oortURL);
+            return oortComet != null && oortComet.isFeatureSupported(GROUP_FEATURE);
         }
 
         @Override
@@ -881,8 +1307,34 @@ public class Seti extends AbstractLifeCycle implements Dumpable {
         }
     }
 
+    private static class BufferedMessage {
+        private final String _userId;
+        private final String _channel;
+        private final Object _data;
+        private final long _expiration;
+        // Guarded by _messageBuffers.
+        private boolean _resent;
+
+        private BufferedMessage(String userId, String channel, Object data, long expiration) {
+            _userId = userId;
+            _channel = channel;
+            _data = data;
+            _expiration = expiration;
+        }
+
+        private boolean isExpired(long now) {
+            return now - _expiration >= 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s[%s on %s]", getClass().getSimpleName(), _userId, _channel);
+        }
+    }
+
     private class SetiMessage extends HashMap<String, Object> {
         private static final String USER_ID_FIELD = "userId";
+        private static final String USER_IDS_FIELD = "userIds";
         private static final String CHANNEL_FIELD = "channel";
         private static final String SETI_ID_FIELD = "setiId";
         private static final String DATA_FIELD = "data";
@@ -894,6 +1346,14 @@ public class Seti extends AbstractLifeCycle implements Dumpable {
             put(SETI_ID_FIELD, _setiId);
             put(DATA_FIELD, data);
         }
+
+        private SetiMessage(Collection<String> toUsers, String toChannel, Object data) {
+            super(4);
+            put(USER_IDS_FIELD, toUsers);
+            put(CHANNEL_FIELD, toChannel);
+            put(SETI_ID_FIELD, _setiId);
+            put(DATA_FIELD, data);
+        }
     }
 
     private class SetiPresence extends HashMap<String, Object> {
@@ -901,6 +1361,7 @@ public class Seti extends AbstractLifeCycle implements Dumpable {
         private static final String OORT_URL_FIELD = "oortURL";
         private static final String ALIVE_FIELD = "alive";
         private static final String PRESENCE_FIELD = "presence";
+        private static final String SNAPSHOT_FIELD = "snapshot";
 
         private SetiPresence(boolean present, String userId) {
             this(present, Collections.singleton(userId));
@@ -1011,7 +1472,9 @@ public class Seti extends AbstractLifeCycle implements Dumpable {
                 if (_logger.isDebugEnabled()) {
                     _logger.debug("Pushing associated users {} to comet {}", userIds, oortURL);
                 }
-                channel.publish(new SetiPresence(true, userIds));
+                SetiPresence snapshot = new SetiPresence(true, userIds);
+                snapshot.put(SetiPresence.SNAPSHOT_FIELD, true);
+                channel.publish(snapshot);
             }
         }
 
@@ -1021,6 +1484,7 @@ public class Seti extends AbstractLifeCycle implements Dumpable {
             if (_logger.isDebugEnabled()) {
                 _logger.debug("Comet left: {}", oortURL);
             }
+            _presenceComets.remove(oortURL);
             removePresences(oortURL);
         }
     }
@@ -1035,6 +1499,7 @@ public class Seti extends AbstractLifeCycle implements Dumpable {
                 }
                 SetiPresence presence = new SetiPresence(true, associatedUserIds);
                 presence.put(SetiPresence.ALIVE_FIELD, true);
+                presence.put(SetiPresence.SNAPSHOT_FIELD, true);
                 session.deliver(_session, SETI_ALL_CHANNEL, presence, Promise.noop());
             }
         }
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2008-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cometd.oort;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.cometd.bayeux.server.BayeuxServer;
+import org.cometd.bayeux.server.ServerMessage;
+import org.cometd.bayeux.server.ServerSession;
+import org.cometd.client.BayeuxClient;
+import org.eclipse.jetty.server.Server;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OortCodecTest extends OortTest {
+    public OortCodecTest(String serverTransport) {
+        super(serverTransport);
+    }
+
+    @Test
+    public void testCompactCodecRoundTrip() throws Exception {
+        OortCodec codec = new OortCompactCodec();
+
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("oort.map.key", "key");
+        entry.put("oort.map.value", "value");
+        Map<String, Object> info = new HashMap<>();
+        info.put(OortObject.Info.VERSION_FIELD, 3L);
+        info.put(OortObject.Info.NAME_FIELD, "users");
+        info.put(OortObject.Info.TYPE_FIELD, "oort.map.entry");
+        info.put(OortObject.Info.ACTION_FIELD, "oort.map.put");
+        info.put(OortObject.Info.OBJECT_FIELD, entry);
+        info.put("custom", "value");
+
+        Object encoded = codec.encode(info);
+        Assert.assertTrue(encoded instanceof List);
+        List<?> list = (List<?>)encoded;
+        Assert.assertEquals(info.size() * 2, list.size());
+        Assert.assertTrue(list.contains("custom"));
+        Assert.assertFalse(list.contains(OortObject.Info.NAME_FIELD));
+        Assert.assertFalse(list.contains("oort.map.put"));
+        Assert.assertEquals(info, codec.decode(encoded));
+        // JSON parsers may return arrays.
+        Assert.assertEquals(info, codec.decode(toArray(list)));
+
+        Map<String, Object> request = new HashMap<>();
+        request.put("oort.service.id", 1L);
+        request.put("oort.service.parameter", "parameter");
+        Map<String, Object> batch = new HashMap<>();
+        batch.put("oort.service.batch", Arrays.asList(request, request));
+        Assert.assertEquals(batch, codec.decode(codec.encode(batch)));
+    }
+
+    private Object[] toArray(List<?> list) {
+        Object[] result = list.toArray();
+        for (int i = 0; i < result.length; ++i) {
+            if (result[i] instanceof List) {
+                result[i] = toArray((List<?>)result[i]);
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testOortMapWithCodec() throws Exception {
+        testOortMap(new OortCompactCodec(), new OortCompactCodec(), List.class);
+    }
+
+    @Test
+    public void testOortMapWithAndWithoutCodec() throws Exception {
+        testOortMap(new OortCompactCodec(), null, Map.class);
+    }
+
+    private void testOortMap(OortCodec codec1, OortCodec codec2, Class<?> expected) throws Exception {
+        Server server1 = startServer(0);
+        Oort oort1 = startOort(server1);
+        oort1.setCodec(codec1);
+        Server server2 = startServer(0);
+        Oort oort2 = startOort(server2);
+        oort2.setCodec(codec2);
+
+        // Record the data of the messages from other nodes before it is decoded.
+        List<Object> received = new CopyOnWriteArrayList<>();
+        for (Oort oort : Arrays.asList(oort1, oort2)) {
+            oort.getBayeuxServer().addExtension(new BayeuxServer.Extension() {
+                @Override
+                public boolean rcv(ServerSession from, ServerMessage.Mutable message) {
+                    if (from != null && !from.isLocalSession() && oort.isOort(from) && message.getChannel().startsWith("/service" + OortObject.OORT_OBJECTS_CHANNEL)) {
+                        received.add(message.getData());
+                    }
+                    return true;
+                }
+            });
+        }
+
+        CountDownLatch joinLatch = new CountDownLatch(2);
+        CometJoinedListener joinListener = new CometJoinedListener(joinLatch);
+        oort1.addCometListener(joinListener);
+        oort2.addCometListener(joinListener);
+        OortComet oortComet12 = oort1.observeComet(oort2.getURL());
+        Assert.assertTrue(oortComet12.waitFor(5000, BayeuxClient.State.CONNECTED));
+        Assert.assertTrue(joinLatch.await(5, TimeUnit.SECONDS));
+
+        String name = "test";
+        OortObject.Factory<ConcurrentMap<String, String>> factory = OortObjectFactories.forConcurrentMap();
+        OortStringMap<String> oortMap1 = new OortStringMap<>(oort1, name, factory);
+        OortStringMap<String> oortMap2 = new OortStringMap<>(oort2, name, factory);
+        AbstractOortObjectTest.CometSubscriptionListener subscriptionListener1 = new AbstractOortObjectTest.CometSubscriptionListener(oortMap1.getChannelName(), 1);
+        oort1.getBayeuxServer().addListener(subscriptionListener1);
+        AbstractOortObjectTest.CometSubscriptionListener subscriptionListener2 = new AbstractOortObjectTest.CometSubscriptionListener(oortMap2.getChannelName(), 1);
+        oort2.getBayeuxServer().addListener(subscriptionListener2);
+        AbstractOortObjectTest.OortObjectInitialListener<ConcurrentMap<String, String>> initialListener = new AbstractOortObjectTest.OortObjectInitialListener<>(2);
+        oortMap1.addListener(initialListener);
+        oortMap2.addListener(initialListener);
+        oortMap1.start();
+        Assert.assertTrue(subscriptionListener2.await(5, TimeUnit.SECONDS));
+        oortMap2.start();
+        Assert.assertTrue(subscriptionListener1.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(initialListener.await(5, TimeUnit.SECONDS));
+
+        CountDownLatch putLatch = new CountDownLatch(2);
+        OortMap.EntryListener<String, String> entryListener = new OortMap.EntryListener.Adapter<String, String>() {
+            @Override
+            public void onPut(OortObject.Info<ConcurrentMap<String, String>> info, OortMap.Entry<String, String> entry) {
+                if (!info.isLocal()) {
+                    putLatch.countDown();
+                }
+            }
+        };
+        oortMap1.addEntryListener(entryListener);
+        oortMap2.addEntryListener(entryListener);
+        oortMap1.putAndShare("key1", "value1", null);
+        oortMap2.putAndShare("key2", "value2", null);
+        Assert.assertTrue(putLatch.await(5, TimeUnit.SECONDS));
+
+        Assert.assertEquals("value1", oortMap2.find("key1"));
+        Assert.assertEquals("value2", oortMap1.find("key2"));
+
+        Assert.assertFalse(received.isEmpty());
+        for (Object data : new ArrayList<>(received)) {
+            Assert.assertTrue(String.valueOf(data), expected.isInstance(data) || (expected == List.class && data instanceof Object[]));
+        }
+
+        oortMap2.stop();
+        oortMap1.stop();
+    }
+}
@@ -18,6 +18,7 @@ package org.cometd.oort;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.TimeUnit;
@@ -214,6 +215,90 @@ public class OortListTest extends AbstractOortObjectTest {
         oortList1.removeElementListener(addedListener);
     }
 
+    @Test
+    public void testIsPresentAfterRemove() throws Exception {
+        String name = "test";
+        OortObject.Factory<List<String>> factory = OortObjectFactories.forConcurrentList();
+        OortList<String> oortList1 = new OortList<>(oort1, name, factory);
+        OortList<String> oortList2 = new OortList<>(oort2, name, factory);
+        startOortObjects(oortList1, oortList2);
+
+        final CountDownLatch addLatch = new CountDownLatch(1);
+        final CountDownLatch removeLatch = new CountDownLatch(1);
+        oortList1.addElementListener(new OortList.ElementListener.Adapter<String>() {
+            @Override
+            public void onAdded(OortObject.Info<List<String>> info, List<String> elements) {
+                addLatch.countDown();
+            }
+
+            @Override
+            public void onRemoved(OortObject.Info<List<String>> info, List<String> elements) {
+                removeLatch.countDown();
+            }
+        });
+
+        // Add the same element twice, List.removeAll() removes both.
+        String element = "A";
+        OortObject.Result<Boolean> nullResult = null;
+        oortList2.addAndShare(nullResult, element, element);
+        Assert.assertTrue(addLatch.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(oortList1.isPresent(element));
+        Assert.assertFalse(oortList1.contains(element));
+        Assert.assertEquals(Collections.singleton(element), oortList1.getMergedView());
+
+        oortList2.removeAndShare(nullResult, element);
+        Assert.assertTrue(removeLatch.await(5, TimeUnit.SECONDS));
+        Assert.assertFalse(oortList1.isPresent(element));
+        Assert.assertFalse(oortList2.isPresent(element));
+        Assert.assertTrue(oortList1.getMergedView().isEmpty());
+    }
+
+    @Test
+    public void testLostElementResyncPreservesOrder() throws Exception {
+        String name = "lost_element";
+        OortObject.Factory<List<Long>> factory = OortObjectFactories.forConcurrentList();
+        OortList<Long> oortList1 = new OortList<>(oort1, name, factory);
+        OortList<Long> oortList2 = new OortList<Long>(oort2, name, factory) {
+            @Override
+            protected void onObject(Map<String, Object> data) {
+                String oortURL = (String)data.get(Info.OORT_URL_FIELD);
+                // Simulate that an element remove update gets lost.
+                if (!getOort().getURL().equals(oortURL) && "oort.list.remove".equals(data.get(Info.ACTION_FIELD))) {
+                    return;
+                }
+                super.onObject(data);
+            }
+        };
+        // With 2 buckets, elements "3" and "21" belong to the same bucket,
+        // so only that bucket differs after the remove update is lost.
+        oortList2.setDigestBuckets(2);
+        startOortObjects(oortList1, oortList2);
+
+        int size = 20;
+        for (long i = 0; i < size; ++i) {
+            OortObject.Result.Deferred<Boolean> result = new OortObject.Result.Deferred<>();
+            oortList1.addAndShare(result, i);
+            Assert.assertTrue(result.get(5, TimeUnit.SECONDS));
+        }
+        OortObject.Result.Deferred<Boolean> result = new OortObject.Result.Deferred<>();
+        oortList1.removeAndShare(result, 3L);
+        Assert.assertTrue(result.get(5, TimeUnit.SECONDS));
+
+        // The next update triggers the resync of the replica.
+        result = new OortObject.Result.Deferred<>();
+        oortList1.addAndShare(result, 21L);
+        Assert.assertTrue(result.get(5, TimeUnit.SECONDS));
+
+        // The replica must converge to the elements in the same order.
+        List<Long> expected = oortList1.getInfo(oort1.getURL()).getObject();
+        long begin = System.nanoTime();
+        while (!expected.equals(oortList2.getInfo(oort1.getURL()).getObject())) {
+            Assert.assertTrue(String.valueOf(oortList2.getInfo(oort1.getURL()).getObject()),
+                    TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - begin) < 5);
+            Thread.sleep(10);
+        }
+    }
+
     @Test
     public void testConcurrent() throws Exception {
         String name = "concurrent";
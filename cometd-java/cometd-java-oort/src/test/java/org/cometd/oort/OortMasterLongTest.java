@@ -17,7 +17,12 @@ package org.cometd.oort;
 
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.cometd.bayeux.server.BayeuxServer;
+import org.cometd.bayeux.server.ServerMessage;
+import org.cometd.bayeux.server.ServerSession;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -111,4 +116,73 @@ public class OortMasterLongTest extends AbstractOortObjectTest {
         // Make sure the local value is set
         Assert.assertEquals(initial + 3, counter1.getValue());
     }
+
+    @Test
+    public void testReadLease() throws Exception {
+        String name = "test";
+        final long initial = 3;
+        OortMasterLong counter1 = new OortMasterLong(oort1, name, true, initial);
+        counter1.setLeaseTime(10000);
+        OortMasterLong counter2 = new OortMasterLong(oort2, name, false);
+        counter2.setLeaseTime(10000);
+        counter1.start();
+        // Wait for counter1 to be started
+        Thread.sleep(1000);
+        counter2.start();
+        // Wait for the nodes to synchronize
+        Thread.sleep(1000);
+
+        // Count the forwards in an extension, which is invoked before the
+        // service returns the result, unlike a listener added to the channel.
+        final AtomicInteger forwards = new AtomicInteger();
+        oort1.getBayeuxServer().addExtension(new BayeuxServer.Extension() {
+            @Override
+            public boolean rcv(ServerSession from, ServerMessage.Mutable message) {
+                if (("/service/oort/service/" + name).equals(message.getChannel())) {
+                    forwards.incrementAndGet();
+                }
+                return true;
+            }
+        });
+
+        Assert.assertEquals(initial, get(counter2));
+        Assert.assertEquals(1, forwards.get());
+
+        // The second read is served locally.
+        Assert.assertEquals(initial, get(counter2));
+        Assert.assertEquals(1, forwards.get());
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        Assert.assertTrue(counter1.addAndGet(5, new OortMasterLong.Callback.Adapter() {
+            @Override
+            public void succeeded(Long result) {
+                latch.countDown();
+            }
+        }));
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+        // The lease is revoked, so the read eventually sees the new value.
+        long begin = System.nanoTime();
+        while (get(counter2) != initial + 5) {
+            Assert.assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - begin) < 5);
+            Thread.sleep(10);
+        }
+        int count = forwards.get();
+        Assert.assertEquals(initial + 5, get(counter2));
+        Assert.assertEquals(count, forwards.get());
+    }
+
+    private long get(OortMasterLong counter) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicLong value = new AtomicLong();
+        Assert.assertTrue(counter.get(new OortMasterLong.Callback.Adapter() {
+            @Override
+            public void succeeded(Long result) {
+                value.set(result);
+                latch.countDown();
+            }
+        }));
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        return value.get();
+    }
 }
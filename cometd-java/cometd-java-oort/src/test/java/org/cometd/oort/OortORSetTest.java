@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2008-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cometd.oort;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.cometd.client.BayeuxClient;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OortORSetTest extends AbstractOortObjectTest {
+    public OortORSetTest(String serverTransport) {
+        super(serverTransport);
+    }
+
+    @Test
+    public void testAddRemove() throws Exception {
+        String name = "test";
+        OortORSet<String> set1 = new OortORSet<>(oort1, name);
+        set1.setPeriod(100);
+        OortORSet<String> set2 = new OortORSet<>(oort2, name);
+        set2.setPeriod(100);
+        set1.start();
+        set2.start();
+
+        Assert.assertTrue(set1.add("a"));
+        Assert.assertFalse(set1.add("a"));
+        Assert.assertTrue(set2.add("b"));
+        await(() -> set1.size() == 2 && set2.size() == 2);
+        Assert.assertEquals(new HashSet<>(Arrays.asList("a", "b")), set1.getElements());
+
+        Assert.assertTrue(set2.remove("a"));
+        await(() -> !set1.contains("a"));
+        Assert.assertEquals(Collections.singleton("b"), set1.getElements());
+        Assert.assertEquals(Collections.singleton("b"), set2.getElements());
+
+        set2.stop();
+        set1.stop();
+    }
+
+    @Test
+    public void testConcurrentAddWins() throws Exception {
+        String name = "test";
+        // Share the states only explicitly.
+        OortORSet<String> set1 = new OortORSet<>(oort1, name);
+        set1.setPeriod(TimeUnit.HOURS.toMillis(1));
+        OortORSet<String> set2 = new OortORSet<>(oort2, name);
+        set2.setPeriod(TimeUnit.HOURS.toMillis(1));
+        set1.start();
+        set2.start();
+
+        set1.add("a");
+        set1.flush();
+        await(() -> set2.contains("a"));
+
+        // Concurrent removal on node1 and addition on node2.
+        set1.remove("a");
+        set2.add("a");
+        set1.flush();
+        set2.flush();
+
+        await(() -> set1.contains("a"));
+        Assert.assertTrue(set2.contains("a"));
+
+        set2.stop();
+        set1.stop();
+    }
+
+    @Test
+    public void testAddAfterRestart() throws Exception {
+        String name = "test";
+        OortORSet<String> set1 = new OortORSet<>(oort1, name);
+        set1.setPeriod(100);
+        OortORSet<String> set2 = new OortORSet<>(oort2, name);
+        set2.setPeriod(100);
+        set1.start();
+        set2.start();
+
+        set2.add("a");
+        await(() -> set1.contains("a"));
+        set2.remove("a");
+        await(() -> !set1.contains("a"));
+
+        // Restart node2, with the same Oort URL.
+        Server server2 = (Server)oort2.getBayeuxServer().getOption(Server.class.getName());
+        int port2 = ((ServerConnector)server2.getConnectors()[0]).getLocalPort();
+        CountDownLatch leftLatch = new CountDownLatch(1);
+        oort1.addCometListener(new CometLeftListener(leftLatch));
+        set2.stop();
+        stopOort(oort2);
+        stopServer(server2);
+        Assert.assertTrue(leftLatch.await(5, TimeUnit.SECONDS));
+
+        server2 = startServer(port2);
+        oort2 = startOort(server2);
+        CountDownLatch joinedLatch = new CountDownLatch(2);
+        CometJoinedListener joinedListener = new CometJoinedListener(joinedLatch);
+        oort1.addCometListener(joinedListener);
+        oort2.addCometListener(joinedListener);
+        OortComet oortComet21 = oort2.observeComet(oort1.getURL());
+        Assert.assertTrue(oortComet21.waitFor(5000, BayeuxClient.State.CONNECTED));
+        Assert.assertTrue(joinedLatch.await(5, TimeUnit.SECONDS));
+
+        OortORSet<String> set3 = new OortORSet<>(oort2, name);
+        set3.setPeriod(100);
+        set3.start();
+
+        // The addition on the restarted node must not be
+        // mistaken for the addition removed before the restart.
+        Assert.assertTrue(set3.add("b"));
+        await(() -> set1.contains("b"));
+        // Wait for the state of node1 to be merged by the restarted node.
+        Thread.sleep(1000);
+        Assert.assertTrue(set3.contains("b"));
+        Assert.assertFalse(set3.contains("a"));
+
+        set3.stop();
+        set1.stop();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long begin = System.nanoTime();
+        while (!condition.getAsBoolean()) {
+            Assert.assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - begin) < 5);
+            Thread.sleep(10);
+        }
+    }
+}
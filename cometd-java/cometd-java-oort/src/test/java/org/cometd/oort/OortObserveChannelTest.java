@@ -16,8 +16,10 @@
 package org.cometd.oort;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -25,6 +27,8 @@ import java.util.concurrent.TimeUnit;
 import org.cometd.bayeux.BinaryData;
 import org.cometd.bayeux.Channel;
 import org.cometd.bayeux.server.BayeuxServer;
+import org.cometd.bayeux.server.ServerChannel;
+import org.cometd.bayeux.server.ServerSession;
 import org.cometd.client.BayeuxClient;
 import org.cometd.server.ext.BinaryExtension;
 import org.eclipse.jetty.server.Server;
@@ -264,4 +268,75 @@ public class OortObserveChannelTest extends OortTest {
         Assert.assertTrue(publishLatch.await(5, TimeUnit.SECONDS));
         Assert.assertTrue(messageLatch.await(5, TimeUnit.SECONDS));
     }
+
+    @Test
+    public void testRelayedObserveChannel() throws Exception {
+        int nodes = 5;
+        List<Oort> cloud = new ArrayList<>();
+        for (int i = 0; i < nodes; ++i) {
+            Server server = startServer(0);
+            Oort oort = startOort(server);
+            // Each node has at most 1 child, so the tree is a chain.
+            oort.setRelayFanOut(1);
+            cloud.add(oort);
+        }
+
+        CountDownLatch latch = new CountDownLatch(nodes * (nodes - 1));
+        CometJoinedListener listener = new CometJoinedListener(latch);
+        for (Oort oort : cloud) {
+            oort.addCometListener(listener);
+        }
+        Oort oort1 = cloud.get(0);
+        for (int i = 1; i < nodes; ++i) {
+            OortComet oortComet = oort1.observeComet(cloud.get(i).getURL());
+            Assert.assertTrue(oortComet.waitFor(5000, BayeuxClient.State.CONNECTED));
+        }
+        Assert.assertTrue(latch.await(15, TimeUnit.SECONDS));
+
+        String channelName = "/oort_test";
+        for (Oort oort : cloud) {
+            oort.observeChannel(channelName);
+        }
+
+        List<BayeuxClient> cloudClients = new ArrayList<>();
+        List<LatchListener> messageLatches = new ArrayList<>();
+        for (Oort oort : cloud) {
+            BayeuxClient client = startClient(oort, null);
+            Assert.assertTrue(client.waitFor(5000, BayeuxClient.State.CONNECTED));
+            LatchListener subscribeLatch = new LatchListener();
+            client.getChannel(Channel.META_SUBSCRIBE).addListener(subscribeLatch);
+            LatchListener messageLatch = new LatchListener(nodes);
+            client.getChannel(channelName).subscribe(messageLatch);
+            Assert.assertTrue(subscribeLatch.await(5, TimeUnit.SECONDS));
+            cloudClients.add(client);
+            messageLatches.add(messageLatch);
+        }
+
+        // Wait a while to be sure that the comets are subscribed.
+        Thread.sleep(1000);
+
+        // Each node sends messages to at most 2 other nodes.
+        for (Oort oort : cloud) {
+            ServerChannel channel = oort.getBayeuxServer().getChannel(channelName);
+            int comets = 0;
+            for (ServerSession subscriber : channel.getSubscribers()) {
+                if (oort.isOort(subscriber)) {
+                    ++comets;
+                }
+            }
+            Assert.assertTrue(comets <= 2);
+        }
+
+        // A message published on any node must be received once by every client.
+        for (BayeuxClient client : cloudClients) {
+            client.getChannel(channelName).publish(new HashMap<>());
+        }
+        for (LatchListener messageLatch : messageLatches) {
+            Assert.assertTrue(messageLatch.await(5, TimeUnit.SECONDS));
+        }
+        Thread.sleep(1000);
+        for (LatchListener messageLatch : messageLatches) {
+            Assert.assertEquals(nodes, messageLatch.count());
+        }
+    }
 }
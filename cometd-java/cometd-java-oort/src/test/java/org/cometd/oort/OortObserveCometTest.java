@@ -362,6 +362,56 @@ public class OortObserveCometTest extends OortTest {
         Assert.assertTrue(oortComet21.waitFor(5000, BayeuxClient.State.CONNECTED));
     }
 
+    @Test
+    public void testFailureDetectedBeforeMaxInterval() throws Exception {
+        Map<String, String> options = new HashMap<>();
+        options.put(AbstractServerTransport.MAX_INTERVAL_OPTION, String.valueOf(30000));
+
+        Server server1 = startServer(0, options);
+        Oort oort1 = startOort(server1);
+        stopOort(oort1);
+        oort1.setFailureDetectionThreshold(8);
+        oort1.setHeartbeatInterval(500);
+        oort1.start();
+
+        Server server2 = startServer(0, options);
+        Oort oort2 = startOort(server2);
+
+        CountDownLatch joinedLatch = new CountDownLatch(2);
+        CometJoinedListener joinedListener = new CometJoinedListener(joinedLatch);
+        oort1.addCometListener(joinedListener);
+        oort2.addCometListener(joinedListener);
+        OortComet oortComet12 = oort1.observeComet(oort2.getURL());
+        Assert.assertTrue(oortComet12.waitFor(5000, BayeuxClient.State.CONNECTED));
+        Assert.assertTrue(joinedLatch.await(5, TimeUnit.SECONDS));
+        OortComet oortComet21 = oort2.findComet(oort1.getURL());
+        Assert.assertTrue(oortComet21.waitFor(5000, BayeuxClient.State.CONNECTED));
+
+        CountDownLatch leftLatch = new CountDownLatch(1);
+        oort1.addCometListener(new CometLeftListener(leftLatch));
+
+        // Let the failure detector collect samples, it must not suspect a healthy comet.
+        Thread.sleep(2000);
+        Assert.assertEquals(1, leftLatch.getCount());
+
+        // Comet2 cannot reach node1 anymore.
+        ServerConnector connector1 = (ServerConnector)server1.getConnectors()[0];
+        int port1 = connector1.getLocalPort();
+        connector1.stop();
+
+        // The failure must be detected much before the maxInterval expires.
+        Assert.assertTrue(leftLatch.await(5, TimeUnit.SECONDS));
+
+        // When the network is back, comet2 must join again.
+        CountDownLatch rejoinedLatch = new CountDownLatch(1);
+        oort1.addCometListener(new CometJoinedListener(rejoinedLatch));
+        connector1.setPort(port1);
+        connector1.start();
+        Assert.assertTrue(rejoinedLatch.await(15, TimeUnit.SECONDS));
+        Assert.assertTrue(oortComet21.waitFor(5000, BayeuxClient.State.CONNECTED));
+        Assert.assertTrue(oort1.getKnownComets().contains(oort2.getURL()));
+    }
+
     @Test
     public void testCometDownLongerThanMaxInterval() throws Exception {
         long maxInterval = 2000;
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2008-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cometd.oort;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OortPNCounterTest extends AbstractOortObjectTest {
+    public OortPNCounterTest(String serverTransport) {
+        super(serverTransport);
+    }
+
+    @Test
+    public void testCount() throws Exception {
+        String name = "test";
+        OortPNCounter counter1 = new OortPNCounter(oort1, name);
+        counter1.setPeriod(100);
+        OortPNCounter counter2 = new OortPNCounter(oort2, name);
+        counter2.setPeriod(100);
+        counter1.start();
+        counter2.start();
+
+        int count = 1000;
+        for (int i = 0; i < count; ++i) {
+            counter1.increment();
+        }
+        counter2.add(-10);
+        counter2.add(5);
+
+        long expected = count - 5;
+        Assert.assertEquals(count, counter1.getLocal());
+        Assert.assertEquals(-5, counter2.getLocal());
+        await(() -> counter1.get() == expected && counter2.get() == expected);
+
+        // The counts of a node that left are retained.
+        CountDownLatch latch = new CountDownLatch(1);
+        oort1.addCometListener(new CometLeftListener(latch));
+        counter2.stop();
+        stopOort(oort2);
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(expected, counter1.get());
+
+        counter1.stop();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long begin = System.nanoTime();
+        while (!condition.getAsBoolean()) {
+            Assert.assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - begin) < 5);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2008-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cometd.oort;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.cometd.client.BayeuxClient;
+import org.eclipse.jetty.server.Server;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OortPartitionedMapTest extends AbstractOortObjectTest {
+    private OortPartitionedMap<String> map1;
+    private OortPartitionedMap<String> map2;
+
+    public OortPartitionedMapTest(String serverTransport) {
+        super(serverTransport);
+    }
+
+    @After
+    public void stopMaps() throws Exception {
+        if (map2 != null) {
+            map2.stop();
+        }
+        if (map1 != null) {
+            map1.stop();
+        }
+    }
+
+    private void startMaps(int backups) throws Exception {
+        String name = "test";
+        map1 = new OortPartitionedMap<>(oort1, name, backups);
+        map1.start();
+        map2 = new OortPartitionedMap<>(oort2, name, backups);
+        map2.start();
+    }
+
+    @Test
+    public void testEntriesArePartitioned() throws Exception {
+        startMaps(0);
+
+        int count = 64;
+        for (int i = 0; i < count; ++i) {
+            ResultCallback<String> callback = new ResultCallback<>();
+            Assert.assertTrue(map1.put("key" + i, "value" + i, callback));
+            Assert.assertNull(callback.get());
+        }
+
+        Assert.assertEquals(count, map1.getLocalSize() + map2.getLocalSize());
+        Assert.assertTrue(map1.getLocalSize() > 0);
+        Assert.assertTrue(map2.getLocalSize() > 0);
+        for (String key : map1.getLocalKeys()) {
+            Assert.assertTrue(map1.isOwner(key));
+            Assert.assertFalse(map2.isOwner(key));
+        }
+
+        for (int i = 0; i < count; ++i) {
+            ResultCallback<String> callback = new ResultCallback<>();
+            Assert.assertTrue(map2.get("key" + i, callback));
+            Assert.assertEquals("value" + i, callback.get());
+        }
+
+        for (int i = 0; i < count; ++i) {
+            ResultCallback<String> callback = new ResultCallback<>();
+            Assert.assertTrue(map2.remove("key" + i, callback));
+            Assert.assertEquals("value" + i, callback.get());
+        }
+
+        Assert.assertEquals(0, map1.getLocalSize());
+        Assert.assertEquals(0, map2.getLocalSize());
+    }
+
+    @Test
+    public void testEntriesAreBackedUp() throws Exception {
+        startMaps(1);
+
+        int count = 16;
+        for (int i = 0; i < count; ++i) {
+            ResultCallback<String> callback = new ResultCallback<>();
+            Assert.assertTrue(map2.put("key" + i, "value" + i, callback));
+            Assert.assertNull(callback.get());
+        }
+
+        // With 2 nodes and 1 backup, every node has all the entries.
+        awaitLocalSize(map1, count);
+        awaitLocalSize(map2, count);
+
+        CountDownLatch latch = new CountDownLatch(1);
+        oort1.addCometListener(new CometLeftListener(latch));
+        stopOort(oort2);
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < count; ++i) {
+            String key = "key" + i;
+            Assert.assertTrue(map1.isOwner(key));
+            ResultCallback<String> callback = new ResultCallback<>();
+            Assert.assertTrue(map1.get(key, callback));
+            Assert.assertEquals("value" + i, callback.get());
+        }
+    }
+
+    @Test
+    public void testEntriesAreMigratedWhenCometJoins() throws Exception {
+        startMaps(0);
+
+        int count = 64;
+        for (int i = 0; i < count; ++i) {
+            ResultCallback<String> callback = new ResultCallback<>();
+            Assert.assertTrue(map1.put("key" + i, "value" + i, callback));
+            Assert.assertNull(callback.get());
+        }
+
+        Server server3 = startServer(0);
+        Oort oort3 = startOort(server3);
+        OortPartitionedMap<String> map3 = new OortPartitionedMap<>(oort3, map1.getName());
+        map3.start();
+
+        // Latch with 4 counts for node1 and node2 joining node3 + node3 joining node1 and node2.
+        CountDownLatch latch = new CountDownLatch(4);
+        CometJoinedListener listener = new CometJoinedListener(latch);
+        oort1.addCometListener(listener);
+        oort2.addCometListener(listener);
+        oort3.addCometListener(listener);
+        OortComet oortComet31 = oort3.observeComet(oort1.getURL());
+        Assert.assertTrue(oortComet31.waitFor(5000, BayeuxClient.State.CONNECTED));
+        OortComet oortComet32 = oort3.observeComet(oort2.getURL());
+        Assert.assertTrue(oortComet32.waitFor(5000, BayeuxClient.State.CONNECTED));
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+        // The sizes may add up while entries are still being migrated,
+        // so wait for every node to only store the entries it owns.
+        long begin = System.nanoTime();
+        while (map1.getLocalSize() + map2.getLocalSize() + map3.getLocalSize() != count ||
+                !ownsLocalKeys(map1) || !ownsLocalKeys(map2) || !ownsLocalKeys(map3)) {
+            Assert.assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - begin) < 5);
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(map3.getLocalSize() > 0);
+        for (String key : map3.getLocalKeys()) {
+            Assert.assertTrue(map3.isOwner(key));
+        }
+
+        for (int i = 0; i < count; ++i) {
+            ResultCallback<String> callback = new ResultCallback<>();
+            Assert.assertTrue(map3.get("key" + i, callback));
+            Assert.assertEquals("value" + i, callback.get());
+        }
+
+        map3.stop();
+    }
+
+    @Test
+    public void testRemoteValuesAreConvertedByFactory() throws Exception {
+        String name = "lists";
+        OortObject.Factory<List<String>> factory = OortObjectFactories.forConcurrentList();
+        OortPartitionedMap<List<String>> lists1 = new OortPartitionedMap<>(oort1, name, 1, factory);
+        lists1.start();
+        OortPartitionedMap<List<String>> lists2 = new OortPartitionedMap<>(oort2, name, 1, factory);
+        lists2.start();
+
+        // With 2 nodes, some keys are owned by the other node.
+        int count = 16;
+        for (int i = 0; i < count; ++i) {
+            ResultCallback<List<String>> callback = new ResultCallback<>();
+            Assert.assertTrue(lists1.put("key" + i, Arrays.asList("a" + i, "b" + i), callback));
+            Assert.assertNull(callback.get());
+        }
+
+        for (int i = 0; i < count; ++i) {
+            ResultCallback<List<String>> callback = new ResultCallback<>();
+            Assert.assertTrue(lists2.get("key" + i, callback));
+            List<String> value = callback.get();
+            Assert.assertEquals(Arrays.asList("a" + i, "b" + i), value);
+        }
+
+        lists2.stop();
+        lists1.stop();
+    }
+
+    private boolean ownsLocalKeys(OortPartitionedMap<?> map) {
+        for (String key : map.getLocalKeys()) {
+            if (!map.isOwner(key)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void awaitLocalSize(OortPartitionedMap<?> map, int size) throws InterruptedException {
+        long begin = System.nanoTime();
+        while (map.getLocalSize() != size) {
+            Assert.assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - begin) < 5);
+            Thread.sleep(10);
+        }
+    }
+
+    private static class ResultCallback<V> extends OortPartitionedMap.Callback.Adapter<V> {
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile V result;
+
+        @Override
+        public void succeeded(V result) {
+            this.result = result;
+            latch.countDown();
+        }
+
+        private V get() throws InterruptedException {
+            Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+            return result;
+        }
+    }
+}
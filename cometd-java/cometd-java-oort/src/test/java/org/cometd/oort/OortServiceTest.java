@@ -15,10 +15,15 @@
  */
 package org.cometd.oort;
 
+import java.util.Collections;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.cometd.bayeux.server.ServerChannel;
+import org.cometd.bayeux.server.ServerMessage;
+import org.cometd.bayeux.server.ServerSession;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -246,6 +251,78 @@ public class OortServiceTest extends AbstractOortObjectTest {
         TimeUnit.MILLISECONDS.sleep(2 * timeout);
     }
 
+    @Test
+    public void testActionsAreBatched() throws Exception {
+        int actions = 5000;
+        CountDownLatch latch = new CountDownLatch(actions);
+        AtomicInteger failures = new AtomicInteger();
+        CountService service1 = new CountService(oort1, latch, failures);
+        service1.start();
+        CountService service2 = new CountService(oort2, latch, failures);
+        service2.start();
+
+        AtomicInteger messages = new AtomicInteger();
+        oort2.getBayeuxServer().getChannel("/service/oort/service/" + service2.getName()).addListener(new ServerChannel.MessageListener() {
+            @Override
+            public boolean onMessage(ServerSession from, ServerChannel channel, ServerMessage.Mutable message) {
+                messages.incrementAndGet();
+                return true;
+            }
+        });
+
+        for (long i = 0; i < actions; ++i) {
+            Assert.assertTrue(service1.perform(oort2.getURL(), i));
+        }
+        Assert.assertTrue(latch.await(15, TimeUnit.SECONDS));
+        Assert.assertEquals(0, failures.get());
+        logger.info("Forwarded {} actions in {} messages", actions, messages.get());
+        Assert.assertTrue(messages.get() < actions);
+
+        service2.stop();
+        service1.stop();
+    }
+
+    @Test
+    public void testActionsAreNotBatchedToNodesWithoutBatchSupport() throws Exception {
+        // Simulate nodes that did not advertise support for batches.
+        oort1.getComet(oort2.getURL()).setFeatures(Collections.emptySet());
+        oort2.getComet(oort1.getURL()).setFeatures(Collections.emptySet());
+
+        int actions = 1000;
+        CountDownLatch latch = new CountDownLatch(actions);
+        AtomicInteger failures = new AtomicInteger();
+        CountService service1 = new CountService(oort1, latch, failures);
+        service1.start();
+        CountService service2 = new CountService(oort2, latch, failures);
+        service2.start();
+
+        AtomicInteger messages = new AtomicInteger();
+        AtomicInteger batches = new AtomicInteger();
+        ServerChannel.MessageListener listener = new ServerChannel.MessageListener() {
+            @Override
+            public boolean onMessage(ServerSession from, ServerChannel channel, ServerMessage.Mutable message) {
+                messages.incrementAndGet();
+                if (message.getDataAsMap().containsKey("oort.service.batch")) {
+                    batches.incrementAndGet();
+                }
+                return true;
+            }
+        };
+        oort2.getBayeuxServer().getChannel("/service/oort/service/" + service2.getName()).addListener(listener);
+        oort1.getBayeuxServer().getChannel("/service/oort/service/" + service1.getName() + "/result").addListener(listener);
+
+        for (long i = 0; i < actions; ++i) {
+            Assert.assertTrue(service1.perform(oort2.getURL(), i));
+        }
+        Assert.assertTrue(latch.await(15, TimeUnit.SECONDS));
+        Assert.assertEquals(0, failures.get());
+        Assert.assertEquals(0, batches.get());
+        Assert.assertEquals(2 * actions, messages.get());
+
+        service2.stop();
+        service1.stop();
+    }
+
     private static class Service extends OortService<Boolean, String> {
         private final CountDownLatch latch;
         private volatile String context;
@@ -285,6 +362,40 @@ public class OortServiceTest extends AbstractOortObjectTest {
         }
     }
 
+    private static class CountService extends OortService<Long, Long> {
+        private final CountDownLatch latch;
+        private final AtomicInteger failures;
+
+        private CountService(Oort oort, CountDownLatch latch, AtomicInteger failures) {
+            super(oort, "test");
+            this.latch = latch;
+            this.failures = failures;
+        }
+
+        public boolean perform(String oortURL, long value) {
+            return forward(oortURL, value, value);
+        }
+
+        @Override
+        protected Result<Long> onForward(Request request) {
+            return Result.success(((Number)request.getData()).longValue() + 1);
+        }
+
+        @Override
+        protected void onForwardSucceeded(Long result, Long context) {
+            if (((Number)result).longValue() != context + 1) {
+                failures.incrementAndGet();
+            }
+            latch.countDown();
+        }
+
+        @Override
+        protected void onForwardFailed(Object failure, Long context) {
+            failures.incrementAndGet();
+            latch.countDown();
+        }
+    }
+
     private static class BroadcastService extends OortService<Boolean, String> {
         private final CountDownLatch latch;
         private volatile String context;
@@ -23,6 +23,7 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.cometd.client.BayeuxClient;
@@ -238,6 +239,152 @@ public class OortStringMapTest extends AbstractOortObjectTest {
         oortMap1.removeEntryListener(putListener);
     }
 
+    @Test
+    public void testMergedView() throws Exception {
+        String name = "test";
+        OortObject.Factory<ConcurrentMap<String, String>> factory = OortObjectFactories.forConcurrentMap();
+        OortStringMap<String> oortMap1 = new OortStringMap<>(oort1, name, factory);
+        OortStringMap<String> oortMap2 = new OortStringMap<>(oort2, name, factory);
+        startOortObjects(oortMap1, oortMap2);
+
+        Map<String, String> view = oortMap1.getMergedView();
+        Assert.assertTrue(view.isEmpty());
+
+        final CountDownLatch putLatch = new CountDownLatch(2);
+        final CountDownLatch removeLatch = new CountDownLatch(1);
+        oortMap1.addEntryListener(new OortMap.EntryListener.Adapter<String, String>() {
+            @Override
+            public void onPut(OortObject.Info<ConcurrentMap<String, String>> info, OortMap.Entry<String, String> entry) {
+                putLatch.countDown();
+            }
+
+            @Override
+            public void onRemoved(OortObject.Info<ConcurrentMap<String, String>> info, OortMap.Entry<String, String> entry) {
+                removeLatch.countDown();
+            }
+        });
+        oortMap1.putAndShare("keyA", "valueA", null);
+        oortMap2.putAndShare("keyB", "valueB", null);
+        Assert.assertTrue(putLatch.await(5, TimeUnit.SECONDS));
+
+        Map<String, String> expected = new HashMap<>();
+        expected.put("keyA", "valueA");
+        expected.put("keyB", "valueB");
+        Assert.assertEquals(expected, view);
+        Assert.assertEquals(oortMap1.merge(OortObjectMergers.concurrentMapUnion()), view);
+
+        oortMap2.removeAndShare("keyB", null);
+        Assert.assertTrue(removeLatch.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, view.size());
+        Assert.assertFalse(view.containsKey("keyB"));
+        Assert.assertEquals("valueA", view.get("keyA"));
+    }
+
+    @Test
+    public void testFindFollowsUpdates() throws Exception {
+        String name = "test";
+        OortObject.Factory<ConcurrentMap<String, String>> factory = OortObjectFactories.forConcurrentMap();
+        OortStringMap<String> oortMap1 = new OortStringMap<>(oort1, name, factory);
+        OortStringMap<String> oortMap2 = new OortStringMap<>(oort2, name, factory);
+        startOortObjects(oortMap1, oortMap2);
+
+        final String keyA = "keyA";
+        final String valueA = "valueA";
+        final CountDownLatch putLatch = new CountDownLatch(1);
+        final CountDownLatch removeLatch = new CountDownLatch(1);
+        oortMap1.addEntryListener(new OortMap.EntryListener.Adapter<String, String>() {
+            @Override
+            public void onPut(OortObject.Info<ConcurrentMap<String, String>> info, OortMap.Entry<String, String> entry) {
+                putLatch.countDown();
+            }
+
+            @Override
+            public void onRemoved(OortObject.Info<ConcurrentMap<String, String>> info, OortMap.Entry<String, String> entry) {
+                removeLatch.countDown();
+            }
+        });
+        oortMap2.putAndShare(keyA, valueA, null);
+        Assert.assertTrue(putLatch.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(valueA, oortMap1.find(keyA));
+        Assert.assertEquals(oort2.getURL(), oortMap1.findInfo(keyA).getOortURL());
+
+        oortMap2.removeAndShare(keyA, null);
+        Assert.assertTrue(removeLatch.await(5, TimeUnit.SECONDS));
+        Assert.assertNull(oortMap1.find(keyA));
+        Assert.assertNull(oortMap1.findInfo(keyA));
+
+        // Whole map updates must update the index.
+        final String keyB = "keyB";
+        final String valueB = "valueB";
+        final CountDownLatch setLatch = new CountDownLatch(1);
+        oortMap1.addListener(new OortObject.Listener.Adapter<ConcurrentMap<String, String>>() {
+            @Override
+            public void onUpdated(OortObject.Info<ConcurrentMap<String, String>> oldInfo, OortObject.Info<ConcurrentMap<String, String>> newInfo) {
+                setLatch.countDown();
+            }
+        });
+        ConcurrentMap<String, String> map = factory.newObject(null);
+        map.put(keyB, valueB);
+        oortMap2.setAndShare(map, null);
+        Assert.assertTrue(setLatch.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(valueB, oortMap1.find(keyB));
+
+        // Infos of nodes that left must be removed from the index.
+        CountDownLatch leftLatch = new CountDownLatch(1);
+        oort1.addCometListener(new CometLeftListener(leftLatch));
+        stopOort(oort2);
+        Assert.assertTrue(leftLatch.await(5, TimeUnit.SECONDS));
+        Assert.assertNull(oortMap1.find(keyB));
+    }
+
+    @Test
+    public void testFindDuringWholeUpdates() throws Exception {
+        String name = "test";
+        OortObject.Factory<ConcurrentMap<String, String>> factory = OortObjectFactories.forConcurrentMap();
+        OortStringMap<String> oortMap1 = new OortStringMap<>(oort1, name, factory);
+        OortStringMap<String> oortMap2 = new OortStringMap<>(oort2, name, factory);
+        startOortObjects(oortMap1, oortMap2);
+
+        int updates = 64;
+        String key = "key";
+        CountDownLatch updateLatch = new CountDownLatch(updates);
+        oortMap1.addListener(new OortObject.Listener.Adapter<ConcurrentMap<String, String>>() {
+            @Override
+            public void onUpdated(OortObject.Info<ConcurrentMap<String, String>> oldInfo, OortObject.Info<ConcurrentMap<String, String>> newInfo) {
+                if (!oldInfo.isLocal()) {
+                    updateLatch.countDown();
+                }
+            }
+        });
+
+        // The key is in every version of the map, so it must always be found.
+        AtomicInteger misses = new AtomicInteger();
+        Thread finder = new Thread(() -> {
+            while (updateLatch.getCount() > 0) {
+                if (oortMap1.findInfo(key) == null && updateLatch.getCount() < updates) {
+                    misses.incrementAndGet();
+                }
+            }
+        });
+        finder.start();
+
+        for (int i = 0; i < updates; ++i) {
+            ConcurrentMap<String, String> map = factory.newObject(null);
+            map.put(key, "value");
+            for (int j = 0; j < 256; ++j) {
+                map.put("key" + i + "_" + j, "value");
+            }
+            oortMap2.setAndShare(map, null);
+        }
+
+        Assert.assertTrue(updateLatch.await(15, TimeUnit.SECONDS));
+        finder.join();
+        Assert.assertEquals(0, misses.get());
+        Assert.assertEquals(1 + 256, oortMap1.getInfo(oort2.getURL()).getObject().size());
+        Assert.assertNull(oortMap1.findInfo("key0_0"));
+        Assert.assertNotNull(oortMap1.findInfo("key" + (updates - 1) + "_0"));
+    }
+
     @Test
     public void testConcurrent() throws Exception {
         String name = "concurrent";
@@ -419,6 +566,73 @@ public class OortStringMapTest extends AbstractOortObjectTest {
         Assert.assertEquals(map1, map2);
     }
 
+    @Test
+    public void testLostEntryResyncsOnlyDelta() throws Exception {
+        String name = "lost_entry_delta";
+        OortObject.Factory<ConcurrentMap<String, String>> factory = OortObjectFactories.forConcurrentMap();
+        final OortStringMap<String> oortMap1 = new OortStringMap<>(oort1, name, factory);
+        final AtomicInteger deltaEntries = new AtomicInteger();
+        final AtomicInteger deltaChunks = new AtomicInteger();
+        OortStringMap<String> oortMap2 = new OortStringMap<String>(oort2, name, factory) {
+            private boolean lose;
+
+            @Override
+            protected void onObject(Map<String, Object> data) {
+                String oortURL = (String)data.get(Info.OORT_URL_FIELD);
+                if (!getOort().getURL().equals(oortURL)) {
+                    if ("oort.map.entry".equals(data.get(Info.TYPE_FIELD))) {
+                        // Simulate that an entry update gets lost.
+                        if (lose) {
+                            lose = false;
+                            return;
+                        }
+                        Map<?, ?> entry = (Map<?, ?>)data.get(Info.OBJECT_FIELD);
+                        lose = "lost".equals(entry.get("oort.map.key"));
+                    } else if ("oort.container.delta".equals(data.get(Info.TYPE_FIELD))) {
+                        deltaChunks.incrementAndGet();
+                        deltaEntries.addAndGet(((Map<?, ?>)data.get(Info.OBJECT_FIELD)).size());
+                    }
+                }
+                super.onObject(data);
+            }
+        };
+        oortMap1.setChunkSize(4);
+        oortMap2.setDigestBuckets(64);
+        startOortObjects(oortMap1, oortMap2);
+
+        int size = 1024;
+        OortObject.Result.Deferred<String> result = new OortObject.Result.Deferred<>();
+        for (int i = 0; i < size; ++i) {
+            oortMap1.putAndShare(String.valueOf(i), "value" + i, i == size - 1 ? result : null);
+        }
+        result.get(5, TimeUnit.SECONDS);
+
+        // The entry update following this one is lost.
+        oortMap1.putAndShare("lost", "value", null);
+        oortMap1.putAndShare(String.valueOf(0), "modified", null);
+
+        // Update again, the maps should sync.
+        final CountDownLatch latch = new CountDownLatch(1);
+        oortMap2.addListener(new OortObject.Listener.Adapter<ConcurrentMap<String, String>>() {
+            @Override
+            public void onUpdated(OortObject.Info<ConcurrentMap<String, String>> oldInfo, OortObject.Info<ConcurrentMap<String, String>> newInfo) {
+                if (!newInfo.isLocal() && "modified".equals(newInfo.getObject().get("0"))) {
+                    latch.countDown();
+                }
+            }
+        });
+        oortMap1.putAndShare("last", "value", null);
+
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+        // Make sure that the maps are in sync.
+        Assert.assertEquals(oortMap1.getInfo(oort1.getURL()).getObject(), oortMap2.getInfo(oort1.getURL()).getObject());
+
+        // Only the entries in the buckets that differ must have been sent.
+        Assert.assertTrue(deltaChunks.get() > 1);
+        Assert.assertTrue(deltaEntries.get() < size / 8);
+    }
+
     @Test
     public void testNodeSyncWithLargeMap() throws Exception {
         // Reconfigure the Oorts.
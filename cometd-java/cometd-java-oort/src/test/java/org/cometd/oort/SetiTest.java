@@ -16,10 +16,14 @@
 package org.cometd.oort;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.TimeUnit;
@@ -30,6 +34,7 @@ import org.cometd.bayeux.Channel;
 import org.cometd.bayeux.Message;
 import org.cometd.bayeux.client.ClientSessionChannel;
 import org.cometd.bayeux.server.LocalSession;
+import org.cometd.bayeux.server.ServerChannel;
 import org.cometd.bayeux.server.ServerMessage;
 import org.cometd.bayeux.server.ServerSession;
 import org.cometd.bayeux.server.ServerTransport;
@@ -1118,6 +1123,497 @@ public class SetiTest extends OortTest {
         Assert.assertEquals(0, seti2.getUserIds().size());
     }
 
+    @Test
+    public void testSendMessageToUnknownUserIsNotBroadcast() throws Exception {
+        Server server1 = startServer(0);
+        Oort oort1 = startOort(server1);
+        Server server2 = startServer(0);
+        Oort oort2 = startOort(server2);
+
+        CountDownLatch latch = new CountDownLatch(1);
+        oort2.addCometListener(new CometJoinedListener(latch));
+        OortComet oortComet12 = oort1.observeComet(oort2.getURL());
+        Assert.assertTrue(oortComet12.waitFor(5000, BayeuxClient.State.CONNECTED));
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        OortComet oortComet21 = oort2.findComet(oort1.getURL());
+        Assert.assertTrue(oortComet21.waitFor(5000, BayeuxClient.State.CONNECTED));
+
+        Seti seti1 = startSeti(oort1);
+        Seti seti2 = startSeti(oort2);
+
+        // Wait for the Setis to exchange their associations.
+        long begin = System.nanoTime();
+        while (!seti1.getCandidateComets().isEmpty() || !seti2.getCandidateComets().isEmpty()) {
+            Assert.assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - begin) < 5);
+            Thread.sleep(10);
+        }
+
+        CountDownLatch messageLatch = new CountDownLatch(1);
+        ServerChannel.MessageListener listener = new ServerChannel.MessageListener() {
+            @Override
+            public boolean onMessage(ServerSession from, ServerChannel channel, ServerMessage.Mutable message) {
+                if ("unknown".equals(message.getDataAsMap().get("userId"))) {
+                    messageLatch.countDown();
+                }
+                return true;
+            }
+        };
+        oort2.getBayeuxServer().getChannel("/seti/all").addListener(listener);
+        oort2.getBayeuxServer().getChannel(seti2.generateSetiChannel(seti2.getId())).addListener(listener);
+
+        seti1.sendMessage("unknown", "/unknown", "data");
+
+        Assert.assertFalse(messageLatch.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testSendMessageToMultipleUsersOnSameComet() throws Exception {
+        Server server1 = startServer(0);
+        Oort oort1 = startOort(server1);
+        Server server2 = startServer(0);
+        Oort oort2 = startOort(server2);
+
+        CountDownLatch latch = new CountDownLatch(1);
+        oort2.addCometListener(new CometJoinedListener(latch));
+        OortComet oortComet12 = oort1.observeComet(oort2.getURL());
+        Assert.assertTrue(oortComet12.waitFor(5000, BayeuxClient.State.CONNECTED));
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        OortComet oortComet21 = oort2.findComet(oort1.getURL());
+        Assert.assertTrue(oortComet21.waitFor(5000, BayeuxClient.State.CONNECTED));
+
+        Seti seti1 = startSeti(oort1);
+        Seti seti2 = startSeti(oort2);
+
+        int users = 3;
+        CountDownLatch presenceLatch = new CountDownLatch(users);
+        seti1.addPresenceListener(new UserPresentListener(presenceLatch));
+
+        String channelName = "/multi";
+        CountDownLatch messageLatch = new CountDownLatch(users);
+        List<String> userIds = new ArrayList<>();
+        for (int i = 0; i < users; ++i) {
+            String userId = "user" + i;
+            userIds.add(userId);
+            LocalSession localSession = oort2.getBayeuxServer().newLocalSession(userId);
+            localSession.handshake();
+            localSession.getChannel(channelName).addListener((ClientSessionChannel.MessageListener)(c, m) -> messageLatch.countDown());
+            seti2.associate(userId, localSession.getServerSession());
+        }
+
+        Assert.assertTrue(presenceLatch.await(5, TimeUnit.SECONDS));
+
+        AtomicInteger setiMessages = new AtomicInteger();
+        oort2.getBayeuxServer().getChannel(seti2.generateSetiChannel(seti2.getId())).addListener(new ServerChannel.MessageListener() {
+            @Override
+            public boolean onMessage(ServerSession from, ServerChannel channel, ServerMessage.Mutable message) {
+                if (channelName.equals(message.getDataAsMap().get("channel"))) {
+                    setiMessages.incrementAndGet();
+                }
+                return true;
+            }
+        });
+
+        seti1.sendMessage(userIds, channelName, "data");
+
+        Assert.assertTrue(messageLatch.await(5, TimeUnit.SECONDS));
+        // Only one message must have been sent to the other comet.
+        Assert.assertEquals(1, setiMessages.get());
+    }
+
+    @Test
+    public void testPresenceBatching() throws Exception {
+        Server server1 = startServer(0);
+        Oort oort1 = startOort(server1);
+        Server server2 = startServer(0);
+        Oort oort2 = startOort(server2);
+
+        CountDownLatch latch = new CountDownLatch(1);
+        oort2.addCometListener(new CometJoinedListener(latch));
+        OortComet oortComet12 = oort1.observeComet(oort2.getURL());
+        Assert.assertTrue(oortComet12.waitFor(5000, BayeuxClient.State.CONNECTED));
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        OortComet oortComet21 = oort2.findComet(oort1.getURL());
+        Assert.assertTrue(oortComet21.waitFor(5000, BayeuxClient.State.CONNECTED));
+
+        Seti seti2 = startSeti(oort2);
+        seti2.setPresenceBatchWindow(500);
+        // Wait for the initial state of seti2 to be sent to seti1.
+        AbstractOortObjectTest.CometSubscriptionListener subscriptionListener = new AbstractOortObjectTest.CometSubscriptionListener("/seti/all", 1);
+        oort2.getBayeuxServer().addListener(subscriptionListener);
+        Seti seti1 = startSeti(oort1);
+        Assert.assertTrue(subscriptionListener.await(5, TimeUnit.SECONDS));
+
+        AtomicInteger presenceMessages = new AtomicInteger();
+        oort2.getBayeuxServer().getChannel("/seti/all").addListener(new ServerChannel.MessageListener() {
+            @Override
+            public boolean onMessage(ServerSession from, ServerChannel channel, ServerMessage.Mutable message) {
+                Map<String, Object> data = message.getDataAsMap();
+                if (oort2.getURL().equals(data.get("oortURL")) && Boolean.TRUE.equals(data.get("presence"))) {
+                    presenceMessages.incrementAndGet();
+                }
+                return true;
+            }
+        });
+
+        int users = 10;
+        CountDownLatch presenceLatch = new CountDownLatch(users);
+        seti1.addPresenceListener(new UserPresentListener(presenceLatch));
+
+        for (int i = 0; i < users; ++i) {
+            LocalSession localSession = oort2.getBayeuxServer().newLocalSession("user" + i);
+            localSession.handshake();
+            seti2.associate("user" + i, localSession.getServerSession());
+        }
+        // A user that comes and goes within the window is not broadcast as present.
+        LocalSession transientSession = oort2.getBayeuxServer().newLocalSession("transient");
+        transientSession.handshake();
+        seti2.associate("transient", transientSession.getServerSession());
+        seti2.disassociate("transient", transientSession.getServerSession());
+
+        Assert.assertTrue(presenceLatch.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < users; ++i) {
+            Assert.assertTrue(seti1.isPresent("user" + i));
+        }
+        Assert.assertFalse(seti1.isPresent("transient"));
+        // The users may also be known via the snapshot sent to seti1,
+        // so wait for the batched presence message to be broadcast.
+        long begin = System.nanoTime();
+        while (presenceMessages.get() == 0) {
+            Assert.assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - begin) < 5);
+            Thread.sleep(10);
+        }
+        Thread.sleep(1000);
+        Assert.assertEquals(1, presenceMessages.get());
+    }
+
+    @Test
+    public void testMessageBufferedForUnreachableComet() throws Exception {
+        Server server1 = startServer(0);
+        Oort oort1 = startOort(server1);
+        Server server2 = startServer(0);
+        Oort oort2 = startOort(server2);
+
+        CountDownLatch latch = new CountDownLatch(1);
+        oort2.addCometListener(new CometJoinedListener(latch));
+        OortComet oortComet12 = oort1.observeComet(oort2.getURL());
+        Assert.assertTrue(oortComet12.waitFor(5000, BayeuxClient.State.CONNECTED));
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        OortComet oortComet21 = oort2.findComet(oort1.getURL());
+        Assert.assertTrue(oortComet21.waitFor(5000, BayeuxClient.State.CONNECTED));
+
+        Seti seti1 = startSeti(oort1);
+        seti1.setMessageBufferSize(16);
+        Seti seti2 = startSeti(oort2);
+
+        CountDownLatch presenceLatch = new CountDownLatch(1);
+        seti1.addPresenceListener(new UserPresentListener(presenceLatch));
+        String userId = "user";
+        LocalSession session2 = oort2.getBayeuxServer().newLocalSession(userId);
+        session2.handshake();
+        seti2.associate(userId, session2.getServerSession());
+        Assert.assertTrue(presenceLatch.await(5, TimeUnit.SECONDS));
+
+        // Make node2 unreachable.
+        ((NetworkConnector)server2.getConnectors()[0]).stop();
+        long begin = System.nanoTime();
+        while (oortComet12.isConnected()) {
+            Assert.assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - begin) < 5);
+            Thread.sleep(10);
+        }
+
+        String channelName = "/buffer";
+        seti1.sendMessage(userId, channelName, "data");
+        Assert.assertEquals(1, seti1.getBufferedMessageCount());
+
+        // The user reconnects to node1 and receives the buffered message.
+        CountDownLatch messageLatch = new CountDownLatch(1);
+        AtomicInteger messages = new AtomicInteger();
+        LocalSession session1 = oort1.getBayeuxServer().newLocalSession(userId);
+        session1.handshake();
+        session1.getChannel(channelName).addListener((ClientSessionChannel.MessageListener)(c, m) -> {
+            messages.incrementAndGet();
+            messageLatch.countDown();
+        });
+        seti1.associate(userId, session1.getServerSession());
+        Assert.assertTrue(messageLatch.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(0, seti1.getBufferedMessageCount());
+
+        // The message reaches the user on node1, so it is
+        // not buffered for node2, where the user is still associated.
+        seti1.sendMessage(userId, channelName, "data");
+        Assert.assertEquals(2, messages.get());
+        Assert.assertEquals(0, seti1.getBufferedMessageCount());
+
+        // Buffered messages expire.
+        seti1.disassociate(userId, session1.getServerSession());
+        seti1.setMessageBufferTTL(500);
+        seti1.sendMessage(userId, channelName, "data");
+        Assert.assertEquals(1, seti1.getBufferedMessageCount());
+        begin = System.nanoTime();
+        while (seti1.getBufferedMessageCount() > 0) {
+            Assert.assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - begin) < 5);
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testMessageBufferedOnceForMultipleUnreachableComets() throws Exception {
+        Server server1 = startServer(0);
+        Oort oort1 = startOort(server1);
+        Server server2 = startServer(0);
+        Oort oort2 = startOort(server2);
+        Server server3 = startServer(0);
+        Oort oort3 = startOort(server3);
+
+        CountDownLatch latch = new CountDownLatch(4);
+        CometJoinedListener joinedListener = new CometJoinedListener(latch);
+        oort2.addCometListener(joinedListener);
+        oort3.addCometListener(joinedListener);
+        OortComet oortComet12 = oort1.observeComet(oort2.getURL());
+        Assert.assertTrue(oortComet12.waitFor(5000, BayeuxClient.State.CONNECTED));
+        OortComet oortComet13 = oort1.observeComet(oort3.getURL());
+        Assert.assertTrue(oortComet13.waitFor(5000, BayeuxClient.State.CONNECTED));
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+        Seti seti1 = startSeti(oort1);
+        seti1.setMessageBufferSize(16);
+        Seti seti2 = startSeti(oort2);
+        Seti seti3 = startSeti(oort3);
+
+        // The user is associated on both node2 and node3.
+        CountDownLatch presenceLatch = new CountDownLatch(2);
+        seti1.addPresenceListener(new UserPresentListener(presenceLatch));
+        String userId = "user";
+        LocalSession session2 = oort2.getBayeuxServer().newLocalSession(userId);
+        session2.handshake();
+        seti2.associate(userId, session2.getServerSession());
+        LocalSession session3 = oort3.getBayeuxServer().newLocalSession(userId);
+        session3.handshake();
+        seti3.associate(userId, session3.getServerSession());
+        Assert.assertTrue(presenceLatch.await(5, TimeUnit.SECONDS));
+
+        // Make node2 and node3 unreachable.
+        ((NetworkConnector)server2.getConnectors()[0]).stop();
+        ((NetworkConnector)server3.getConnectors()[0]).stop();
+        long begin = System.nanoTime();
+        while (oortComet12.isConnected() || oortComet13.isConnected()) {
+            Assert.assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - begin) < 5);
+            Thread.sleep(10);
+        }
+
+        String channelName = "/buffer";
+        seti1.sendMessage(userId, channelName, "data");
+        Assert.assertEquals(1, seti1.getBufferedMessageCount());
+
+        // The user reconnects to node1 and receives the buffered message once.
+        AtomicInteger messages = new AtomicInteger();
+        LocalSession session1 = oort1.getBayeuxServer().newLocalSession(userId);
+        session1.handshake();
+        session1.getChannel(channelName).addListener((ClientSessionChannel.MessageListener)(c, m) -> messages.incrementAndGet());
+        seti1.associate(userId, session1.getServerSession());
+        Assert.assertEquals(1, messages.get());
+        Assert.assertEquals(0, seti1.getBufferedMessageCount());
+    }
+
+    @Test
+    public void testSendMessageWithRelayFanOut() throws Exception {
+        int nodes = 3;
+        List<Oort> cloud = new ArrayList<>();
+        for (int i = 0; i < nodes; ++i) {
+            Server server = startServer(0);
+            Oort oort = startOort(server);
+            // Each node has at most 1 child, so the tree is a chain
+            // and the first and last nodes are not tree neighbors.
+            oort.setRelayFanOut(1);
+            cloud.add(oort);
+        }
+
+        CountDownLatch latch = new CountDownLatch(nodes * (nodes - 1));
+        CometJoinedListener listener = new CometJoinedListener(latch);
+        for (Oort oort : cloud) {
+            oort.addCometListener(listener);
+        }
+        Oort oort1 = cloud.get(0);
+        for (int i = 1; i < nodes; ++i) {
+            OortComet oortComet = oort1.observeComet(cloud.get(i).getURL());
+            Assert.assertTrue(oortComet.waitFor(5000, BayeuxClient.State.CONNECTED));
+        }
+        Assert.assertTrue(latch.await(15, TimeUnit.SECONDS));
+
+        List<Seti> cloudSetis = new ArrayList<>();
+        CountDownLatch presenceLatch = new CountDownLatch(nodes * nodes);
+        for (Oort oort : cloud) {
+            Seti seti = startSeti(oort);
+            seti.addPresenceListener(new UserPresentListener(presenceLatch));
+            cloudSetis.add(seti);
+        }
+
+        // Wait a while to be sure that the comets are subscribed.
+        Thread.sleep(1000);
+
+        String channelName = "/relay";
+        List<CountDownLatch> messageLatches = new ArrayList<>();
+        for (int i = 0; i < nodes; ++i) {
+            String userId = "user" + i;
+            LocalSession localSession = cloud.get(i).getBayeuxServer().newLocalSession(userId);
+            localSession.handshake();
+            CountDownLatch messageLatch = new CountDownLatch(nodes - 1);
+            localSession.getChannel(channelName).addListener((ClientSessionChannel.MessageListener)(c, m) -> messageLatch.countDown());
+            messageLatches.add(messageLatch);
+            cloudSetis.get(i).associate(userId, localSession.getServerSession());
+        }
+        Assert.assertTrue(presenceLatch.await(5, TimeUnit.SECONDS));
+
+        // Every user receives the messages sent from the other nodes,
+        // including the node that is not its tree neighbor.
+        for (int i = 0; i < nodes; ++i) {
+            for (int j = 0; j < nodes; ++j) {
+                if (i != j) {
+                    cloudSetis.get(i).sendMessage("user" + j, channelName, "data");
+                }
+            }
+        }
+        for (CountDownLatch messageLatch : messageLatches) {
+            Assert.assertTrue(messageLatch.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testSendMessageToMultipleUsersOnCometWithoutGroupSupport() throws Exception {
+        Server server1 = startServer(0);
+        Oort oort1 = startOort(server1);
+        Server server2 = startServer(0);
+        Oort oort2 = startOort(server2);
+
+        CountDownLatch latch = new CountDownLatch(1);
+        oort2.addCometListener(new CometJoinedListener(latch));
+        OortComet oortComet12 = oort1.observeComet(oort2.getURL());
+        Assert.assertTrue(oortComet12.waitFor(5000, BayeuxClient.State.CONNECTED));
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        OortComet oortComet21 = oort2.findComet(oort1.getURL());
+        Assert.assertTrue(oortComet21.waitFor(5000, BayeuxClient.State.CONNECTED));
+
+        // Simulate a remote comet that did not advertise support for grouped messages.
+        oortComet12.setFeatures(Collections.emptySet());
+
+        Seti seti1 = startSeti(oort1);
+        Seti seti2 = startSeti(oort2);
+
+        int users = 3;
+        CountDownLatch presenceLatch = new CountDownLatch(users);
+        seti1.addPresenceListener(new UserPresentListener(presenceLatch));
+
+        String channelName = "/multi";
+        CountDownLatch messageLatch = new CountDownLatch(users);
+        List<String> userIds = new ArrayList<>();
+        for (int i = 0; i < users; ++i) {
+            String userId = "user" + i;
+            userIds.add(userId);
+            LocalSession localSession = oort2.getBayeuxServer().newLocalSession(userId);
+            localSession.handshake();
+            localSession.getChannel(channelName).addListener((ClientSessionChannel.MessageListener)(c, m) -> messageLatch.countDown());
+            seti2.associate(userId, localSession.getServerSession());
+        }
+
+        Assert.assertTrue(presenceLatch.await(5, TimeUnit.SECONDS));
+
+        AtomicInteger setiMessages = new AtomicInteger();
+        AtomicInteger groupedMessages = new AtomicInteger();
+        oort2.getBayeuxServer().getChannel(seti2.generateSetiChannel(seti2.getId())).addListener(new ServerChannel.MessageListener() {
+            @Override
+            public boolean onMessage(ServerSession from, ServerChannel channel, ServerMessage.Mutable message) {
+                Map<String, Object> data = message.getDataAsMap();
+                if (channelName.equals(data.get("channel"))) {
+                    setiMessages.incrementAndGet();
+                    if (data.containsKey("userIds")) {
+                        groupedMessages.incrementAndGet();
+                    }
+                }
+                return true;
+            }
+        });
+
+        seti1.sendMessage(userIds, channelName, "data");
+
+        Assert.assertTrue(messageLatch.await(5, TimeUnit.SECONDS));
+        // One message per user must have been sent to the other comet.
+        Assert.assertEquals(users, setiMessages.get());
+        Assert.assertEquals(0, groupedMessages.get());
+    }
+
+    @Test
+    public void testAssociationContention() throws Exception {
+        Server server1 = startServer(0);
+        Oort oort1 = startOort(server1);
+
+        Seti seti1 = startSeti(oort1);
+
+        int threads = 32;
+        int iterations = 512;
+        int users = 64;
+        List<ServerSession> sessions = new ArrayList<>();
+        List<Set<Integer>> received = new ArrayList<>();
+        for (int i = 0; i < threads; ++i) {
+            LocalSession localSession = oort1.getBayeuxServer().newLocalSession("contention" + i);
+            localSession.handshake();
+            Set<Integer> messages = ConcurrentHashMap.newKeySet();
+            localSession.getChannel("/contention").addListener((ClientSessionChannel.MessageListener)(c, m) -> messages.add(((Number)m.getData()).intValue()));
+            sessions.add(localSession.getServerSession());
+            received.add(messages);
+        }
+
+        // Threads associate, send to and disassociate a small set of
+        // users, so that they contend on the same userIds.
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        CyclicBarrier barrier = new CyclicBarrier(threads + 1);
+        CountDownLatch doneLatch = new CountDownLatch(threads);
+        for (int i = 0; i < threads; ++i) {
+            int index = i;
+            ServerSession session = sessions.get(i);
+            new Thread(() -> {
+                try {
+                    barrier.await();
+                    for (int j = 0; j < iterations; ++j) {
+                        String userId = String.valueOf(j % users);
+                        if (!seti1.associate(userId, session)) {
+                            failures.add(new AssertionError("Could not associate " + userId + " to " + session));
+                        }
+                        seti1.sendMessage(userId, "/contention", index * iterations + j);
+                        if (!seti1.disassociate(userId, session)) {
+                            failures.add(new AssertionError("Could not disassociate " + userId + " from " + session));
+                        }
+                    }
+                } catch (Throwable x) {
+                    failures.add(x);
+                } finally {
+                    doneLatch.countDown();
+                }
+            }).start();
+        }
+
+        barrier.await();
+        Assert.assertTrue(doneLatch.await(30, TimeUnit.SECONDS));
+        Assert.assertTrue(failures.toString(), failures.isEmpty());
+
+        // Each session was associated when its thread sent a message
+        // to the userId, so it must have received all those messages.
+        for (int i = 0; i < threads; ++i) {
+            Set<Integer> messages = received.get(i);
+            for (int j = 0; j < iterations; ++j) {
+                int message = i * iterations + j;
+                long begin = System.nanoTime();
+                while (!messages.contains(message)) {
+                    Assert.assertTrue("Session " + i + " did not receive message " + j,
+                            TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - begin) < 5);
+                    Thread.sleep(10);
+                }
+            }
+        }
+
+        Assert.assertEquals(0, seti1.getAssociatedUserIds().size());
+        Assert.assertEquals(0, seti1.getUserIds().size());
+    }
+
     @Test
     public void testDisassociationRemovesListeners() throws Exception {
         Server server1 = startServer(0);
@@ -194,6 +194,8 @@ public abstract class AbstractWebSocketTransport extends HttpClientTransport imp
 
     protected abstract class Delegate {
         private final Map<String, WebSocketExchange> _exchanges = new ConcurrentHashMap<>();
+        private ScheduledFuture<?> _expirationTask;
+        private long _nextExpiration;
         private boolean _connected;
         private boolean _disconnected;
         private Map<String, Object> _advice;
@@ -314,25 +316,13 @@ public abstract class AbstractWebSocketTransport extends HttpClientTransport imp
                 _connected = true;
             }
 
-            // Schedule a task to expire if the maxNetworkDelay elapses
-            final long expiration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime()) + maxNetworkDelay;
-            ScheduledFuture<?> task = _scheduler.schedule(() -> {
-                long now = TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
-                long delay = now - expiration;
-                if (logger.isDebugEnabled()) {
-                    // TODO: make the max delay a parameter ?
-                    if (delay > 5000) {
-                        logger.debug("Message {} expired {} ms too late", message, delay);
-                    }
-                    logger.debug("Expiring message {}", message);
-                }
-                fail(new TimeoutException(), "Expired");
-            }, maxNetworkDelay, TimeUnit.MILLISECONDS);
+            long expiration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime()) + maxNetworkDelay;
+            scheduleExpiration(expiration);
 
             // Register the exchange
             // Message responses must have the same messageId as the requests
 
-            WebSocketExchange exchange = new WebSocketExchange(message, listener, task);
+            WebSocketExchange exchange = new WebSocketExchange(message, listener, expiration);
             if (logger.isDebugEnabled()) {
                 logger.debug("Registering {}", exchange);
             }
@@ -343,6 +333,52 @@ public abstract class AbstractWebSocketTransport extends HttpClientTransport imp
             }
         }
 
+        private void scheduleExpiration(long expiration) {
+            // A single task expires all the exchanges, scheduled at the
+            // earliest expiration; most messages expire after the task,
+            // so that registering them does not need to schedule anything.
+            if (_expirationTask != null) {
+                if (expiration >= _nextExpiration) {
+                    return;
+                }
+                _expirationTask.cancel(false);
+            }
+            long delay = expiration - TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+            _nextExpiration = expiration;
+            _expirationTask = _scheduler.schedule(this::expireMessages, Math.max(0, delay), TimeUnit.MILLISECONDS);
+        }
+
+        private void expireMessages() {
+            long now = TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+            WebSocketExchange expired = null;
+            synchronized (this) {
+                _expirationTask = null;
+                long next = Long.MAX_VALUE;
+                for (WebSocketExchange exchange : _exchanges.values()) {
+                    if (exchange.expiration <= now) {
+                        expired = exchange;
+                        break;
+                    }
+                    next = Math.min(next, exchange.expiration);
+                }
+                if (expired == null && next != Long.MAX_VALUE) {
+                    scheduleExpiration(next);
+                }
+            }
+
+            if (expired != null) {
+                if (logger.isDebugEnabled()) {
+                    // TODO: make the max delay a parameter ?
+                    long delay = now - expired.expiration;
+                    if (delay > 5000) {
+                        logger.debug("Message {} expired {} ms too late", expired.message, delay);
+                    }
+                    logger.debug("Expiring message {}", expired.message);
+                }
+                fail(new TimeoutException(), "Expired");
+            }
+        }
+
         private WebSocketExchange deregisterMessage(Message message) {
             if (Channel.META_CONNECT.equals(message.getChannel())) {
                 _connected = false;
@@ -359,10 +395,6 @@ public abstract class AbstractWebSocketTransport extends HttpClientTransport imp
                 logger.debug("Deregistering {} for message {}", exchange, message);
             }
 
-            if (exchange != null) {
-                exchange.task.cancel(false);
-            }
-
             return exchange;
         }
 
@@ -374,6 +406,12 @@ public abstract class AbstractWebSocketTransport extends HttpClientTransport imp
         }
 
         protected void failMessages(Throwable cause) {
+            synchronized (this) {
+                if (_expirationTask != null) {
+                    _expirationTask.cancel(false);
+                    _expirationTask = null;
+                }
+            }
             List<Message.Mutable> messages = new ArrayList<>(1);
             for (WebSocketExchange exchange : new ArrayList<>(_exchanges.values())) {
                 Mutable message = exchange.message;
@@ -425,12 +463,12 @@ public abstract class AbstractWebSocketTransport extends HttpClientTransport imp
     private static class WebSocketExchange {
         private final Mutable message;
         private final TransportListener listener;
-        private final ScheduledFuture<?> task;
+        private final long expiration;
 
-        public WebSocketExchange(Mutable message, TransportListener listener, ScheduledFuture<?> task) {
+        public WebSocketExchange(Mutable message, TransportListener listener, long expiration) {
             this.message = message;
             this.listener = listener;
-            this.task = task;
+            this.expiration = expiration;
         }
 
         @Override
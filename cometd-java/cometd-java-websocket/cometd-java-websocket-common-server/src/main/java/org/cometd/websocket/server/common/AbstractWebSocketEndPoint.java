@@ -23,7 +23,9 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeoutException;
 
 import org.cometd.bayeux.Channel;
@@ -33,6 +35,7 @@ import org.cometd.bayeux.server.BayeuxContext;
 import org.cometd.bayeux.server.ServerMessage;
 import org.cometd.bayeux.server.ServerSession;
 import org.cometd.common.AsyncFoldLeft;
+import org.cometd.common.MultiplexedFrame;
 import org.cometd.server.AbstractServerTransport;
 import org.cometd.server.ServerMessageImpl;
 import org.cometd.server.ServerSessionImpl;
@@ -46,9 +49,11 @@ import org.slf4j.LoggerFactory;
 public abstract class AbstractWebSocketEndPoint {
     private final Logger _logger = LoggerFactory.getLogger(getClass());
     private final Flusher flusher = new Flusher();
+    private final Map<String, AbstractWebSocketEndPoint> _multiplexed = new ConcurrentHashMap<>();
+    private final MultiplexedFlusher _multiplexedFlusher = new MultiplexedFlusher();
     private final AbstractWebSocketTransport _transport;
     private final BayeuxContext _bayeuxContext;
-    private ServerSessionImpl _session;
+    private volatile ServerSessionImpl _session;
 
     protected AbstractWebSocketEndPoint(AbstractWebSocketTransport transport, BayeuxContext context) {
         this._transport = transport;
@@ -60,6 +65,11 @@ public abstract class AbstractWebSocketEndPoint {
     public abstract void close(int code, String reason);
 
     public void onMessage(String data, Promise<Void> p) {
+        if (MultiplexedFrame.isMultiplexed(data)) {
+            onMultiplexedMessage(data, p);
+            return;
+        }
+
         Promise<Void> promise = Promise.from(x -> { System.err.println(">>>>>>> success on message " + x); p.succeed(x); }, failure -> {
 			System.err.println(">>>>>>> failure on message " + failure);
             if (_logger.isDebugEnabled()) {
@@ -89,7 +99,67 @@ public abstract class AbstractWebSocketEndPoint {
         }
     }
 
+    private void onMultiplexedMessage(String data, Promise<Void> promise) {
+        if (!_transport.isMultiplexed()) {
+            close(1011, "Multiplexed frames not supported");
+            _logger.warn("Multiplexed frame received, but multiplexing is disabled: {}", data);
+            promise.succeed(null);
+            return;
+        }
+
+        MultiplexedFrame frame;
+        try {
+            frame = MultiplexedFrame.parse(data);
+        } catch (ParseException x) {
+            close(1011, x.toString());
+            _logger.warn("Error parsing multiplexed frame: " + data, x);
+            promise.succeed(null);
+            return;
+        }
+
+        String key = frame.getSession();
+        if (frame.isClose()) {
+            AbstractWebSocketEndPoint endPoint = _multiplexed.remove(key);
+            if (endPoint != null) {
+                endPoint.closeSession(frame.getCloseCode(), "Closed");
+            }
+            promise.succeed(null);
+        } else {
+            AbstractWebSocketEndPoint endPoint = _multiplexed.get(key);
+            if (endPoint == null) {
+                if (_multiplexed.size() >= _transport.getMaxMultiplexedSessions()) {
+                    if (_logger.isDebugEnabled()) {
+                        _logger.debug("Rejecting multiplexed session {}, max {} reached", key, _transport.getMaxMultiplexedSessions());
+                    }
+                    _multiplexedFlusher.write(null, MultiplexedFrame.close(key, 1008), Callback.NOOP);
+                    promise.succeed(null);
+                    return;
+                }
+                endPoint = _multiplexed.computeIfAbsent(key, k -> new MultiplexedEndPoint(k, _transport, _bayeuxContext));
+            }
+            AbstractWebSocketEndPoint child = endPoint;
+            // A failure only closes the logical session, not the
+            // connection shared with the other logical sessions.
+            endPoint.onMessage(frame.getContent(), Promise.complete((r, x) -> {
+                // Forget the logical sessions that did not handshake.
+                if (child._session == null) {
+                    _multiplexed.remove(key, child);
+                }
+                promise.succeed(null);
+            }));
+        }
+    }
+
     public void onClose(int code, String reason) {
+        closeSession(code, reason);
+        for (AbstractWebSocketEndPoint endPoint : _multiplexed.values()) {
+            endPoint.closeSession(code, reason);
+        }
+        _multiplexed.clear();
+        _transport.onClose(code, reason);
+    }
+
+    void closeSession(int code, String reason) {
         final ServerSessionImpl session = _session;
         if (_logger.isDebugEnabled()) {
             _logger.debug("Closing {}/{} - {}", code, reason, session);
@@ -102,7 +172,6 @@ public abstract class AbstractWebSocketEndPoint {
             session.setScheduler(null);
             _transport.scheduleExpiration(session);
         }
-        _transport.onClose(code, reason);
     }
 
     public void onError(Throwable failure) {
@@ -141,6 +210,9 @@ public abstract class AbstractWebSocketEndPoint {
 						System.err.println(">>>>>>> processMessages 2");
                         session = _session = (ServerSessionImpl)_transport.getBayeux().getSession(m.getClientId());
 						System.err.println(">>>>>>> processMessages 3");
+                        if (session != null) {
+                            onSessionBound(session);
+                        }
                     }
                 } else if (_transport.getBayeux().getSession(session.getId()) == null) {
 					System.err.println(">>>>>>> processMessages 4");
@@ -212,6 +284,7 @@ public abstract class AbstractWebSocketEndPoint {
                     context.replies.add(r);
                     if (r.isSuccessful()) {
                         _session = session;
+                        onSessionBound(session);
                     }
                 }
                 context.sendQueue = _transport.allowMessageDeliveryDuringHandshake(session) && r != null && r.isSuccessful();
@@ -221,6 +294,9 @@ public abstract class AbstractWebSocketEndPoint {
         }, promise::fail));
     }
 
+    void onSessionBound(ServerSessionImpl session) {
+    }
+
     private void processMetaConnect(Context context, ServerMessage.Mutable message, Promise<Boolean> promise) {
         // Remember the connected status before handling the message.
         ServerSessionImpl session = context.session;
@@ -595,6 +671,130 @@ public abstract class AbstractWebSocketEndPoint {
         }
     }
 
+    /**
+     * <p>The endpoint of a logical session multiplexed over the WebSocket
+     * connection of its parent endpoint.</p>
+     *
+     * @see MultiplexedFrame
+     */
+    private class MultiplexedEndPoint extends AbstractWebSocketEndPoint {
+        private final String _key;
+        private volatile ServerSession _bound;
+
+        private MultiplexedEndPoint(String key, AbstractWebSocketTransport transport, BayeuxContext context) {
+            super(transport, context);
+            _key = key;
+        }
+
+        @Override
+        protected void send(ServerSession session, String data, Callback callback) {
+            AbstractWebSocketEndPoint.this._multiplexedFlusher.write(session, MultiplexedFrame.messages(_key, data), callback);
+        }
+
+        @Override
+        public void close(int code, String reason) {
+            // Only close the logical session, not the WebSocket connection.
+            if (AbstractWebSocketEndPoint.this._multiplexed.remove(_key, this)) {
+                if (_logger.isDebugEnabled()) {
+                    _logger.debug("Closing multiplexed session {} {}/{}", _key, code, reason);
+                }
+                AbstractWebSocketEndPoint.this._multiplexedFlusher.write(null, MultiplexedFrame.close(_key, code), Callback.NOOP);
+                closeSession(code, reason);
+            }
+        }
+
+        @Override
+        void onSessionBound(ServerSessionImpl session) {
+            // Forget this logical session when its ServerSession is
+            // removed, for example when it expires, unless it has
+            // already been bound to a different ServerSession.
+            _bound = session;
+            session.addListener((ServerSession.RemoveListener)(s, timeout) -> {
+                if (_bound == s && AbstractWebSocketEndPoint.this._multiplexed.remove(_key, this)) {
+                    if (_logger.isDebugEnabled()) {
+                        _logger.debug("Removed multiplexed session {} of {}", _key, s);
+                    }
+                }
+            });
+        }
+
+        @Override
+        protected void writeComplete(Context context, List<ServerMessage> messages) {
+            AbstractWebSocketEndPoint.this.writeComplete(context, messages);
+        }
+    }
+
+    /**
+     * <p>Serializes the writes of the multiplexed logical sessions
+     * over the WebSocket connection of this endpoint.</p>
+     */
+    private class MultiplexedFlusher extends IteratingCallback {
+        private final Queue<MultiplexedWrite> _writes = new ArrayDeque<>();
+        private MultiplexedWrite _write;
+        private Throwable _failure;
+
+        private void write(ServerSession session, String data, Callback callback) {
+            Throwable failure;
+            synchronized (this) {
+                failure = _failure;
+                if (failure == null) {
+                    _writes.offer(new MultiplexedWrite(session, data, callback));
+                }
+            }
+            if (failure == null) {
+                iterate();
+            } else {
+                callback.failed(failure);
+            }
+        }
+
+        @Override
+        protected Action process() {
+            MultiplexedWrite write = _write;
+            if (write != null) {
+                _write = null;
+                write._callback.succeeded();
+            }
+            synchronized (this) {
+                write = _write = _writes.poll();
+            }
+            if (write == null) {
+                return Action.IDLE;
+            }
+            AbstractWebSocketEndPoint.this.send(write._session, write._data, this);
+            return Action.SCHEDULED;
+        }
+
+        @Override
+        protected void onCompleteFailure(Throwable x) {
+            List<MultiplexedWrite> writes;
+            synchronized (this) {
+                _failure = x;
+                writes = new ArrayList<>(_writes);
+                _writes.clear();
+                if (_write != null) {
+                    writes.add(0, _write);
+                    _write = null;
+                }
+            }
+            for (MultiplexedWrite write : writes) {
+                write._callback.failed(x);
+            }
+        }
+    }
+
+    private static class MultiplexedWrite {
+        private final ServerSession _session;
+        private final String _data;
+        private final Callback _callback;
+
+        private MultiplexedWrite(ServerSession session, String data, Callback callback) {
+            _session = session;
+            _data = data;
+            _callback = callback;
+        }
+    }
+
     private enum State {
         IDLE, HANDSHAKE, MESSAGES, REPLIES, COMPLETE
     }
@@ -32,10 +32,14 @@ public abstract class AbstractWebSocketTransport extends AbstractServerTransport
     public static final String COMETD_URL_MAPPING_OPTION = "cometdURLMapping";
     public static final String REQUIRE_HANDSHAKE_PER_CONNECTION_OPTION = "requireHandshakePerConnection";
     public static final String ENABLE_EXTENSION_PREFIX_OPTION = "enableExtension.";
+    public static final String MULTIPLEXED_OPTION = "multiplexed";
+    public static final String MAX_MULTIPLEXED_SESSIONS_OPTION = "maxMultiplexedSessions";
 
     private String _protocol;
     private int _messagesPerFrame;
     private boolean _requireHandshakePerConnection;
+    private boolean _multiplexed;
+    private int _maxMultiplexedSessions;
 
     protected AbstractWebSocketTransport(BayeuxServerImpl bayeux) {
         super(bayeux, NAME);
@@ -48,6 +52,8 @@ public abstract class AbstractWebSocketTransport extends AbstractServerTransport
         _protocol = getOption(PROTOCOL_OPTION, null);
         _messagesPerFrame = getOption(MESSAGES_PER_FRAME_OPTION, 1);
         _requireHandshakePerConnection = getOption(REQUIRE_HANDSHAKE_PER_CONNECTION_OPTION, false);
+        _multiplexed = getOption(MULTIPLEXED_OPTION, false);
+        _maxMultiplexedSessions = getOption(MAX_MULTIPLEXED_SESSIONS_OPTION, 64);
     }
 
     public String getProtocol() {
@@ -62,6 +68,14 @@ public abstract class AbstractWebSocketTransport extends AbstractServerTransport
         return _requireHandshakePerConnection;
     }
 
+    public boolean isMultiplexed() {
+        return _multiplexed;
+    }
+
+    public int getMaxMultiplexedSessions() {
+        return _maxMultiplexedSessions;
+    }
+
     protected List<String> normalizeURLMapping(String urlMapping) {
         String[] mappings = urlMapping.split(",");
         List<String> result = new ArrayList<>(mappings.length);
@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) 2008-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cometd.websocket.client;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.cometd.client.transport.ClientTransport;
+import org.cometd.common.MultiplexedFrame;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WebSocketListener;
+import org.eclipse.jetty.websocket.client.ClientUpgradeRequest;
+import org.eclipse.jetty.websocket.client.WebSocketClient;
+import org.eclipse.jetty.websocket.client.io.UpgradeListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A WebSocket transport that multiplexes the Bayeux sessions of many
+ * {@link org.cometd.client.BayeuxClient}s over a single WebSocket connection
+ * per server URL.</p>
+ * <p>The transports that share the same connection must be created by the
+ * same {@link Factory}, for example:</p>
+ * <pre>
+ * MultiplexedJettyWebSocketTransport.Factory factory = new MultiplexedJettyWebSocketTransport.Factory(webSocketClient);
+ * BayeuxClient client1 = new BayeuxClient(url, factory.newClientTransport(url, options));
+ * BayeuxClient client2 = new BayeuxClient(url, factory.newClientTransport(url, options));
+ * </pre>
+ * <p>The messages of each session are wrapped in {@link MultiplexedFrame}s,
+ * so the server must support multiplexed frames and have them enabled
+ * via the {@code ws.multiplexed} option.</p>
+ * <p>Only the transport that opens the shared connection performs the
+ * WebSocket upgrade: its upgrade request is sent to the server, and it is
+ * the only {@link UpgradeListener} notified of the upgrade response, so
+ * only its cookie store receives the cookies of the response.
+ * The other transports joining the connection must produce an upgrade
+ * request with the same sub-protocols, headers and cookies, otherwise
+ * they fail to connect.</p>
+ */
+public class MultiplexedJettyWebSocketTransport extends JettyWebSocketTransport {
+    private static final AtomicLong keys = new AtomicLong();
+
+    private final Factory _factory;
+    private final String _key = String.valueOf(keys.incrementAndGet());
+
+    public MultiplexedJettyWebSocketTransport(String url, Map<String, Object> options, ScheduledExecutorService scheduler, WebSocketClient webSocketClient, Factory factory) {
+        super(url, options, scheduler, webSocketClient);
+        _factory = factory;
+    }
+
+    @Override
+    protected Delegate connect(WebSocketClient client, ClientUpgradeRequest request, String uri) throws IOException, InterruptedException {
+        Connection connection = _factory.connect(client, request, uri, this);
+        MultiplexedDelegate delegate = new MultiplexedDelegate(connection);
+        connection.add(_key, delegate);
+        return delegate;
+    }
+
+    protected class MultiplexedDelegate extends Delegate {
+        private final Connection _connection;
+        private boolean _open = true;
+
+        private MultiplexedDelegate(Connection connection) {
+            _connection = connection;
+        }
+
+        @Override
+        protected void send(String content) {
+            try {
+                _connection.send(MultiplexedFrame.messages(_key, content));
+            } catch (Throwable x) {
+                fail(x, "Exception");
+            }
+        }
+
+        @Override
+        protected boolean isOpen() {
+            synchronized (this) {
+                return _open && _connection.isOpen();
+            }
+        }
+
+        @Override
+        protected void close() {
+            synchronized (this) {
+                _open = false;
+            }
+            _connection.remove(_key, this);
+        }
+
+        @Override
+        protected void shutdown(String reason) {
+            boolean open;
+            synchronized (this) {
+                open = _open;
+            }
+            close();
+            if (open && _connection.isOpen()) {
+                // Only close this logical session, not the shared connection.
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Closing multiplexed session {} on {}", _key, _connection);
+                }
+                try {
+                    _connection.send(MultiplexedFrame.close(_key, 1000));
+                } catch (Throwable x) {
+                    logger.trace("", x);
+                }
+            }
+        }
+
+        private void receive(String data) {
+            onData(data);
+        }
+
+        private void closed(int code, String reason) {
+            onClose(code, reason);
+        }
+
+        private void failed(Throwable failure) {
+            failMessages(failure);
+        }
+    }
+
+    /**
+     * <p>A physical WebSocket connection shared by many logical sessions.</p>
+     */
+    private static class Connection implements WebSocketListener {
+        private static final Logger logger = LoggerFactory.getLogger(Connection.class);
+
+        private final Map<String, MultiplexedDelegate> _delegates = new ConcurrentHashMap<>();
+        private final Object _connectLock = new Object();
+        private final Factory _factory;
+        private final String _uri;
+        private Session _session;
+        private boolean _closed;
+        private List<String> _upgrade;
+
+        private Connection(Factory factory, String uri) {
+            _factory = factory;
+            _uri = uri;
+        }
+
+        private void connect(WebSocketClient client, ClientUpgradeRequest request, UpgradeListener listener) throws IOException, InterruptedException {
+            // Cannot connect holding the lock on this
+            // instance, as it is needed by onWebSocketConnect().
+            synchronized (_connectLock) {
+                List<String> upgrade = upgrade(request);
+                synchronized (this) {
+                    if (_session != null) {
+                        if (!upgrade.equals(_upgrade)) {
+                            throw new IOException("Multiplexed connection to " + _uri + " already opened with a different upgrade request");
+                        }
+                        return;
+                    }
+                    if (_closed) {
+                        throw new IOException("Closed");
+                    }
+                    _upgrade = upgrade;
+                }
+                try {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("Opening multiplexed websocket session to {}", _uri);
+                    }
+                    client.connect(this, new URI(_uri), request, listener).get();
+                } catch (ExecutionException x) {
+                    Throwable cause = x.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException)cause;
+                    }
+                    if (cause instanceof IOException) {
+                        throw (IOException)cause;
+                    }
+                    throw new IOException(cause);
+                } catch (URISyntaxException x) {
+                    throw new IOException(x);
+                }
+            }
+        }
+
+        private static List<String> upgrade(ClientUpgradeRequest request) {
+            List<String> result = new ArrayList<>();
+            result.add(String.valueOf(request.getSubProtocols()));
+            result.add(String.valueOf(new TreeMap<>(request.getHeaders())));
+            result.add(String.valueOf(request.getCookies()));
+            return result;
+        }
+
+        private void add(String key, MultiplexedDelegate delegate) {
+            _delegates.put(key, delegate);
+        }
+
+        private void remove(String key, MultiplexedDelegate delegate) {
+            _delegates.remove(key, delegate);
+        }
+
+        private boolean isOpen() {
+            synchronized (this) {
+                return _session != null;
+            }
+        }
+
+        private void send(String frame) throws Exception {
+            Session session;
+            synchronized (this) {
+                session = _session;
+            }
+            if (session == null) {
+                throw new IOException("Unconnected");
+            }
+            // Blocking async sends for the client to allow concurrent sends.
+            session.getRemote().sendStringByFuture(frame).get();
+        }
+
+        @Override
+        public void onWebSocketConnect(Session session) {
+            synchronized (this) {
+                _session = session;
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("Opened multiplexed websocket session {}", session);
+            }
+        }
+
+        @Override
+        public void onWebSocketText(String data) {
+            try {
+                MultiplexedFrame frame = MultiplexedFrame.parse(data);
+                String key = frame.getSession();
+                if (frame.isClose()) {
+                    MultiplexedDelegate delegate = _delegates.remove(key);
+                    if (delegate != null) {
+                        delegate.closed(frame.getCloseCode(), "Closed");
+                    }
+                } else {
+                    MultiplexedDelegate delegate = _delegates.get(key);
+                    if (delegate != null) {
+                        delegate.receive(frame.getContent());
+                    } else if (logger.isDebugEnabled()) {
+                        logger.debug("Discarded multiplexed frame {}", frame);
+                    }
+                }
+            } catch (ParseException x) {
+                logger.info("Could not parse multiplexed frame " + data, x);
+            }
+        }
+
+        @Override
+        public void onWebSocketBinary(byte[] payload, int offset, int len) {
+        }
+
+        @Override
+        public void onWebSocketClose(int code, String reason) {
+            synchronized (this) {
+                _session = null;
+                _closed = true;
+            }
+            _factory.remove(_uri, this);
+            List<MultiplexedDelegate> delegates = new ArrayList<>(_delegates.values());
+            _delegates.clear();
+            for (MultiplexedDelegate delegate : delegates) {
+                delegate.closed(code, reason);
+            }
+        }
+
+        @Override
+        public void onWebSocketError(Throwable failure) {
+            for (MultiplexedDelegate delegate : _delegates.values()) {
+                delegate.failed(failure);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s@%x[%s,sessions=%d]", getClass().getSimpleName(), hashCode(), _uri, _delegates.size());
+        }
+    }
+
+    public static class Factory extends ContainerLifeCycle implements ClientTransport.Factory {
+        private final Map<String, Connection> connections = new ConcurrentHashMap<>();
+        private final WebSocketClient wsClient;
+
+        public Factory(WebSocketClient wsClient) {
+            this.wsClient = wsClient;
+            addBean(wsClient);
+        }
+
+        @Override
+        public ClientTransport newClientTransport(String url, Map<String, Object> options) {
+            ScheduledExecutorService scheduler = (ScheduledExecutorService)options.get(ClientTransport.SCHEDULER_OPTION);
+            return new MultiplexedJettyWebSocketTransport(url, options, scheduler, wsClient, this);
+        }
+
+        private Connection connect(WebSocketClient client, ClientUpgradeRequest request, String uri, UpgradeListener listener) throws IOException, InterruptedException {
+            Connection connection = connections.computeIfAbsent(uri, u -> new Connection(this, u));
+            connection.connect(client, request, listener);
+            return connection;
+        }
+
+        private void remove(String uri, Connection connection) {
+            connections.remove(uri, connection);
+        }
+    }
+}
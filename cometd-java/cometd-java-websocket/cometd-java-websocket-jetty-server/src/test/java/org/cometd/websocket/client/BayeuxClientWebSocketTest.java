@@ -289,6 +289,57 @@ public class BayeuxClientWebSocketTest extends ClientServerWebSocketTest {
         disconnectBayeuxClient(client);
     }
 
+    @Test
+    public void testPublishExpiresWhileMetaConnectIsPending() throws Exception {
+        final long maxNetworkDelay = 1000;
+
+        String slowChannelName = "/slow";
+        bayeux.createChannelIfAbsent(slowChannelName).getReference().addListener(new ServerChannel.MessageListener() {
+            @Override
+            public boolean onMessage(ServerSession from, ServerChannel channel, ServerMessage.Mutable message) {
+                try {
+                    Thread.sleep(maxNetworkDelay * 2);
+                    return true;
+                } catch (InterruptedException x) {
+                    return false;
+                }
+            }
+        });
+
+        Map<String, Object> options = new HashMap<>();
+        options.put(ClientTransport.MAX_NETWORK_DELAY_OPTION, maxNetworkDelay);
+        final BayeuxClient client = new BayeuxClient(cometdURL, newWebSocketTransport(options));
+        client.handshake();
+        Assert.assertTrue(client.waitFor(5000, BayeuxClient.State.CONNECTED));
+
+        // Messages that are replied before they expire are not failed,
+        // while the /meta/connect, that expires later, is pending.
+        int count = 10;
+        final CountDownLatch successLatch = new CountDownLatch(count);
+        for (int i = 0; i < count; ++i) {
+            client.getChannel("/fast").publish(i, message -> {
+                if (message.isSuccessful()) {
+                    successLatch.countDown();
+                }
+            });
+        }
+        Assert.assertTrue(successLatch.await(5, TimeUnit.SECONDS));
+
+        final CountDownLatch failureLatch = new CountDownLatch(1);
+        long begin = System.nanoTime();
+        client.getChannel(slowChannelName).publish("data", message -> {
+            if (!message.isSuccessful()) {
+                failureLatch.countDown();
+            }
+        });
+
+        Assert.assertTrue(failureLatch.await(maxNetworkDelay * 3, TimeUnit.MILLISECONDS));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+        Assert.assertTrue(String.valueOf(elapsed), elapsed >= maxNetworkDelay);
+
+        disconnectBayeuxClient(client);
+    }
+
     @Test
     public void testMetaConnectNotRespondedOnServerSidePublish() throws Exception {
         final BayeuxClient client = newBayeuxClient();
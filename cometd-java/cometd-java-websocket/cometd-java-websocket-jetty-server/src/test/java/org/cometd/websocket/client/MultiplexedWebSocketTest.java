@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2008-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cometd.websocket.client;
+
+import java.net.URI;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.cometd.bayeux.Promise;
+import org.cometd.bayeux.client.ClientSessionChannel;
+import org.cometd.bayeux.server.BayeuxServer;
+import org.cometd.bayeux.server.ServerMessage;
+import org.cometd.bayeux.server.ServerSession;
+import org.cometd.client.BayeuxClient;
+import org.cometd.common.MultiplexedFrame;
+import org.cometd.server.DefaultSecurityPolicy;
+import org.cometd.websocket.ClientServerWebSocketTest;
+import org.cometd.websocket.client.common.AbstractWebSocketTransport;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WebSocketAdapter;
+import org.eclipse.jetty.websocket.client.WebSocketClient;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MultiplexedWebSocketTest extends ClientServerWebSocketTest {
+    private MultiplexedJettyWebSocketTransport.Factory factory;
+
+    public MultiplexedWebSocketTest(String implementation) {
+        super(implementation);
+    }
+
+    private void start(Map<String, String> initParams) throws Exception {
+        Map<String, String> params = new HashMap<>();
+        params.put("ws.multiplexed", "true");
+        if (initParams != null) {
+            params.putAll(initParams);
+        }
+        prepareServer(0, params, true);
+        prepareClient();
+        // The multiplexed transport is only available for the Jetty client.
+        factory = new MultiplexedJettyWebSocketTransport.Factory(new WebSocketClient());
+        httpClient.addBean(factory);
+        startServer();
+        startClient();
+    }
+
+    private BayeuxClient newMultiplexedBayeuxClient() {
+        return new BayeuxClient(cometdURL, factory.newClientTransport(cometdURL, new HashMap<>()));
+    }
+
+    @Test
+    public void testManySessionsOverOneConnection() throws Exception {
+        start(null);
+
+        int count = 3;
+        List<BayeuxClient> clients = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            BayeuxClient client = newMultiplexedBayeuxClient();
+            clients.add(client);
+            client.handshake();
+        }
+        for (BayeuxClient client : clients) {
+            Assert.assertTrue(client.waitFor(5000, BayeuxClient.State.CONNECTED));
+            Assert.assertEquals("websocket", client.getTransport().getName());
+        }
+
+        Assert.assertEquals(count, new HashSet<>(bayeux.getSessions()).size());
+        Assert.assertEquals(1, connector.getConnectedEndPoints().size());
+
+        // Messages are delivered only to the session that subscribed.
+        String channelName = "/multiplexed";
+        BayeuxClient subscriber = clients.get(0);
+        CountDownLatch subscribeLatch = new CountDownLatch(1);
+        CountDownLatch messageLatch = new CountDownLatch(1);
+        subscriber.getChannel(channelName).subscribe((channel, message) -> messageLatch.countDown(), message -> subscribeLatch.countDown());
+        Assert.assertTrue(subscribeLatch.await(5, TimeUnit.SECONDS));
+        CountDownLatch otherLatch = new CountDownLatch(1);
+        clients.get(2).getChannel(channelName).addListener((ClientSessionChannel.MessageListener)(channel, message) -> otherLatch.countDown());
+
+        CountDownLatch publishLatch = new CountDownLatch(1);
+        clients.get(1).getChannel(channelName).publish("data", message -> publishLatch.countDown());
+        Assert.assertTrue(publishLatch.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(messageLatch.await(5, TimeUnit.SECONDS));
+        Assert.assertFalse(otherLatch.await(1, TimeUnit.SECONDS));
+
+        // Disconnecting one session does not affect the others.
+        Assert.assertTrue(clients.get(1).disconnect(5000));
+        Map<String, Object> data = new HashMap<>();
+        CountDownLatch replyLatch = new CountDownLatch(1);
+        clients.get(2).getChannel(channelName).publish(data, message -> {
+            if (message.isSuccessful()) {
+                replyLatch.countDown();
+            }
+        });
+        Assert.assertTrue(replyLatch.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, connector.getConnectedEndPoints().size());
+
+        for (BayeuxClient client : clients) {
+            disconnectBayeuxClient(client);
+        }
+    }
+
+    @Test
+    public void testDifferentUpgradeRequestIsRejected() throws Exception {
+        start(null);
+
+        BayeuxClient client1 = newMultiplexedBayeuxClient();
+        client1.handshake();
+        Assert.assertTrue(client1.waitFor(5000, BayeuxClient.State.CONNECTED));
+
+        // A different sub-protocol cannot share the connection.
+        Map<String, Object> options = new HashMap<>();
+        options.put(AbstractWebSocketTransport.PROTOCOL_OPTION, "bayeux-multiplexed");
+        BayeuxClient client2 = new BayeuxClient(cometdURL, factory.newClientTransport(cometdURL, options));
+        client2.handshake();
+        Assert.assertFalse(client2.waitFor(1000, BayeuxClient.State.CONNECTED));
+
+        Assert.assertEquals(1, bayeux.getSessions().size());
+        Assert.assertEquals(1, connector.getConnectedEndPoints().size());
+
+        disconnectBayeuxClient(client2);
+        disconnectBayeuxClient(client1);
+    }
+
+    @Test
+    public void testMultiplexingDisabled() throws Exception {
+        Map<String, String> params = new HashMap<>();
+        params.put("ws.multiplexed", "false");
+        start(params);
+
+        BayeuxClient client = newMultiplexedBayeuxClient();
+        client.handshake();
+        Assert.assertFalse(client.waitFor(1000, BayeuxClient.State.CONNECTED));
+        Assert.assertEquals(0, bayeux.getSessions().size());
+
+        disconnectBayeuxClient(client);
+    }
+
+    @Test
+    public void testMaxMultiplexedSessions() throws Exception {
+        Map<String, String> params = new HashMap<>();
+        params.put("ws.maxMultiplexedSessions", "1");
+        start(params);
+
+        BayeuxClient client1 = newMultiplexedBayeuxClient();
+        client1.handshake();
+        Assert.assertTrue(client1.waitFor(5000, BayeuxClient.State.CONNECTED));
+
+        BayeuxClient client2 = newMultiplexedBayeuxClient();
+        client2.handshake();
+        Assert.assertFalse(client2.waitFor(1000, BayeuxClient.State.CONNECTED));
+        Assert.assertEquals(1, bayeux.getSessions().size());
+
+        disconnectBayeuxClient(client2);
+        disconnectBayeuxClient(client1);
+    }
+
+    @Test
+    public void testFailedHandshakeDoesNotRetainMultiplexedSession() throws Exception {
+        Map<String, String> params = new HashMap<>();
+        params.put("ws.maxMultiplexedSessions", "1");
+        start(params);
+
+        AtomicBoolean deny = new AtomicBoolean(true);
+        bayeux.setSecurityPolicy(new DefaultSecurityPolicy() {
+            @Override
+            public void canHandshake(BayeuxServer server, ServerSession session, ServerMessage message, Promise<Boolean> promise) {
+                promise.succeed(!deny.getAndSet(false));
+            }
+        });
+
+        // Use raw frames, so that the logical session
+        // that fails to handshake is not closed.
+        BlockingQueue<MultiplexedFrame> frames = new LinkedBlockingQueue<>();
+        WebSocketClient wsClient = new WebSocketClient(httpClient);
+        wsClient.start();
+        Session session = wsClient.connect(new WebSocketAdapter() {
+            @Override
+            public void onWebSocketText(String message) {
+                try {
+                    frames.offer(MultiplexedFrame.parse(message));
+                } catch (ParseException x) {
+                    Assert.fail(message);
+                }
+            }
+        }, URI.create("ws://localhost:" + connector.getLocalPort() + cometdServletPath)).get(5, TimeUnit.SECONDS);
+
+        String handshake = "[{" +
+                "\"channel\": \"/meta/handshake\"," +
+                "\"version\": \"1.0\"," +
+                "\"supportedConnectionTypes\": [\"websocket\"]" +
+                "}]";
+        session.getRemote().sendString(MultiplexedFrame.messages("a", handshake));
+        MultiplexedFrame frame = frames.poll(5, TimeUnit.SECONDS);
+        Assert.assertNotNull(frame);
+        Assert.assertEquals("a", frame.getSession());
+        Assert.assertTrue(frame.getContent().contains("\"successful\":false"));
+
+        // The logical session that failed to handshake
+        // does not count towards the max multiplexed sessions.
+        session.getRemote().sendString(MultiplexedFrame.messages("b", handshake));
+        frame = frames.poll(5, TimeUnit.SECONDS);
+        Assert.assertNotNull(frame);
+        Assert.assertEquals("b", frame.getSession());
+        Assert.assertFalse(frame.isClose());
+        Assert.assertTrue(frame.getContent().contains("\"successful\":true"));
+
+        wsClient.stop();
+    }
+}